@@ -0,0 +1,121 @@
+package io.xview.benchmark;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+
+/**
+ * 不依赖第三方库的简单基准测试工具：预热后分多轮测量吞吐量，并统计每次操作的内存分配量与GC次数（相当于JMH的 -prof gc）。
+ */
+public class Benchmark {
+
+    public interface Task {
+
+        void run() throws Exception;
+
+    }
+
+    private final int warmupIterations;
+
+    private final int measurementIterations;
+
+    private final long iterationTime;
+
+    /**
+     * @param iterationTime 每轮毫秒数
+     */
+    public Benchmark(int warmupIterations, int measurementIterations, long iterationTime) {
+        this.warmupIterations = warmupIterations;
+        this.measurementIterations = measurementIterations;
+        this.iterationTime = iterationTime;
+    }
+
+    public static void printHeader() {
+        System.out.println(String.format("%-40s %14s %12s %16s %14s %8s", "Benchmark", "ops/s", "error", "alloc B/op", "alloc MB/s", "gc"));
+    }
+
+    public void run(String name, Task task) throws Exception {
+        for (int i = 0; i < this.warmupIterations; i++) {
+            this.iterate(task);
+        }
+
+        double[] scores = new double[this.measurementIterations];
+        long totalOperations = 0;
+        long totalAllocated = 0;
+        long totalTime = 0;
+        long gcBefore = gcCount();
+
+        for (int i = 0; i < this.measurementIterations; i++) {
+            long allocatedBefore = allocatedBytes();
+            long begin = System.nanoTime();
+
+            long operations = this.iterate(task);
+
+            long time = System.nanoTime() - begin;
+            totalAllocated += allocatedBytes() - allocatedBefore;
+            totalOperations += operations;
+            totalTime += time;
+            scores[i] = operations * 1e9 / time;
+        }
+
+        long gcCount = gcCount() - gcBefore;
+
+        double mean = 0;
+        for (double score : scores) {
+            mean += score;
+        }
+        mean /= scores.length;
+
+        double variance = 0;
+        for (double score : scores) {
+            variance += (score - mean) * (score - mean);
+        }
+        double error = scores.length > 1 ? Math.sqrt(variance / (scores.length - 1)) : 0;
+
+        double allocPerOp = totalAllocated < 0 ? Double.NaN : (double) totalAllocated / totalOperations;
+        double allocRate = totalAllocated < 0 ? Double.NaN : totalAllocated * 1e9 / totalTime / (1024 * 1024);
+
+        System.out.println(String.format("%-40s %14.1f %12.1f %16.1f %14.1f %8d", name, mean, error, allocPerOp, allocRate, gcCount));
+    }
+
+    private long iterate(Task task) throws Exception {
+        long deadline = System.nanoTime() + this.iterationTime * 1000000L;
+        long operations = 0;
+
+        do {
+            task.run();
+            operations++;
+        } while (System.nanoTime() < deadline);
+
+        return operations;
+    }
+
+    /**
+     * 当前线程累计分配的字节数，JVM不支持时返回-1。
+     */
+    private static long allocatedBytes() {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+        if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunThreadMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+            if (sunThreadMXBean.isThreadAllocatedMemorySupported() && sunThreadMXBean.isThreadAllocatedMemoryEnabled()) {
+                return sunThreadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+
+        return -1;
+    }
+
+    private static long gcCount() {
+        long count = 0;
+
+        List<GarbageCollectorMXBean> garbageCollectorMXBeans = ManagementFactory.getGarbageCollectorMXBeans();
+        for (GarbageCollectorMXBean garbageCollectorMXBean : garbageCollectorMXBeans) {
+            count += Math.max(0, garbageCollectorMXBean.getCollectionCount());
+        }
+
+        return count;
+    }
+
+}
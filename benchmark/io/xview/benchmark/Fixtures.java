@@ -0,0 +1,85 @@
+package io.xview.benchmark;
+
+import io.xview.XViewManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 基准测试用的xview文件，全部在内存中生成，通过 {@link #getLoader()} 加载。
+ * <ul>
+ * <li>/small.xview：少量静态标记与表达式</li>
+ * <li>/medium.xview：200行表格，每行调用一次组件</li>
+ * <li>/large.xview：5000行表格，每行调用一次组件</li>
+ * <li>/nested.xview：20层互相嵌套的组件</li>
+ * </ul>
+ */
+public class Fixtures {
+
+    public static final String SMALL = "/small.xview";
+    public static final String MEDIUM = "/medium.xview";
+    public static final String LARGE = "/large.xview";
+    public static final String NESTED = "/nested.xview";
+
+    public static final String[] ALL = new String[]{SMALL, MEDIUM, LARGE, NESTED};
+
+    public static final int NESTED_DEPTH = 20;
+
+    private static final String HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<xview:view xmlns:xview=\"xview\" xmlns:c=\"components\""
+            + " xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" xsi:schemaLocation=\"components /components/components.xsd\"";
+
+    private final Map<String, byte[]> files = new HashMap<>();
+
+    public Fixtures() {
+        this.put("/components/cell.xview", HEADER + " xview:value=\"\">\n<td class=\"cell\">${value}</td>\n</xview:view>");
+        this.put("/components/layout.xview", HEADER + " xview:title=\"\">\n<html><head><title>${title}</title></head><body><div class=\"content\"><xview:process_child_nodes/></div></body></html>\n</xview:view>");
+
+        this.put(SMALL, HEADER + " xview:title=\"small\">\n"
+                + "<html><head><title>${title}</title></head><body>"
+                + "<h1>${title}</h1><p class=\"intro\">static paragraph</p><ul><li>one</li><li>two</li><li>three</li></ul>"
+                + "</body></html>\n</xview:view>");
+
+        this.put(MEDIUM, table("medium", 200));
+        this.put(LARGE, table("large", 5000));
+
+        for (int i = 0; i < NESTED_DEPTH; i++) {
+            String child = i + 1 < NESTED_DEPTH ? "<c:level" + (i + 1) + " depth=\"" + (i + 1) + "\"><xview:process_child_nodes/></c:level" + (i + 1) + ">" : "<xview:process_child_nodes/>";
+            this.put("/components/level" + i + ".xview", HEADER + " xview:depth=\"0\">\n<div class=\"level\" data-depth=\"${depth}\">" + child + "</div>\n</xview:view>");
+        }
+        this.put(NESTED, HEADER + ">\n<c:layout title=\"'nested'\"><c:level0 depth=\"0\"><span>leaf</span></c:level0></c:layout>\n</xview:view>");
+    }
+
+    private static String table(String title, int rows) {
+        StringBuilder stringBuilder = new StringBuilder();
+        stringBuilder.append(HEADER).append(" xview:title=\"").append(title).append("\">\n");
+        stringBuilder.append("<c:layout title=\"title\"><table>");
+        for (int i = 0; i < rows; i++) {
+            stringBuilder.append("<tr class=\"row\"><th>").append(i).append("</th><c:cell value=\"'row-").append(i).append("'\"/><td>static cell</td></tr>\n");
+        }
+        stringBuilder.append("</table></c:layout>\n</xview:view>");
+        return stringBuilder.toString();
+    }
+
+    private void put(String uri, String content) {
+        this.files.put(uri, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public byte[] get(String uri) {
+        return this.files.get(uri);
+    }
+
+    public XViewManager.XViewLoader getLoader() {
+        return new XViewManager.XViewLoader() {
+            @Override
+            public InputStream load(String uri) {
+                byte[] bytes = Fixtures.this.files.get(uri);
+                return bytes == null ? null : new ByteArrayInputStream(bytes);
+            }
+        };
+    }
+
+}
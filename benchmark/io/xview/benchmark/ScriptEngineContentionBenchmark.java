@@ -0,0 +1,88 @@
+package io.xview.benchmark;
+
+import io.xview.XViewManager;
+import io.xview.script.ScriptEnvironment;
+import io.xview.script.ScriptFragment;
+
+import javax.script.Bindings;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 脚本引擎竞争测试：分别使用1个引擎和每个CPU一个引擎，在1到32个线程下并发执行同一个已编译的脚本片段，输出吞吐量。
+ * 用法：ScriptEngineContentionBenchmark [最大线程数=32] [每轮毫秒数=2000]
+ */
+public class ScriptEngineContentionBenchmark {
+
+    private static final String SCRIPT = "var s = 0; for (var i = 0; i < 100; i++) { s += i * n; } s;";
+
+    public static void main(String[] args) throws Exception {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        long duration = args.length > 1 ? Long.parseLong(args[1]) : 2000;
+
+        int[] poolSizes = new int[]{1, Runtime.getRuntime().availableProcessors()};
+
+        System.out.println("engines\tthreads\tops/s\tspeedup");
+        for (int poolSize : poolSizes) {
+            ScriptEnvironment scriptEnvironment = new ScriptEnvironment(poolSize);
+            ScriptFragment scriptFragment = scriptEnvironment.createScriptFragment(XViewManager.SCRIPT_LANGUAGE, true, "benchmark.js", SCRIPT);
+
+            // 预热
+            run(scriptEnvironment, scriptFragment, poolSize, duration);
+
+            double baseline = 0;
+            for (int threads = 1; threads <= maxThreads; threads *= 2) {
+                double throughput = run(scriptEnvironment, scriptFragment, threads, duration);
+                if (threads == 1) {
+                    baseline = throughput;
+                }
+
+                System.out.println(String.format("%d\t%d\t%.0f\t%.2f", poolSize, threads, throughput, throughput / baseline));
+            }
+        }
+    }
+
+    private static double run(final ScriptEnvironment scriptEnvironment, final ScriptFragment scriptFragment, int threads, final long duration) throws InterruptedException {
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        final CountDownLatch endLatch = new CountDownLatch(threads);
+        final AtomicLong operations = new AtomicLong();
+        final long[] deadline = new long[1];
+
+        for (int i = 0; i < threads; i++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        Bindings bindings = scriptEnvironment.getScriptEngine(XViewManager.SCRIPT_LANGUAGE).createBindings();
+                        startLatch.await();
+
+                        long count = 0;
+                        while (System.nanoTime() < deadline[0]) {
+                            bindings.put("n", count);
+                            scriptFragment.eval(bindings);
+                            count++;
+                        }
+                        operations.addAndGet(count);
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    } finally {
+                        endLatch.countDown();
+                    }
+                }
+            });
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        // 等待所有线程创建好Bindings
+        Thread.sleep(100);
+
+        long begin = System.nanoTime();
+        deadline[0] = begin + duration * 1000000L;
+        startLatch.countDown();
+        endLatch.await();
+
+        return operations.get() * 1000000000.0 / (System.nanoTime() - begin);
+    }
+
+}
@@ -0,0 +1,123 @@
+package io.xview.benchmark;
+
+import io.xview.XView;
+import io.xview.XViewManager;
+import io.xview.XViewScript;
+import io.xview.XViewXml;
+import io.xview.script.ScriptEnvironment;
+
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+
+/**
+ * 解析、代码生成、脚本编译与渲染的基准测试，覆盖 {@link Fixtures} 中的小/中/大/深层嵌套文件。
+ * 用法（编译src与benchmark目录后，需要带有Nashorn的JDK）：
+ * <pre>
+ * java -cp out io.xview.benchmark.XViewBenchmarks [名称过滤] [预热轮数=5] [测量轮数=5] [每轮毫秒数=1000]
+ * </pre>
+ * 输出吞吐量（ops/s）、每次操作的内存分配量、分配速率与测量期间的GC次数。
+ */
+public class XViewBenchmarks {
+
+    private static final OutputStream NULL_OUTPUT_STREAM = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    public static void main(String[] args) throws Exception {
+        String filter = args.length > 0 ? args[0] : "";
+        int warmupIterations = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int measurementIterations = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        long iterationTime = args.length > 3 ? Long.parseLong(args[3]) : 1000;
+
+        final Fixtures fixtures = new Fixtures();
+        final XViewManager xviewManager = new XViewManager(fixtures.getLoader(), false, 16, true);
+        final XViewManager streamingXViewManager = new XViewManager(fixtures.getLoader(), false, 16, true);
+        streamingXViewManager.setStreamingParser(true);
+
+        Benchmark benchmark = new Benchmark(warmupIterations, measurementIterations, iterationTime);
+        Benchmark.printHeader();
+
+        for (final String uri : Fixtures.ALL) {
+            final byte[] bytes = fixtures.get(uri);
+            final XView xview = xviewManager.load(uri);
+            final ScriptEnvironment scriptEnvironment = xviewManager.getScriptEnvironment();
+            final String script = xview.getXViewScript().getScript();
+
+            if (("parse.dom" + uri).contains(filter)) {
+                benchmark.run("parse.dom" + uri, new Benchmark.Task() {
+                    @Override
+                    public void run() throws Exception {
+                        new XViewXml(new ByteArrayInputStream(bytes), false);
+                    }
+                });
+            }
+
+            if (("parse.stax" + uri).contains(filter)) {
+                benchmark.run("parse.stax" + uri, new Benchmark.Task() {
+                    @Override
+                    public void run() throws Exception {
+                        XMLStreamReader reader = XViewXml.createStreamReader(new ByteArrayInputStream(bytes));
+                        while (reader.hasNext()) {
+                            reader.next();
+                        }
+                        reader.close();
+                    }
+                });
+            }
+
+            if (("generate" + uri).contains(filter)) {
+                benchmark.run("generate" + uri, new Benchmark.Task() {
+                    @Override
+                    public void run() {
+                        new XViewScript(xview);
+                    }
+                });
+            }
+
+            if (("load.dom" + uri).contains(filter)) {
+                benchmark.run("load.dom" + uri, new Benchmark.Task() {
+                    @Override
+                    public void run() {
+                        new XView(xviewManager, uri, new ByteArrayInputStream(bytes));
+                    }
+                });
+            }
+
+            if (("load.stax" + uri).contains(filter)) {
+                benchmark.run("load.stax" + uri, new Benchmark.Task() {
+                    @Override
+                    public void run() {
+                        new XView(streamingXViewManager, uri, new ByteArrayInputStream(bytes));
+                    }
+                });
+            }
+
+            if (("compile" + uri).contains(filter)) {
+                benchmark.run("compile" + uri, new Benchmark.Task() {
+                    @Override
+                    public void run() throws Exception {
+                        scriptEnvironment.createScriptFragment(XViewManager.SCRIPT_LANGUAGE, true, uri + ".js", script);
+                    }
+                });
+            }
+
+            if (("render" + uri).contains(filter)) {
+                benchmark.run("render" + uri, new Benchmark.Task() {
+                    @Override
+                    public void run() {
+                        xviewManager.load(uri).execute(NULL_OUTPUT_STREAM, new HashMap<String, Object>(), null);
+                    }
+                });
+            }
+        }
+    }
+
+}
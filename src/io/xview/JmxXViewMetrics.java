@@ -0,0 +1,262 @@
+package io.xview;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 汇总所有指标（总量与按URI统计）并通过JMX暴露的XViewMetrics实现。
+ */
+public class JmxXViewMetrics implements XViewMetrics, XViewMetricsMBean {
+
+    public static final String DOMAIN = "io.xview";
+
+    private final Statistics total = new Statistics();
+
+    private final ConcurrentHashMap<String, Statistics> uriStatistics = new ConcurrentHashMap<>();
+
+    private final AtomicInteger maxDepth = new AtomicInteger();
+
+    private final LongAdder cacheHitCount = new LongAdder();
+    private final LongAdder cacheMissCount = new LongAdder();
+    private final LongAdder bindingsMissCount = new LongAdder();
+
+    private ObjectName objectName;
+
+    /**
+     * 注册到平台MBeanServer，ObjectName为 io.xview:type=XViewMetrics,name=名称
+     */
+    public JmxXViewMetrics register(String name) {
+        try {
+            MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+            this.objectName = new ObjectName(DOMAIN + ":type=XViewMetrics,name=" + ObjectName.quote(name));
+            mbeanServer.registerMBean(new StandardMBean(this, XViewMetricsMBean.class), this.objectName);
+            return this;
+        } catch (JMException e) {
+            throw new XViewException(e);
+        }
+    }
+
+    public void unregister() {
+        if (this.objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(this.objectName);
+            } catch (JMException e) {
+                throw new XViewException(e);
+            } finally {
+                this.objectName = null;
+            }
+        }
+    }
+
+    private Statistics statistics(String uri) {
+        Statistics statistics = this.uriStatistics.get(uri);
+
+        if (statistics == null) {
+            statistics = new Statistics();
+            Statistics existing = this.uriStatistics.putIfAbsent(uri, statistics);
+            if (existing != null) {
+                statistics = existing;
+            }
+        }
+
+        return statistics;
+    }
+
+    @Override
+    public void onLoad(String uri, long nanos) {
+        this.total.loadCount.increment();
+        this.total.loadTime.add(nanos);
+
+        Statistics statistics = this.statistics(uri);
+        statistics.loadCount.increment();
+        statistics.loadTime.add(nanos);
+    }
+
+    @Override
+    public void onCompile(String uri, long nanos) {
+        this.total.compileCount.increment();
+        this.total.compileTime.add(nanos);
+
+        Statistics statistics = this.statistics(uri);
+        statistics.compileCount.increment();
+        statistics.compileTime.add(nanos);
+    }
+
+    @Override
+    public void onRender(String uri, long nanos, long bytes, int depth) {
+        // 嵌套调用的时间与字节数已包含在上层调用中，总量只统计顶层调用
+        if (depth == 0) {
+            this.total.render(nanos, bytes);
+        }
+        this.statistics(uri).render(nanos, bytes);
+
+        int max;
+        while (depth > (max = this.maxDepth.get()) && !this.maxDepth.compareAndSet(max, depth)) {
+            // retry
+        }
+    }
+
+    @Override
+    public void onCacheHit(String uri) {
+        this.cacheHitCount.increment();
+    }
+
+    @Override
+    public void onCacheMiss(String uri) {
+        this.cacheMissCount.increment();
+    }
+
+    @Override
+    public void onBindingsMiss() {
+        this.bindingsMissCount.increment();
+    }
+
+    @Override
+    public long getLoadCount() {
+        return this.total.loadCount.sum();
+    }
+
+    @Override
+    public long getLoadTime() {
+        return this.total.loadTime.sum();
+    }
+
+    @Override
+    public long getCompileCount() {
+        return this.total.compileCount.sum();
+    }
+
+    @Override
+    public long getCompileTime() {
+        return this.total.compileTime.sum();
+    }
+
+    @Override
+    public long getRenderCount() {
+        return this.total.renderCount.sum();
+    }
+
+    @Override
+    public long getRenderTime() {
+        return this.total.renderTime.sum();
+    }
+
+    @Override
+    public long getMaxRenderTime() {
+        return this.total.maxRenderTime.get();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return this.total.bytesWritten.sum();
+    }
+
+    @Override
+    public int getMaxDepth() {
+        return this.maxDepth.get();
+    }
+
+    @Override
+    public long getCacheHitCount() {
+        return this.cacheHitCount.sum();
+    }
+
+    @Override
+    public long getCacheMissCount() {
+        return this.cacheMissCount.sum();
+    }
+
+    @Override
+    public long getBindingsMissCount() {
+        return this.bindingsMissCount.sum();
+    }
+
+    @Override
+    public String[] getUris() {
+        List<String> uris = new ArrayList<>(this.uriStatistics.keySet());
+        Collections.sort(uris);
+        return uris.toArray(new String[0]);
+    }
+
+    @Override
+    public long[] getUriStatistics(String uri) {
+        Statistics statistics = this.uriStatistics.get(uri);
+        return statistics == null ? null : statistics.toArray();
+    }
+
+    @Override
+    public String dump() {
+        StringBuilder stringBuilder = new StringBuilder();
+        stringBuilder.append("uri\tloadCount\tloadTime\tcompileCount\tcompileTime\trenderCount\trenderTime\tmaxRenderTime\tbytesWritten\n");
+
+        for (String uri : this.getUris()) {
+            stringBuilder.append(uri);
+            for (long value : this.uriStatistics.get(uri).toArray()) {
+                stringBuilder.append('\t').append(value);
+            }
+            stringBuilder.append('\n');
+        }
+
+        return stringBuilder.toString();
+    }
+
+    @Override
+    public void reset() {
+        this.total.reset();
+        this.uriStatistics.clear();
+        this.maxDepth.set(0);
+        this.cacheHitCount.reset();
+        this.cacheMissCount.reset();
+        this.bindingsMissCount.reset();
+    }
+
+    private static class Statistics {
+
+        private final LongAdder loadCount = new LongAdder();
+        private final LongAdder loadTime = new LongAdder();
+        private final LongAdder compileCount = new LongAdder();
+        private final LongAdder compileTime = new LongAdder();
+        private final LongAdder renderCount = new LongAdder();
+        private final LongAdder renderTime = new LongAdder();
+        private final AtomicLong maxRenderTime = new AtomicLong();
+        private final LongAdder bytesWritten = new LongAdder();
+
+        private void render(long nanos, long bytes) {
+            this.renderCount.increment();
+            this.renderTime.add(nanos);
+            this.bytesWritten.add(bytes);
+
+            long max;
+            while (nanos > (max = this.maxRenderTime.get()) && !this.maxRenderTime.compareAndSet(max, nanos)) {
+                // retry
+            }
+        }
+
+        private long[] toArray() {
+            return new long[]{loadCount.sum(), loadTime.sum(), compileCount.sum(), compileTime.sum(),
+                    renderCount.sum(), renderTime.sum(), maxRenderTime.get(), bytesWritten.sum()};
+        }
+
+        private void reset() {
+            this.loadCount.reset();
+            this.loadTime.reset();
+            this.compileCount.reset();
+            this.compileTime.reset();
+            this.renderCount.reset();
+            this.renderTime.reset();
+            this.maxRenderTime.set(0);
+            this.bytesWritten.reset();
+        }
+    }
+
+}
@@ -0,0 +1,72 @@
+package io.xview;
+
+import javax.script.Bindings;
+import javax.script.ScriptContext;
+import java.util.AbstractMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 嵌套调用时子组件的上层作用域：读取时先查找自身的变量，找不到再到调用方的ScriptContext中查找（逐层向上），
+ * 写入只影响自身。创建时不复制调用方的任何变量。
+ */
+public class ScopeBindings extends AbstractMap<String, Object> implements Bindings {
+
+    private final ScriptContext parent;
+
+    private Map<String, Object> local;
+
+    public ScopeBindings(ScriptContext parent) {
+        this.parent = parent;
+    }
+
+    public ScriptContext getParent() {
+        return parent;
+    }
+
+    @Override
+    public Object get(Object key) {
+        if (this.local != null && this.local.containsKey(key)) {
+            return this.local.get(key);
+        }
+
+        return this.parent == null ? null : this.parent.getAttribute((String) key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        if (this.local != null && this.local.containsKey(key)) {
+            return true;
+        }
+
+        return this.parent != null && this.parent.getAttributesScope((String) key) != -1;
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        if (this.local == null) {
+            this.local = new HashMap<>();
+        }
+
+        return this.local.put(key, value);
+    }
+
+    @Override
+    public Object remove(Object key) {
+        return this.local == null ? null : this.local.remove(key);
+    }
+
+    /**
+     * 只包含自身的变量（遍历调用方的全部变量正是这个类要避免的开销）。
+     */
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        if (this.local == null) {
+            this.local = new HashMap<>();
+        }
+
+        return this.local.entrySet();
+    }
+
+}
@@ -0,0 +1,362 @@
+package io.xview;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 脚本中的变量名（用于判断组件能否内联，见 {@link XViewScript#inline(int)}）：按词法扫描，区分函数作用域，
+ * 得到声明的变量、读取与赋值的自由变量（没有在所在作用域链中声明的变量）。
+ * 扫描是保守的：无法确定时多记录自由变量，不会漏掉对自由变量的赋值；只按函数作用域分析，
+ * 出现let、const、箭头函数或模板字符串时标记为 {@link #isDynamic()}，不再判断变量是否隔离。
+ */
+final class ScriptNames {
+
+    private static final Set<String> KEYWORDS = new HashSet<>(Arrays.asList(
+            "break", "case", "catch", "class", "const", "continue", "debugger", "default", "delete", "do",
+            "else", "enum", "export", "extends", "false", "finally", "for", "function", "if", "import", "in",
+            "instanceof", "let", "new", "null", "return", "super", "switch", "this", "throw", "true", "try",
+            "typeof", "var", "void", "while", "with", "yield", "arguments", "eval", "undefined"));
+
+    /**
+     * 改变作用域或无法静态分析的名称
+     */
+    private static final Set<String> DYNAMIC = new HashSet<>(Arrays.asList("this", "arguments", "eval", "with"));
+
+    /**
+     * 按函数作用域无法分析的记号：箭头函数与模板字符串
+     */
+    private static final Set<String> DYNAMIC_PUNCTUATORS = new HashSet<>(Arrays.asList("=>", "`"));
+
+    private static final Set<String> ASSIGNMENTS = new HashSet<>(Arrays.asList(
+            "=", "+=", "-=", "*=", "/=", "%=", "&=", "|=", "^=", "<<=", ">>=", ">>>=", "++", "--"));
+
+    private static final String[] PUNCTUATORS = {">>>=", "===", "!==", "<<=", ">>=", ">>>",
+            "=>", "==", "!=", "<=", ">=", "&&", "||", "++", "--", "+=", "-=", "*=", "/=", "%=", "&=", "|=", "^=", "<<", ">>"};
+
+    private final Set<String> declared = new HashSet<>();
+
+    private final Set<String> freeReferenced = new HashSet<>();
+
+    private final Set<String> freeAssigned = new HashSet<>();
+
+    private boolean dynamic;
+
+    private ScriptNames() {
+    }
+
+    /**
+     * 所有作用域中声明的名称（var、let、const、函数名、参数、catch的变量）。
+     */
+    public Set<String> getDeclared() {
+        return declared;
+    }
+
+    public Set<String> getFreeReferenced() {
+        return freeReferenced;
+    }
+
+    public Set<String> getFreeAssigned() {
+        return freeAssigned;
+    }
+
+    /**
+     * 是否使用了this、arguments、eval、with，或let、const、箭头函数、模板字符串。
+     */
+    public boolean isDynamic() {
+        return dynamic;
+    }
+
+    public static ScriptNames scan(String script) {
+        ScriptNames scriptNames = new ScriptNames();
+        scriptNames.analyze(tokenize(script));
+        return scriptNames;
+    }
+
+    private void analyze(List<Token> tokens) {
+        Scope scope = new Scope(null);
+        List<Use> uses = new ArrayList<>();
+
+        // 函数体的左括号在栈中的深度，用于在对应的右括号处退出作用域
+        List<Integer> functionDepths = new ArrayList<>();
+        Scope pendingScope = null;
+        int depth = 0;
+
+        for (int i = 0; i < tokens.size(); i++) {
+            Token token = tokens.get(i);
+
+            if (!token.identifier) {
+                if (DYNAMIC_PUNCTUATORS.contains(token.text)) {
+                    this.dynamic = true;
+                } else if ("{".equals(token.text)) {
+                    depth++;
+                    if (pendingScope != null) {
+                        scope = pendingScope;
+                        pendingScope = null;
+                        functionDepths.add(depth);
+                    }
+                } else if ("}".equals(token.text)) {
+                    if (!functionDepths.isEmpty() && functionDepths.get(functionDepths.size() - 1) == depth) {
+                        functionDepths.remove(functionDepths.size() - 1);
+                        scope = scope.parent;
+                    }
+                    depth--;
+                }
+                continue;
+            }
+
+            String name = token.text;
+            Token previous = i > 0 ? tokens.get(i - 1) : null;
+            Token next = i + 1 < tokens.size() ? tokens.get(i + 1) : null;
+
+            if (previous != null && ".".equals(previous.text)) {
+                // 属性名
+                continue;
+            }
+
+            if (DYNAMIC.contains(name)) {
+                this.dynamic = true;
+                continue;
+            }
+
+            if ("function".equals(name)) {
+                Scope functionScope = new Scope(scope);
+
+                int j = i + 1;
+                if (j < tokens.size() && tokens.get(j).identifier) {
+                    // 函数声明的名称属于外层作用域，函数表达式的名称只在函数内可见
+                    boolean declaration = previous == null || ";".equals(previous.text) || "{".equals(previous.text) || "}".equals(previous.text);
+                    (declaration ? scope : functionScope).declare(tokens.get(j).text, this.declared);
+                    j++;
+                }
+                if (j < tokens.size() && "(".equals(tokens.get(j).text)) {
+                    for (j++; j < tokens.size() && !")".equals(tokens.get(j).text); j++) {
+                        if (tokens.get(j).identifier) {
+                            functionScope.declare(tokens.get(j).text, this.declared);
+                        }
+                    }
+                }
+
+                pendingScope = functionScope;
+                i = j;
+                continue;
+            }
+
+            if ("var".equals(name) || "let".equals(name) || "const".equals(name)) {
+                if (!"var".equals(name)) {
+                    // 块级作用域：声明仍然记录（调用方的声明用于判断同名），但不再按函数作用域判断自由变量
+                    this.dynamic = true;
+                }
+
+                // 声明列表：var a = ..., b = ...; 逗号只在括号外分隔变量
+                int level = 0;
+                boolean expectName = true;
+                for (int j = i + 1; j < tokens.size(); j++) {
+                    Token t = tokens.get(j);
+                    if (expectName && t.identifier && level == 0) {
+                        if ("in".equals(t.text)) {
+                            break;
+                        }
+                        scope.declare(t.text, this.declared);
+                        expectName = false;
+                    } else if ("(".equals(t.text) || "[".equals(t.text) || "{".equals(t.text)) {
+                        level++;
+                    } else if (")".equals(t.text) || "]".equals(t.text) || "}".equals(t.text)) {
+                        if (--level < 0) {
+                            break;
+                        }
+                    } else if (level == 0 && ",".equals(t.text)) {
+                        expectName = true;
+                    } else if (level == 0 && ";".equals(t.text)) {
+                        break;
+                    }
+                }
+                continue;
+            }
+
+            if ("catch".equals(name) && next != null && "(".equals(next.text) && i + 2 < tokens.size() && tokens.get(i + 2).identifier) {
+                scope.declare(tokens.get(i + 2).text, this.declared);
+                i += 2;
+                continue;
+            }
+
+            if (KEYWORDS.contains(name)) {
+                continue;
+            }
+
+            if (next != null && ":".equals(next.text) && previous != null && ("{".equals(previous.text) || ",".equals(previous.text))) {
+                // 对象字面量的键
+                continue;
+            }
+
+            // x = ...、x += ...、x++、++x 与 for (x in ...)
+            boolean assigned = (next != null && ASSIGNMENTS.contains(next.text))
+                    || (previous != null && ("++".equals(previous.text) || "--".equals(previous.text)))
+                    || (next != null && "in".equals(next.text) && previous != null && "(".equals(previous.text) && i >= 2 && "for".equals(tokens.get(i - 2).text));
+            uses.add(new Use(name, scope, assigned));
+        }
+
+        // 变量声明会提升，扫描完所有声明后再解析
+        for (Use use : uses) {
+            if (!use.scope.resolves(use.name)) {
+                this.freeReferenced.add(use.name);
+                if (use.assigned) {
+                    this.freeAssigned.add(use.name);
+                }
+            }
+        }
+    }
+
+    private static List<Token> tokenize(String script) {
+        List<Token> tokens = new ArrayList<>();
+        int length = script.length();
+        int i = 0;
+
+        while (i < length) {
+            char c = script.charAt(i);
+
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '/' && i + 1 < length && script.charAt(i + 1) == '/') {
+                int end = script.indexOf('\n', i);
+                i = end == -1 ? length : end;
+            } else if (c == '/' && i + 1 < length && script.charAt(i + 1) == '*') {
+                int end = script.indexOf("*/", i + 2);
+                i = end == -1 ? length : end + 2;
+            } else if (c == '\'' || c == '"') {
+                i = skipString(script, i, c);
+                tokens.add(new Token("\"\"", false));
+            } else if (Character.isJavaIdentifierStart(c)) {
+                int begin = i;
+                while (i < length && Character.isJavaIdentifierPart(script.charAt(i))) {
+                    i++;
+                }
+                tokens.add(new Token(script.substring(begin, i), true));
+            } else if (Character.isDigit(c) || (c == '.' && i + 1 < length && Character.isDigit(script.charAt(i + 1)))) {
+                while (i < length && (Character.isJavaIdentifierPart(script.charAt(i)) || script.charAt(i) == '.')) {
+                    i++;
+                }
+                tokens.add(new Token("0", false));
+            } else if (c == '/' && isRegExpAllowed(tokens)) {
+                i = skipRegExp(script, i);
+                tokens.add(new Token("/./", false));
+            } else {
+                String punctuator = String.valueOf(c);
+                for (String p : PUNCTUATORS) {
+                    if (script.startsWith(p, i)) {
+                        punctuator = p;
+                        break;
+                    }
+                }
+                i += punctuator.length();
+                tokens.add(new Token(punctuator, false));
+            }
+        }
+
+        return tokens;
+    }
+
+    /**
+     * 前一个记号之后的 / 是否开始正则表达式（而不是除号）。
+     */
+    private static boolean isRegExpAllowed(List<Token> tokens) {
+        if (tokens.isEmpty()) {
+            return true;
+        }
+
+        Token previous = tokens.get(tokens.size() - 1);
+        if (previous.identifier) {
+            return KEYWORDS.contains(previous.text) && !"this".equals(previous.text) && !"null".equals(previous.text)
+                    && !"true".equals(previous.text) && !"false".equals(previous.text) && !"undefined".equals(previous.text);
+        }
+        return !")".equals(previous.text) && !"]".equals(previous.text) && !"}".equals(previous.text) && !"0".equals(previous.text) && !"\"\"".equals(previous.text);
+    }
+
+    private static int skipString(String script, int i, char quote) {
+        for (i++; i < script.length(); i++) {
+            char c = script.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == quote) {
+                return i + 1;
+            }
+        }
+        return i;
+    }
+
+    private static int skipRegExp(String script, int i) {
+        boolean inClass = false;
+        for (i++; i < script.length(); i++) {
+            char c = script.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '[') {
+                inClass = true;
+            } else if (c == ']') {
+                inClass = false;
+            } else if (c == '/' && !inClass) {
+                i++;
+                break;
+            }
+        }
+        while (i < script.length() && Character.isJavaIdentifierPart(script.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static class Token {
+
+        private final String text;
+
+        private final boolean identifier;
+
+        Token(String text, boolean identifier) {
+            this.text = text;
+            this.identifier = identifier;
+        }
+    }
+
+    private static class Scope {
+
+        private final Scope parent;
+
+        private final Set<String> names = new HashSet<>();
+
+        Scope(Scope parent) {
+            this.parent = parent;
+        }
+
+        void declare(String name, Set<String> declared) {
+            this.names.add(name);
+            declared.add(name);
+        }
+
+        boolean resolves(String name) {
+            for (Scope scope = this; scope != null; scope = scope.parent) {
+                if (scope.names.contains(name)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static class Use {
+
+        private final String name;
+
+        private final Scope scope;
+
+        private final boolean assigned;
+
+        Use(String name, Scope scope, boolean assigned) {
+            this.name = name;
+            this.scope = scope;
+            this.assigned = assigned;
+        }
+    }
+
+}
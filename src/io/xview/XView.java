@@ -2,12 +2,19 @@ package io.xview;
 
 import org.xml.sax.SAXException;
 
+import javax.script.ScriptContext;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 
 /**
@@ -26,6 +33,15 @@ public class XView {
     public static final String TAG_VIEW = "view";
     public static final String TAG_SCRIPT = "script";
     public static final String TAG_PROCESS_CHILD_NODES = "process_child_nodes";
+    public static final String TAG_IF = "if";
+    public static final String TAG_FOR = "for";
+    public static final String TAG_CHOOSE = "choose";
+    public static final String TAG_WHEN = "when";
+    public static final String TAG_OTHERWISE = "otherwise";
+    public static final String TAG_CACHE = "cache";
+    public static final String TAG_FLUSH = "flush";
+
+    public static final String ATTRIBUTE_PARALLEL = "parallel";
 
     public static final String PROCESS_CHILD_NODES_FUNCTION = "__process_child_nodes";
 
@@ -39,6 +55,8 @@ public class XView {
 
     private XViewScript xviewScript;
 
+    private Map<String, String> defaultAttributes;
+
     public XView(XViewManager xviewManager, String uri, InputStream xviewInputStream) {
         this(xviewManager, uri, xviewInputStream, false);
     }
@@ -48,12 +66,41 @@ public class XView {
             this.uri = uri;
             this.validateSchema = validateSchema;
 
-        try {
-            this.xviewXml = new XViewXml(xviewInputStream, validateSchema);
-        } catch (IOException | SAXException | ParserConfigurationException  e) {
-            throw new XViewException(this.uri, e);
+        if (xviewManager != null && xviewManager.isStreamingParser() && !validateSchema) {
+            // 流式读取并编译，不构建DOM
+            try {
+                XMLStreamReader reader = XViewXml.createStreamReader(xviewInputStream);
+                try {
+                    this.xviewXml = new XViewXml(reader);
+                    this.xviewScript = new XViewScript(this, reader);
+                } finally {
+                    reader.close();
+                }
+            } catch (XMLStreamException e) {
+                throw new XViewException(this.uri, e);
+            }
+        } else {
+            try {
+                this.xviewXml = new XViewXml(xviewInputStream, validateSchema ? (xviewManager == null ? XViewSchemaCache.getDefault() : xviewManager.getXViewSchemaCache()) : null);
+            } catch (IOException | SAXException | ParserConfigurationException  e) {
+                throw new XViewException(this.uri, e);
+            }
+            this.xviewScript = new XViewScript(this);
         }
-        this.xviewScript = new XViewScript(this);
+        this.defaultAttributes = this.xviewXml.getAttributes();
+    }
+
+    /**
+     * 从代码缓存创建，不读取xview文件（见 {@link XViewCodeCache}）。
+     */
+    public XView(XViewManager xviewManager, String uri, XViewCodeCache.Entry entry) {
+        this.xviewManager = xviewManager;
+        this.uri = uri;
+        this.validateSchema = false;
+        this.xviewScript = new XViewScript(this, entry.getScript(), entry.getSegments(), entry.getProperties(), entry.getDependencies());
+        this.xviewScript.setCache(entry.getCacheTtl(), entry.getCacheKeys());
+        this.xviewScript.setCallSites(entry.getCallSites());
+        this.defaultAttributes = Collections.unmodifiableMap(entry.getAttributes());
     }
 
     public XViewManager getXViewManager() {
@@ -68,6 +115,9 @@ public class XView {
         return validateSchema;
     }
 
+    /**
+     * 从代码缓存创建时为null。
+     */
     public XViewXml getXViewXml() {
         return xviewXml;
     }
@@ -76,40 +126,124 @@ public class XView {
         return xviewScript;
     }
 
-    public void execute(OutputStream outputStream, Map<String, Object> callAttributes, String processChildNodesFunction) {
-        Map<String, Object> calledAttributes = new HashMap<>();
+    /**
+     * 声明的参数及其默认值（xview命名空间的根元素属性）。
+     */
+    public Map<String, String> getDefaultAttributes() {
+        return defaultAttributes;
+    }
+
+    public void execute(OutputStream outputStream, Map<String, Object> callAttributes, Object processChildNodesFunction) {
+        this.execute(this.xviewManager.popWriter(outputStream), callAttributes, processChildNodesFunction);
+    }
+
+    /**
+     * 输出到通道（使用直接缓冲区），缓冲区写满与 xview:flush 时即写入通道，非阻塞通道写不进去时等待。
+     */
+    public void execute(WritableByteChannel channel, Map<String, Object> callAttributes, Object processChildNodesFunction) {
+        this.execute(this.xviewManager.popWriter(channel), callAttributes, processChildNodesFunction);
+    }
+
+    /**
+     * 分块输出，见 {@link XViewChunkConsumer}。
+     */
+    public void execute(XViewChunkConsumer consumer, Map<String, Object> callAttributes, Object processChildNodesFunction) {
+        this.execute(new XViewChunkConsumer.Channel(consumer), callAttributes, processChildNodesFunction);
+    }
+
+    /**
+     * 异步渲染，见 {@link XViewManager#executeAsync(String, OutputStream, Map, long, TimeUnit)}。
+     */
+    public CompletableFuture<Void> executeAsync(final OutputStream outputStream, final Map<String, Object> callAttributes, long timeout, TimeUnit unit) {
+        return this.xviewManager.submit(new Runnable() {
+            @Override
+            public void run() {
+                XView.this.execute(outputStream, callAttributes, null);
+            }
+        }, timeout, unit);
+    }
+
+    public CompletableFuture<Void> executeAsync(final WritableByteChannel channel, final Map<String, Object> callAttributes, long timeout, TimeUnit unit) {
+        return this.xviewManager.submit(new Runnable() {
+            @Override
+            public void run() {
+                XView.this.execute(channel, callAttributes, null);
+            }
+        }, timeout, unit);
+    }
+
+    private void execute(XViewWriter writer, Map<String, Object> callAttributes, Object processChildNodesFunction) {
+        try {
+            this.execute(writer, callAttributes, processChildNodesFunction, null);
+            writer.flush();
+        } catch (IOException e) {
+            throw new XViewException(this.uri, e);
+        } finally {
+            this.xviewManager.pushWriter(writer);
+        }
+    }
 
-        // 填充默认值
-        Map<String, String> defaultAttributes = this.getXViewXml().getAttributes();
-        if (defaultAttributes != null && !defaultAttributes.isEmpty()) {
-            calledAttributes.putAll(defaultAttributes);
+    /**
+     * 在已有的XViewWriter上执行（嵌套调用时与调用方共用输出缓冲区）。
+     *
+     * @param caller 调用方，其ScriptContext作为此文件的上层作用域，顶层调用时为null
+     */
+    protected void execute(XViewWriter writer, Map<String, Object> callAttributes, Object processChildNodesFunction, XViewScriptObject caller) {
+        this.render(writer, this.resolveAttributes(callAttributes, processChildNodesFunction, caller), caller);
+    }
+
+    /**
+     * 使用已解析的参数执行（见 {@link #resolveAttributes(Map, Object, XViewScriptObject)}）。
+     */
+    protected void render(XViewWriter writer, Map<String, Object> calledAttributes, XViewScriptObject caller) {
+        // 声明了 xview:cache 且没有子内容时使用输出缓存
+        if (this.xviewScript.getCacheTtl() > 0 && calledAttributes.get(XView.PROCESS_CHILD_NODES_FUNCTION) == null) {
+            this.xviewManager.executeCached(this, calledAttributes, writer, caller);
+            return;
         }
 
-        // 填充传入的调用参数（只写入在目标xview中声明过的参数）
-        if (callAttributes != null && !callAttributes.isEmpty()) {
-            for (String key : callAttributes.keySet()) {
-                if (!defaultAttributes.containsKey(key)) {
-                    continue;
-                }
+        // 调用此文件
+        this.xviewManager.execute(this, calledAttributes, writer, caller);
+    }
 
-                Object value = callAttributes.get(key);
-                if (value != null) {
-                    if (value instanceof String) {
-                        String textValue = (String) value;
-                        if (textValue.trim().isEmpty()) {
-                            continue;
-                        }
-                    }
+    /**
+     * 解析调用参数（在调用方的线程中）。
+     */
+    protected Map<String, Object> resolveAttributes(Map<String, Object> callAttributes, Object processChildNodesFunction, XViewScriptObject caller) {
+        ScriptContext parentContext = caller == null ? null : caller.getContext();
 
-                    calledAttributes.put(key, value);
-                }
+        // 只处理在目标xview中声明过的参数：调用参数 > 调用方的同名变量 > 默认值
+        Map<String, Object> calledAttributes = new HashMap<>((this.defaultAttributes.size() + 1) * 4 / 3 + 1);
+
+        for (Map.Entry<String, String> entry : this.defaultAttributes.entrySet()) {
+            String key = entry.getKey();
+
+            Object value = callAttributes == null ? null : callAttributes.get(key);
+            if (isEmpty(value) && parentContext != null) {
+                value = parentContext.getAttribute(key);
+            }
+            if (isEmpty(value)) {
+                value = entry.getValue();
             }
+
+            calledAttributes.put(key, value);
         }
 
         calledAttributes.put(XView.PROCESS_CHILD_NODES_FUNCTION, processChildNodesFunction);
 
-        // 调用此文件
-        this.xviewManager.execute(this, calledAttributes, outputStream);
+        return calledAttributes;
+    }
+
+    static boolean isEmpty(Object value) {
+        if (value == null) {
+            return true;
+        }
+
+        if (value instanceof String) {
+            return ((String) value).trim().isEmpty();
+        }
+
+        return false;
     }
 
-}
\ No newline at end of file
+}
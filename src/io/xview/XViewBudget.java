@@ -0,0 +1,70 @@
+package io.xview;
+
+/**
+ * 单次渲染的资源限制：最长时间、组件嵌套调用的最大层数（防止组件递归引用自身）、最多输出的字节数，小于等于0时不限制。
+ * 一次渲染中嵌套调用、并行渲染与输出缓存的组件共用同一份限制，超出时以 {@link ExceededException} 结束渲染。
+ * 时间在组件调用、xview:for 循环与输出缓冲区写出时检查，不调用xview对象的纯脚本循环无法被结束。
+ */
+public class XViewBudget {
+
+    public static final XViewBudget UNLIMITED = new XViewBudget(0, 0, 0);
+
+    private final long maxTime;
+
+    private final int maxDepth;
+
+    private final long maxBytes;
+
+    /**
+     * @param maxTime 最长渲染时间（毫秒）
+     * @param maxDepth 组件嵌套调用的最大层数，顶层调用为0
+     * @param maxBytes 最多输出的字节数
+     */
+    public XViewBudget(long maxTime, int maxDepth, long maxBytes) {
+        this.maxTime = maxTime;
+        this.maxDepth = maxDepth;
+        this.maxBytes = maxBytes;
+    }
+
+    public long getMaxTime() {
+        return maxTime;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * 渲染结束时间（System.nanoTime），不限制时为0。
+     */
+    long deadline() {
+        if (this.maxTime <= 0) {
+            return 0;
+        }
+
+        long deadline = System.nanoTime() + this.maxTime * 1000000L;
+        return deadline == 0 ? 1 : deadline;
+    }
+
+    @Override
+    public String toString() {
+        return "XViewBudget{maxTime=" + maxTime + ", maxDepth=" + maxDepth + ", maxBytes=" + maxBytes + "}";
+    }
+
+    /**
+     * 渲染超出了限制。
+     */
+    public static class ExceededException extends XViewException {
+
+        private static final long serialVersionUID = 1L;
+
+        public ExceededException(String message) {
+            super(message);
+        }
+    }
+
+}
@@ -0,0 +1,294 @@
+package io.xview;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * 预编译包：一个目录树中所有xview文件的编译结果（格式同 {@link XViewCodeCache.Entry}）写入同一个文件，
+ * 文件头部为URI索引，运行时以内存映射方式读取，通过 {@link XViewManager#setXViewBundle(XViewBundle)} 使用。
+ * 生成时检查组件引用，引用的组件不存在时生成失败。
+ *
+ * 文件格式：MAGIC、FORMAT_VERSION、字符集、数量、索引（URI、偏移、长度）、各文件的编译结果。
+ */
+public class XViewBundle implements Closeable {
+
+    public static final int FORMAT_VERSION = 1;
+
+    public static final String FILE_EXT = ".xvb";
+
+    private static final int MAGIC = 0x58564247;
+
+    private final File file;
+
+    private final Charset charset;
+
+    private final Map<String, long[]> index;
+
+    private FileChannel fileChannel;
+
+    /**
+     * 关闭后为null（可能与读取并发）
+     */
+    private volatile MappedByteBuffer buffer;
+
+    private XViewBundle(File file) throws IOException {
+        this.file = file;
+        this.fileChannel = FileChannel.open(file.toPath());
+        this.buffer = this.fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, this.fileChannel.size());
+
+        DataInputStream in = new DataInputStream(new ByteBufferInputStream(this.buffer.duplicate()));
+        if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || in.readInt() != XViewCodeCache.FORMAT_VERSION) {
+            this.close();
+            throw new IOException("invalid bundle format: " + file);
+        }
+
+        this.charset = Charset.forName(in.readUTF());
+
+        int size = in.readInt();
+        this.index = new HashMap<>(size * 4 / 3 + 1);
+        for (int i = 0; i < size; i++) {
+            this.index.put(in.readUTF(), new long[] { in.readLong(), in.readInt() });
+        }
+    }
+
+    /**
+     * 以内存映射方式打开预编译包。
+     */
+    public static XViewBundle open(File file) throws IOException {
+        return new XViewBundle(file);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * 生成时使用的字符集（静态片段已按此编码），需要与XViewManager的字符集一致。
+     */
+    public Charset getCharset() {
+        return charset;
+    }
+
+    public Set<String> getUris() {
+        return Collections.unmodifiableSet(this.index.keySet());
+    }
+
+    public boolean contains(String uri) {
+        return this.index.containsKey(uri);
+    }
+
+    /**
+     * 读取一个文件的编译结果，不存在时返回null。
+     */
+    public XViewCodeCache.Entry get(String uri) {
+        long[] position = this.index.get(uri);
+        if (position == null) {
+            return null;
+        }
+
+        MappedByteBuffer buffer = this.buffer;
+        if (buffer == null) {
+            throw new XViewException(uri + " -> bundle closed");
+        }
+
+        ByteBuffer byteBuffer = buffer.duplicate();
+        byteBuffer.position((int) position[0]);
+        byteBuffer.limit((int) (position[0] + position[1]));
+
+        try {
+            return XViewCodeCache.Entry.read(new DataInputStream(new ByteBufferInputStream(byteBuffer)));
+        } catch (IOException e) {
+            throw new XViewException(uri, e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.buffer = null;
+        this.fileChannel.close();
+    }
+
+    /**
+     * 编译目录树中的所有xview文件并写入预编译包。
+     *
+     * @param directory 根目录
+     * @param prefix    根目录对应的URI前缀（例如 "/"，与xview文件中schemaLocation的写法一致）
+     * @return 检查出的错误（引用的组件不存在、无法编译的文件），有错误时不写入文件
+     */
+    public static List<String> build(File directory, String prefix, File bundleFile, Charset charset) throws IOException {
+        final File root = directory.getAbsoluteFile();
+        final String uriPrefix = prefix.endsWith("/") ? prefix : prefix + "/";
+
+        XViewManager xviewManager = new XViewManager(new XViewManager.XViewLoader() {
+            @Override
+            public InputStream load(String uri) {
+                File file = this.getFile(uri);
+                try {
+                    return file == null ? null : new FileInputStream(file);
+                } catch (FileNotFoundException e) {
+                    return null;
+                }
+            }
+
+            @Override
+            public File getFile(String uri) {
+                if (!uri.startsWith(uriPrefix)) {
+                    return null;
+                }
+
+                File file = new File(root, uri.substring(uriPrefix.length()));
+                return file.isFile() ? file : null;
+            }
+        }, false, 0, false);
+        xviewManager.setCharset(charset);
+
+        List<String> uris = new ArrayList<>();
+        collect(root, uriPrefix, uris);
+        Collections.sort(uris);
+
+        List<String> errors = new ArrayList<>();
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        Map<String, Set<String>> dependencies = new HashMap<>();
+
+        for (String uri : uris) {
+            try {
+                XView xview = xviewManager.load(uri);
+                dependencies.put(uri, xview.getXViewScript().getDependencies());
+
+                ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+                try (DataOutputStream out = new DataOutputStream(byteArrayOutputStream)) {
+                    new XViewCodeCache.Entry(xview).write(out);
+                }
+                entries.put(uri, byteArrayOutputStream.toByteArray());
+            } catch (Exception e) {
+                errors.add(uri + ": " + e);
+            }
+        }
+
+        // 检查组件引用
+        for (String uri : entries.keySet()) {
+            for (String dependency : dependencies.get(uri)) {
+                if (!entries.containsKey(dependency)) {
+                    errors.add(uri + ": component [" + dependency + "] not found");
+                }
+            }
+        }
+
+        if (errors.isEmpty()) {
+            write(bundleFile, charset, entries);
+        }
+
+        return errors;
+    }
+
+    private static void collect(File directory, String prefix, List<String> uris) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        for (File file : files) {
+            if (file.isDirectory()) {
+                collect(file, prefix + file.getName() + "/", uris);
+            } else if (file.isFile() && file.getName().endsWith(XView.FILE_EXT)) {
+                uris.add(prefix + file.getName());
+            }
+        }
+    }
+
+    private static void write(File bundleFile, Charset charset, Map<String, byte[]> entries) throws IOException {
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(header);
+
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(XViewCodeCache.FORMAT_VERSION);
+        out.writeUTF(charset.name());
+        out.writeInt(entries.size());
+
+        out.flush();
+
+        // 索引的长度与偏移的值无关，先写一次得到数据区的起始偏移
+        long offset = header.size() + writeIndex(new DataOutputStream(new ByteArrayOutputStream()), entries, 0);
+        writeIndex(out, entries, offset);
+        out.flush();
+
+        File tempFile = new File(bundleFile.getAbsolutePath() + ".tmp");
+        try (OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(tempFile))) {
+            header.writeTo(outputStream);
+            for (byte[] bytes : entries.values()) {
+                outputStream.write(bytes);
+            }
+        }
+        Files.move(tempFile.toPath(), bundleFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static int writeIndex(DataOutputStream out, Map<String, byte[]> entries, long offset) throws IOException {
+        for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeLong(offset);
+            out.writeInt(entry.getValue().length);
+            offset += entry.getValue().length;
+        }
+        out.flush();
+        return out.size();
+    }
+
+    /**
+     * 参数：根目录 [预编译包文件] [URI前缀] [字符集]
+     */
+    public static void main(String[] args) throws IOException {
+        File directory = args.length > 0 ? new File(args[0]) : new File(new File("").getAbsolutePath());
+        File bundleFile = args.length > 1 ? new File(args[1]) : new File(directory, directory.getName() + FILE_EXT);
+        String prefix = args.length > 2 ? args[2] : "/";
+        Charset charset = args.length > 3 ? Charset.forName(args[3]) : StandardCharsets.UTF_8;
+
+        System.out.println("编译XVIEW文件并生成预编译包：" + directory.getAbsolutePath() + " -> " + bundleFile.getAbsolutePath());
+
+        List<String> errors = build(directory, prefix, bundleFile, charset);
+        if (!errors.isEmpty()) {
+            for (String error : errors) {
+                System.out.println(error);
+            }
+            System.exit(1);
+        }
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer byteBuffer;
+
+        ByteBufferInputStream(ByteBuffer byteBuffer) {
+            this.byteBuffer = byteBuffer;
+        }
+
+        @Override
+        public int read() {
+            return this.byteBuffer.hasRemaining() ? this.byteBuffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!this.byteBuffer.hasRemaining()) {
+                return -1;
+            }
+
+            length = Math.min(length, this.byteBuffer.remaining());
+            this.byteBuffer.get(bytes, offset, length);
+            return length;
+        }
+
+        @Override
+        public int available() {
+            return this.byteBuffer.remaining();
+        }
+    }
+
+}
@@ -0,0 +1,169 @@
+package io.xview;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 已编译XView的缓存（以解析后的URI为键）。
+ * 线程安全，读取不加锁；超过容量时按淘汰策略移除条目。
+ */
+public class XViewCache {
+
+    public static final int DEFAULT_MAXIMUM_SIZE = 1024;
+
+    /**
+     * 淘汰策略：LRU淘汰最久未访问的条目，FIFO淘汰最早加入的条目。
+     */
+    public enum Eviction {
+        LRU, FIFO
+    }
+
+    private final int maximumSize;
+
+    private final Eviction eviction;
+
+    private final ConcurrentHashMap<String, Entry> entries;
+
+    private final AtomicLong clock = new AtomicLong();
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    public XViewCache() {
+        this(DEFAULT_MAXIMUM_SIZE, Eviction.LRU);
+    }
+
+    public XViewCache(int maximumSize) {
+        this(maximumSize, Eviction.LRU);
+    }
+
+    /**
+     * @param maximumSize 最大缓存数量，小于等于0时禁用缓存
+     */
+    public XViewCache(int maximumSize, Eviction eviction) {
+        this.maximumSize = maximumSize;
+        this.eviction = eviction == null ? Eviction.LRU : eviction;
+        this.entries = new ConcurrentHashMap<>(Math.max(16, Math.min(maximumSize, DEFAULT_MAXIMUM_SIZE)));
+    }
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    public Eviction getEviction() {
+        return eviction;
+    }
+
+    public boolean isEnabled() {
+        return this.maximumSize > 0;
+    }
+
+    public XView get(String uri) {
+        Entry entry = this.entries.get(uri);
+
+        if (entry == null) {
+            this.missCount.incrementAndGet();
+            return null;
+        }
+
+        if (this.eviction == Eviction.LRU) {
+            entry.stamp = this.clock.incrementAndGet();
+        }
+
+        this.hitCount.incrementAndGet();
+        return entry.xview;
+    }
+
+    /**
+     * 放入缓存。如果其他线程已经放入了同一URI的XView，则返回已存在的实例。
+     */
+    public XView put(String uri, XView xview) {
+        if (!this.isEnabled()) {
+            return xview;
+        }
+
+        Entry entry = new Entry(xview, this.clock.incrementAndGet());
+        Entry existing = this.entries.putIfAbsent(uri, entry);
+        if (existing != null) {
+            return existing.xview;
+        }
+
+        while (this.entries.size() > this.maximumSize) {
+            if (!this.evictOne()) {
+                break;
+            }
+        }
+
+        return xview;
+    }
+
+    public XView remove(String uri) {
+        Entry entry = this.entries.remove(uri);
+        return entry == null ? null : entry.xview;
+    }
+
+    /**
+     * 只在缓存的是指定实例时移除。
+     */
+    public boolean remove(String uri, XView xview) {
+        Entry entry = this.entries.get(uri);
+        return entry != null && entry.xview == xview && this.entries.remove(uri, entry);
+    }
+
+    public void clear() {
+        this.entries.clear();
+    }
+
+    public int size() {
+        return this.entries.size();
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * 淘汰一个条目（时间戳最小者）。只在超出容量时调用，因此线性扫描的开销可以接受。
+     */
+    private boolean evictOne() {
+        String victimKey = null;
+        Entry victim = null;
+
+        for (Map.Entry<String, Entry> i : this.entries.entrySet()) {
+            if (victim == null || i.getValue().stamp < victim.stamp) {
+                victimKey = i.getKey();
+                victim = i.getValue();
+            }
+        }
+
+        if (victim != null && this.entries.remove(victimKey, victim)) {
+            this.evictionCount.incrementAndGet();
+            return true;
+        }
+
+        return victim != null;
+    }
+
+    private static class Entry {
+
+        private final XView xview;
+
+        private volatile long stamp;
+
+        private Entry(XView xview, long stamp) {
+            this.xview = xview;
+            this.stamp = stamp;
+        }
+    }
+
+}
@@ -0,0 +1,50 @@
+package io.xview;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * 分块接收渲染输出，见 {@link XView#execute(XViewChunkConsumer, java.util.Map, Object)}。
+ * 缓冲区写满、xview:flush 与渲染结束时各产生一块；accept返回前阻塞即为背压（例如等待AsynchronousSocketChannel写完成）。
+ */
+public interface XViewChunkConsumer {
+
+    /**
+     * @param chunk 输出的内容（position到limit），返回后会被复用，需要在返回前消费或复制
+     */
+    void accept(ByteBuffer chunk) throws IOException;
+
+    /**
+     * 将XViewChunkConsumer适配为WritableByteChannel。
+     */
+    class Channel implements WritableByteChannel {
+
+        private final XViewChunkConsumer consumer;
+
+        private boolean open = true;
+
+        public Channel(XViewChunkConsumer consumer) {
+            this.consumer = consumer;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            int length = src.remaining();
+            this.consumer.accept(src);
+            src.position(src.limit());
+            return length;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return this.open;
+        }
+
+        @Override
+        public void close() {
+            this.open = false;
+        }
+    }
+
+}
@@ -0,0 +1,409 @@
+package io.xview;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 持久化的代码缓存（磁盘目录）。
+ * 保存xview文件编译后的脚本、静态片段、参数默认值与引用关系，以文件内容与引擎版本的摘要为键，
+ * 重启后内容未变化的文件不需要再解析XML与生成代码；可选开启Nashorn自身的持久化类缓存，减少脚本编译耗时。
+ */
+public class XViewCodeCache {
+
+    /**
+     * 缓存格式与代码生成的版本，生成的代码有变化时需要修改，使旧的缓存失效
+     */
+    public static final int FORMAT_VERSION = 7;
+
+    public static final String FILE_EXT = ".xvc";
+
+    public static final String NASHORN_DIRECTORY = "nashorn";
+
+    private static final int MAGIC = 0x58564343;
+
+    private final File directory;
+
+    private final boolean nashornCodeCache;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong writeCount = new AtomicLong();
+    private final AtomicLong errorCount = new AtomicLong();
+
+    public XViewCodeCache(File directory) {
+        this(directory, false);
+    }
+
+    /**
+     * @param nashornCodeCache 是否同时开启Nashorn的持久化类缓存（保存在directory下的nashorn目录中）
+     */
+    public XViewCodeCache(File directory, boolean nashornCodeCache) {
+        this.directory = directory;
+        this.nashornCodeCache = nashornCodeCache;
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new XViewException("unable to create code cache directory [" + directory + "]");
+        }
+
+        this.removeStale();
+    }
+
+    /**
+     * 删除其他格式版本的缓存文件（升级后旧版本的键不会再被读取，不删除会一直留在磁盘上）。
+     */
+    private void removeStale() {
+        File[] files = this.directory.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        for (File file : files) {
+            if (!file.isFile() || !file.getName().endsWith(FILE_EXT)) {
+                continue;
+            }
+
+            boolean stale;
+            try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+                stale = in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION;
+            } catch (IOException e) {
+                stale = true;
+            }
+
+            if (stale) {
+                file.delete();
+            }
+        }
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    public boolean isNashornCodeCache() {
+        return nashornCodeCache;
+    }
+
+    /**
+     * Nashorn持久化类缓存的目录，未开启时为null。
+     */
+    public File getNashornDirectory() {
+        return this.nashornCodeCache ? new File(this.directory, NASHORN_DIRECTORY) : null;
+    }
+
+    /**
+     * 计算缓存键：文件内容与附加信息（引擎版本、字符集等）的SHA-256摘要。
+     */
+    public String key(byte[] source, String salt) {
+        MessageDigest messageDigest;
+        try {
+            messageDigest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new XViewException(e);
+        }
+
+        messageDigest.update((FORMAT_VERSION + "\n" + salt + "\n").getBytes(StandardCharsets.UTF_8));
+        messageDigest.update(source);
+
+        byte[] digest = messageDigest.digest();
+        StringBuilder stringBuilder = new StringBuilder(digest.length * 2);
+        for (byte b : digest) {
+            stringBuilder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return stringBuilder.toString();
+    }
+
+    /**
+     * 读取缓存，不存在或已损坏时返回null（损坏的文件会被删除）。
+     */
+    public Entry read(String key) {
+        File file = new File(this.directory, key + FILE_EXT);
+
+        if (!file.isFile()) {
+            this.missCount.incrementAndGet();
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            Entry entry = Entry.read(in);
+            this.hitCount.incrementAndGet();
+            return entry;
+        } catch (IOException | RuntimeException e) {
+            this.errorCount.incrementAndGet();
+            this.missCount.incrementAndGet();
+            file.delete();
+            return null;
+        }
+    }
+
+    /**
+     * 写入缓存（先写入临时文件再改名，其他进程不会读到不完整的文件），失败时只计数，不影响渲染。
+     */
+    public void write(String key, Entry entry) {
+        File file = new File(this.directory, key + FILE_EXT);
+        File tempFile = null;
+
+        try {
+            tempFile = File.createTempFile(key, ".tmp", this.directory);
+
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+                entry.write(out);
+            }
+
+            try {
+                Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            this.writeCount.incrementAndGet();
+        } catch (IOException e) {
+            this.errorCount.incrementAndGet();
+            if (tempFile != null) {
+                tempFile.delete();
+            }
+        }
+    }
+
+    /**
+     * 删除所有缓存文件（不包括Nashorn的类缓存）。
+     */
+    public void clear() {
+        File[] files = this.directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.isFile() && file.getName().endsWith(FILE_EXT)) {
+                    file.delete();
+                }
+            }
+        }
+    }
+
+    public long getHitCount() {
+        return this.hitCount.get();
+    }
+
+    public long getMissCount() {
+        return this.missCount.get();
+    }
+
+    public long getWriteCount() {
+        return this.writeCount.get();
+    }
+
+    public long getErrorCount() {
+        return this.errorCount.get();
+    }
+
+    /**
+     * 一个xview文件的编译结果。
+     */
+    public static class Entry {
+
+        private String uri;
+
+        private Map<String, String> attributes;
+
+        private Set<String> dependencies;
+
+        private String script;
+
+        private byte[][] segments;
+
+        private String[] properties;
+
+        private long cacheTtl;
+
+        private String[] cacheKeys;
+
+        private List<XViewScript.CallSite> callSites;
+
+        public Entry(String uri, Map<String, String> attributes, Set<String> dependencies, String script, byte[][] segments, String[] properties,
+                     long cacheTtl, String[] cacheKeys, List<XViewScript.CallSite> callSites) {
+            this.uri = uri;
+            this.attributes = attributes;
+            this.dependencies = dependencies;
+            this.script = script;
+            this.segments = segments;
+            this.properties = properties;
+            this.cacheTtl = cacheTtl;
+            this.cacheKeys = cacheKeys;
+            this.callSites = callSites;
+        }
+
+        public Entry(XView xview) {
+            this(xview.getUri(), xview.getDefaultAttributes(), xview.getXViewScript().getDependencies(), xview.getXViewScript().getScript(),
+                    xview.getXViewScript().getSegments(), xview.getXViewScript().getPropertyNames(),
+                    xview.getXViewScript().getCacheTtl(), xview.getXViewScript().getCacheKeys(), xview.getXViewScript().getCallSites());
+        }
+
+        /**
+         * 写入缓存时的URI（只用于诊断，同样内容的文件可以共用缓存）
+         */
+        public String getUri() {
+            return uri;
+        }
+
+        public Map<String, String> getAttributes() {
+            return attributes;
+        }
+
+        public Set<String> getDependencies() {
+            return dependencies;
+        }
+
+        public String getScript() {
+            return script;
+        }
+
+        public byte[][] getSegments() {
+            return segments;
+        }
+
+        public String[] getProperties() {
+            return properties;
+        }
+
+        public long getCacheTtl() {
+            return cacheTtl;
+        }
+
+        public String[] getCacheKeys() {
+            return cacheKeys;
+        }
+
+        public List<XViewScript.CallSite> getCallSites() {
+            return callSites;
+        }
+
+        public void write(DataOutputStream out) throws IOException {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            writeString(out, this.uri);
+
+            out.writeInt(this.attributes.size());
+            for (Map.Entry<String, String> attribute : this.attributes.entrySet()) {
+                writeString(out, attribute.getKey());
+                writeString(out, attribute.getValue());
+            }
+
+            out.writeInt(this.dependencies.size());
+            for (String dependency : this.dependencies) {
+                writeString(out, dependency);
+            }
+
+            writeString(out, this.script);
+
+            out.writeInt(this.segments.length);
+            for (byte[] segment : this.segments) {
+                out.writeInt(segment.length);
+                out.write(segment);
+            }
+
+            out.writeInt(this.properties.length);
+            for (String property : this.properties) {
+                writeString(out, property);
+            }
+
+            out.writeLong(this.cacheTtl);
+            out.writeInt(this.cacheKeys == null ? -1 : this.cacheKeys.length);
+            if (this.cacheKeys != null) {
+                for (String cacheKey : this.cacheKeys) {
+                    writeString(out, cacheKey);
+                }
+            }
+
+            out.writeInt(this.callSites.size());
+            for (XViewScript.CallSite callSite : this.callSites) {
+                writeString(out, callSite.getUri());
+                out.writeInt(callSite.getNames().length);
+                for (int i = 0; i < callSite.getNames().length; i++) {
+                    writeString(out, callSite.getNames()[i]);
+                    writeString(out, callSite.getValues()[i]);
+                }
+            }
+        }
+
+        public static Entry read(DataInputStream in) throws IOException {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new IOException("invalid code cache format");
+            }
+
+            String uri = readString(in);
+
+            int size = in.readInt();
+            Map<String, String> attributes = new LinkedHashMap<>(size * 4 / 3 + 1);
+            for (int i = 0; i < size; i++) {
+                attributes.put(readString(in), readString(in));
+            }
+
+            size = in.readInt();
+            Set<String> dependencies = new LinkedHashSet<>(size * 4 / 3 + 1);
+            for (int i = 0; i < size; i++) {
+                dependencies.add(readString(in));
+            }
+
+            String script = readString(in);
+
+            byte[][] segments = new byte[in.readInt()][];
+            for (int i = 0; i < segments.length; i++) {
+                segments[i] = new byte[in.readInt()];
+                in.readFully(segments[i]);
+            }
+
+            String[] properties = new String[in.readInt()];
+            for (int i = 0; i < properties.length; i++) {
+                properties[i] = readString(in);
+            }
+
+            long cacheTtl = in.readLong();
+            size = in.readInt();
+            String[] cacheKeys = size < 0 ? null : new String[size];
+            for (int i = 0; i < size; i++) {
+                cacheKeys[i] = readString(in);
+            }
+
+            size = in.readInt();
+            List<XViewScript.CallSite> callSites = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                String callUri = readString(in);
+                String[] names = new String[in.readInt()];
+                String[] values = new String[names.length];
+                for (int j = 0; j < names.length; j++) {
+                    names[j] = readString(in);
+                    values[j] = readString(in);
+                }
+                callSites.add(new XViewScript.CallSite(callUri, names, values));
+            }
+
+            return new Entry(uri, attributes, dependencies, script, segments, properties, cacheTtl, cacheKeys, callSites);
+        }
+
+        private static void writeString(DataOutputStream out, String value) throws IOException {
+            if (value == null) {
+                out.writeInt(-1);
+                return;
+            }
+
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        private static String readString(DataInputStream in) throws IOException {
+            int length = in.readInt();
+            if (length < 0) {
+                return null;
+            }
+
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+}
@@ -1,113 +1,970 @@
 package io.xview;
 
 
+import io.xview.script.BindingsPool;
 import io.xview.script.ScriptEnvironment;
 import io.xview.script.ScriptFragment;
 
 import javax.script.*;
 import java.io.*;
 import java.net.MalformedURLException;
+import java.net.URISyntaxException;
 import java.net.URL;
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 public class XViewManager {
 
     public static final String SCRIPT_LANGUAGE = "ecmascript";
 
+    public static final String NASHORN_CODE_CACHE_PROPERTY = "nashorn.persistent.code.cache";
+
     private XViewLoader xviewLoader;
     private boolean validateSchema;
 
     private int bufferedBindingsCount;
     private boolean compileFlag;
+    private int scriptEnginePoolSize;
 
     private ScriptEnvironment scriptEnvironment;
-    private List<Bindings> bufferedBindings;
+    private BindingsPool bindingsPool;
+
+    private XViewCache xviewCache;
+
+    private XViewOutputCache xviewOutputCache = new XViewOutputCache();
+
+    private volatile boolean parallelRendering;
+    private volatile Executor forkExecutor;
+
+    private volatile Executor renderExecutor;
+    private volatile ScheduledExecutorService timeoutScheduler;
+
+    private volatile XViewWatcher xviewWatcher;
+
+    private boolean streamingParser;
+
+    private XViewSchemaCache xviewSchemaCache;
+
+    private volatile XViewMetrics metrics = XViewMetrics.NOOP;
+    private volatile boolean metricsEnabled;
+
+    private volatile XViewProfiler xviewProfiler;
+
+    private volatile XViewBudget xviewBudget = XViewBudget.UNLIMITED;
+
+    private volatile int inlineThreshold;
+
+    private volatile XViewCodeCache xviewCodeCache;
+
+    private volatile XViewBundle xviewBundle;
+    private volatile String codeCacheSalt;
+
+    private Charset charset = StandardCharsets.UTF_8;
+    private int writerBufferSize = XViewWriter.DEFAULT_BUFFER_SIZE;
+    private int writerFlushThreshold = XViewWriter.DEFAULT_BUFFER_SIZE;
+    private int bufferedWritersCount = 64;
+
+    private Queue<XViewWriter> bufferedWriters = new ConcurrentLinkedQueue<>();
+    private AtomicInteger bufferedWritersSize = new AtomicInteger();
+
+    private Queue<XViewWriter> bufferedDirectWriters = new ConcurrentLinkedQueue<>();
+    private AtomicInteger bufferedDirectWritersSize = new AtomicInteger();
 
     public XViewManager(XViewLoader xviewLoader, boolean validateSchema, int bufferedBindingsCount, boolean compileFlag) {
+        this(xviewLoader, validateSchema, bufferedBindingsCount, compileFlag, 1);
+    }
+
+    /**
+     * @param scriptEnginePoolSize 脚本引擎数量，多个线程按线程ID分段使用各自的引擎并发渲染
+     */
+    public XViewManager(XViewLoader xviewLoader, boolean validateSchema, int bufferedBindingsCount, boolean compileFlag, int scriptEnginePoolSize) {
         this.xviewLoader = xviewLoader;
         this.validateSchema = validateSchema;
         this.compileFlag = compileFlag;
         this.bufferedBindingsCount = bufferedBindingsCount;
+        this.scriptEnginePoolSize = scriptEnginePoolSize;
 
         this.init();
     }
 
     private void init() {
-        this.scriptEnvironment = new ScriptEnvironment();
+        this.xviewCache = new XViewCache();
+        this.xviewSchemaCache = new XViewSchemaCache(this.xviewLoader);
 
-        this.bufferedBindings = new ArrayList<>();
-        for (int i = 0; i < this.bufferedBindingsCount; i++) {
-            try {
-                this.bufferedBindings.add(this.scriptEnvironment.getScriptEngine(SCRIPT_LANGUAGE).createBindings());
-            } catch (ScriptException e) {
-                throw new XViewException(e);
-            }
-        }
+        this.initScriptEnvironment(null);
     }
 
-    private Bindings popBindings() {
-        if (!this.bufferedBindings.isEmpty()) {
-            synchronized (this.bufferedBindings) {
-                if (!this.bufferedBindings.isEmpty()) {
-                    return this.bufferedBindings.remove(0);
-                }
-            }
-        }
+    private void initScriptEnvironment(String[] engineArguments) {
+        ScriptEnvironment scriptEnvironment = new ScriptEnvironment(this.scriptEnginePoolSize, engineArguments);
+        BindingsPool bindingsPool;
 
         try {
-            return this.scriptEnvironment.getScriptEngine(SCRIPT_LANGUAGE).createBindings();
+            bindingsPool = new BindingsPool(scriptEnvironment, SCRIPT_LANGUAGE, this.bufferedBindingsCount, this.bufferedBindingsCount);
         } catch (ScriptException e) {
             throw new XViewException(e);
         }
+
+        if (this.bindingsPool != null) {
+            bindingsPool.setListener(this.bindingsPool.getListener());
+        }
+
+        this.scriptEnvironment = scriptEnvironment;
+        this.bindingsPool = bindingsPool;
+        this.codeCacheSalt = null;
+    }
+
+    /**
+     * 获取一个绑定到输出流的XViewWriter，用完后需要通过 {@link #pushWriter(XViewWriter)} 归还。
+     */
+    protected XViewWriter popWriter(OutputStream outputStream) {
+        XViewWriter writer = this.bufferedWriters.poll();
+
+        if (writer != null) {
+            this.bufferedWritersSize.decrementAndGet();
+        } else {
+            writer = new XViewWriter(this.charset, this.writerBufferSize, this.writerFlushThreshold);
+        }
+
+        return this.budget(writer.open(outputStream));
     }
 
-    private void pushBindings(Bindings bindings) {
-        if (this.bufferedBindings.size() < this.bufferedBindingsCount) {
-            bindings.clear();
+    /**
+     * 获取一个绑定到通道的XViewWriter（使用直接缓冲区），用完后需要通过 {@link #pushWriter(XViewWriter)} 归还。
+     */
+    protected XViewWriter popWriter(WritableByteChannel channel) {
+        XViewWriter writer = this.bufferedDirectWriters.poll();
 
-            synchronized (this.bufferedBindings) {
-                if (this.bufferedBindings.size() < this.bufferedBindingsCount) {
-                    this.bufferedBindings.add(bindings);
-                }
-            }
+        if (writer != null) {
+            this.bufferedDirectWritersSize.decrementAndGet();
+        } else {
+            writer = new XViewWriter(this.charset, this.writerBufferSize, this.writerFlushThreshold, true);
+        }
+
+        return this.budget(writer.open(channel));
+    }
+
+    /**
+     * 按当前的限制开始计算一次渲染的时间与输出字节数。
+     */
+    private XViewWriter budget(XViewWriter writer) {
+        XViewBudget xviewBudget = this.xviewBudget;
+        if (xviewBudget != XViewBudget.UNLIMITED) {
+            writer.setBudget(xviewBudget.deadline(), xviewBudget.getMaxBytes() > 0 ? xviewBudget.getMaxBytes() : Long.MAX_VALUE);
+        }
+        return writer;
+    }
+
+    protected void pushWriter(XViewWriter writer) {
+        writer.release();
+
+        if (writer.getCharset() != this.charset || writer.getBufferSize() != this.writerBufferSize || writer.getFlushThreshold() != this.writerFlushThreshold) {
+            return;
+        }
+
+        Queue<XViewWriter> writers = writer.isDirect() ? this.bufferedDirectWriters : this.bufferedWriters;
+        AtomicInteger writersSize = writer.isDirect() ? this.bufferedDirectWritersSize : this.bufferedWritersSize;
+
+        if (writersSize.incrementAndGet() <= this.bufferedWritersCount) {
+            writers.offer(writer);
+        } else {
+            writersSize.decrementAndGet();
         }
     }
 
-    protected void execute(XView xview, Map<String, Object> attributes, OutputStream outputStream) {
+    protected void execute(XView xview, Map<String, Object> attributes, XViewWriter writer, XViewScriptObject caller) {
         if (xview.getXViewManager() != this) {
             throw new XViewException(xview.getUri() + " -> XViewManager not match");
         }
 
-        Bindings bindings = this.popBindings();
+        boolean metricsEnabled = this.metricsEnabled;
+        long begin = metricsEnabled ? System.nanoTime() : 0;
+        long bytes = metricsEnabled ? writer.getCount() : 0;
+        int depth = caller == null ? 0 : caller.getDepth() + 1;
+
+        int maxDepth = this.xviewBudget.getMaxDepth();
+        if (maxDepth > 0 && depth > maxDepth) {
+            throw new XViewBudget.ExceededException(xview.getUri() + " -> render depth exceeded " + maxDepth);
+        }
+
+        XViewProfiler xviewProfiler = this.xviewProfiler;
+        XViewProfiler.Profile profile = caller != null ? caller.getProfile() : (xviewProfiler != null ? xviewProfiler.sample() : null);
+        if (profile != null && !profile.isCurrentThread()) {
+            profile = null;
+        }
+        XViewProfiler.Node profileNode = null;
+        long profileBegin = 0;
+        long profileBytes = 0;
+        if (profile != null) {
+            profileNode = profile.enter(xview.getUri());
+            profileBegin = System.nanoTime();
+            profileBytes = writer.getCount();
+        }
+
+        Bindings bindings = this.bindingsPool.pop();
+        XViewScriptObject xviewScriptObject = null;
 
         try {
             bindings.putAll(attributes);
-            bindings.put("xview", new XViewScriptObject(xview, bindings, outputStream));
 
-            ScriptFragment scriptFragment = xview.getXViewScript().getScriptFragment();
-            if (scriptFragment == null) {
-                String filename = xview.getUri() + ".js";
-                scriptFragment = this.scriptEnvironment.createScriptFragment(SCRIPT_LANGUAGE, this.compileFlag, filename, xview.getXViewScript().getScript());
-                xview.getXViewScript().setScriptFragment(scriptFragment);
-            }
+            // 上层作用域只引用调用方的ScriptContext，不复制其中的变量
+            ScriptContext context = new XViewScriptContext(bindings, caller == null ? null : new ScopeBindings(caller.getContext()));
+            xviewScriptObject = new XViewScriptObject(xview, context, writer, depth, profile);
+            bindings.put("xview", xviewScriptObject);
 
-            scriptFragment.eval(bindings);
+            this.compile(xview).eval(context);
+        } catch (XViewBudget.ExceededException e) {
+            // 不逐层包装，调用方可以直接识别
+            throw e;
         } catch (Exception e) {
             throw new XViewException(xview.getUri(), e);
         } finally {
-            this.pushBindings(bindings);
+            if (xviewScriptObject != null) {
+                xviewScriptObject.awaitForks();
+            }
+            this.bindingsPool.push(bindings);
+
+            if (metricsEnabled) {
+                this.metrics.onRender(xview.getUri(), System.nanoTime() - begin, writer.getCount() - bytes, depth);
+            }
+
+            if (profile != null) {
+                profile.exit(profileNode, System.nanoTime() - profileBegin, writer.getCount() - profileBytes);
+
+                if (caller == null && xviewProfiler != null) {
+                    xviewProfiler.record(profile);
+                }
+            }
         }
     }
 
+    /**
+     * 使用输出缓存执行：缓存键为URI与缓存键参数（xview:cache 的keys，默认为所有声明的参数）的值，
+     * 未命中时渲染到单独的缓冲区，再写入输出并放入缓存。组件通过作用域链读取的未声明变量不在缓存键中。
+     * 参数值不是字符串、数值、布尔值或null时不使用缓存（见 {@link XViewOutputCache#key(String, Object...)}）。
+     */
+    protected void executeCached(XView xview, Map<String, Object> attributes, XViewWriter writer, XViewScriptObject caller) {
+        XViewOutputCache xviewOutputCache = this.xviewOutputCache;
+        if (!xviewOutputCache.isEnabled()) {
+            this.execute(xview, attributes, writer, caller);
+            return;
+        }
+
+        String[] cacheKeys = xview.getXViewScript().getCacheKeys();
+        Object[] values;
+        if (cacheKeys != null) {
+            values = new Object[cacheKeys.length];
+            for (int i = 0; i < cacheKeys.length; i++) {
+                values[i] = attributes.get(cacheKeys[i]);
+            }
+        } else {
+            values = new Object[xview.getDefaultAttributes().size()];
+            int i = 0;
+            for (String key : xview.getDefaultAttributes().keySet()) {
+                values[i++] = attributes.get(key);
+            }
+        }
+        String key = XViewOutputCache.key(xview.getUri(), values);
+        if (key == null) {
+            this.execute(xview, attributes, writer, caller);
+            return;
+        }
+
+        try {
+            byte[] bytes = xviewOutputCache.get(key);
+
+            if (bytes == null) {
+                ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+                XViewWriter cacheWriter = this.popWriter(byteArrayOutputStream);
+                cacheWriter.setBudget(writer.getDeadline(), writer.getMaxBytes() - writer.getCount());
+                try {
+                    this.execute(xview, attributes, cacheWriter, caller);
+                    cacheWriter.flush();
+                } finally {
+                    this.pushWriter(cacheWriter);
+                }
+
+                bytes = byteArrayOutputStream.toByteArray();
+                xviewOutputCache.put(key, bytes, xview.getXViewScript().getCacheTtl());
+            }
+
+            writer.write(bytes);
+        } catch (IOException e) {
+            throw new XViewException(xview.getUri(), e);
+        }
+    }
+
+    /**
+     * 在执行器中渲染一个组件到单独的缓冲区，返回渲染出的字节。
+     */
+    protected Future<byte[]> fork(final XView xview, final Map<String, Object> attributes, final XViewScriptObject caller) {
+        // 与调用方共用时间限制，输出字节数限制为调用方剩余的字节数
+        final long deadline = caller.getWriter().getDeadline();
+        final long maxBytes = caller.getWriter().getMaxBytes() - caller.getWriter().getCount();
+
+        FutureTask<byte[]> futureTask = new FutureTask<>(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws Exception {
+                ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+                XViewWriter forkWriter = XViewManager.this.popWriter(byteArrayOutputStream);
+                forkWriter.setBudget(deadline, maxBytes);
+                try {
+                    xview.render(forkWriter, attributes, caller);
+                    forkWriter.flush();
+                } finally {
+                    XViewManager.this.pushWriter(forkWriter);
+                }
+                return byteArrayOutputStream.toByteArray();
+            }
+        });
+
+        try {
+            this.getForkExecutor().execute(futureTask);
+        } catch (RejectedExecutionException e) {
+            // 执行器已满或已关闭时在当前线程执行
+            futureTask.run();
+        }
+
+        return futureTask;
+    }
+
+    public boolean isParallelRendering() {
+        return parallelRendering;
+    }
+
+    /**
+     * 开启并行渲染：声明了 xview:parallel="true" 的组件调用在执行器中并行渲染，输出按文档顺序拼接。
+     * 并行渲染的组件应只依赖调用参数（通过作用域链读取调用方变量时与调用方并发访问）。
+     */
+    public void setParallelRendering(boolean parallelRendering) {
+        this.parallelRendering = parallelRendering;
+    }
+
+    /**
+     * 并行渲染使用的执行器，没有设置时使用虚拟线程（Java 21及以上）或缓存的守护线程池。
+     */
+    public Executor getForkExecutor() {
+        Executor forkExecutor = this.forkExecutor;
+
+        if (forkExecutor == null) {
+            synchronized (this) {
+                if ((forkExecutor = this.forkExecutor) == null) {
+                    forkExecutor = newForkExecutor();
+                    this.forkExecutor = forkExecutor;
+                }
+            }
+        }
+
+        return forkExecutor;
+    }
+
+    public void setForkExecutor(Executor forkExecutor) {
+        this.forkExecutor = forkExecutor;
+    }
+
+    private static Executor newForkExecutor() {
+        Executor executor = newVirtualThreadExecutor();
+        return executor != null ? executor : Executors.newCachedThreadPool(newThreadFactory("xview-fork-"));
+    }
+
+    /**
+     * 虚拟线程执行器（Java 21及以上），不支持时返回null。
+     */
+    private static Executor newVirtualThreadExecutor() {
+        try {
+            return (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static ThreadFactory newThreadFactory(final String namePrefix) {
+        final AtomicInteger threadCount = new AtomicInteger();
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, namePrefix + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    /**
+     * 异步渲染使用的执行器，没有设置时使用虚拟线程（Java 21及以上）或固定大小的守护线程池（CPU数量的4倍）。
+     */
+    public Executor getRenderExecutor() {
+        Executor renderExecutor = this.renderExecutor;
+
+        if (renderExecutor == null) {
+            synchronized (this) {
+                if ((renderExecutor = this.renderExecutor) == null) {
+                    renderExecutor = newVirtualThreadExecutor();
+                    if (renderExecutor == null) {
+                        renderExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() * 4, newThreadFactory("xview-render-"));
+                    }
+                    this.renderExecutor = renderExecutor;
+                }
+            }
+        }
+
+        return renderExecutor;
+    }
+
+    public void setRenderExecutor(Executor renderExecutor) {
+        this.renderExecutor = renderExecutor;
+    }
+
+    private ScheduledExecutorService getTimeoutScheduler() {
+        ScheduledExecutorService timeoutScheduler = this.timeoutScheduler;
+
+        if (timeoutScheduler == null) {
+            synchronized (this) {
+                if ((timeoutScheduler = this.timeoutScheduler) == null) {
+                    ScheduledThreadPoolExecutor scheduledThreadPoolExecutor = new ScheduledThreadPoolExecutor(1, newThreadFactory("xview-timeout-"));
+                    scheduledThreadPoolExecutor.setRemoveOnCancelPolicy(true);
+                    timeoutScheduler = scheduledThreadPoolExecutor;
+                    this.timeoutScheduler = timeoutScheduler;
+                }
+            }
+        }
+
+        return timeoutScheduler;
+    }
+
+    public CompletableFuture<Void> executeAsync(String uri, OutputStream outputStream, Map<String, Object> attributes) {
+        return this.executeAsync(uri, outputStream, attributes, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 异步渲染：在执行器中加载并渲染，返回的CompletableFuture在渲染结束后完成。
+     * 超时或取消时中断渲染线程，渲染在下一次组件调用或输出缓冲区写出时以异常结束（不输出内容的纯脚本循环无法被中断）。
+     *
+     * @param timeout 超时时间，小于等于0时不限制
+     */
+    public CompletableFuture<Void> executeAsync(final String uri, final OutputStream outputStream, final Map<String, Object> attributes, long timeout, TimeUnit unit) {
+        return this.submit(new Runnable() {
+            @Override
+            public void run() {
+                XViewManager.this.load(uri).execute(outputStream, attributes, null);
+            }
+        }, timeout, unit);
+    }
+
+    /**
+     * 在异步渲染的执行器中执行渲染任务。
+     */
+    protected CompletableFuture<Void> submit(final Runnable render, long timeout, TimeUnit unit) {
+        final RenderFuture future = new RenderFuture();
+
+        try {
+            this.getRenderExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (!future.start()) {
+                        return;
+                    }
+
+                    try {
+                        render.run();
+                        future.complete(null);
+                    } catch (Throwable e) {
+                        future.completeExceptionally(e);
+                    } finally {
+                        future.finish();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+            return future;
+        }
+
+        if (timeout > 0 && !future.isDone()) {
+            final ScheduledFuture<?> timeoutFuture = this.getTimeoutScheduler().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    future.timeout();
+                }
+            }, timeout, unit);
+
+            future.whenComplete(new BiConsumer<Void, Throwable>() {
+                @Override
+                public void accept(Void result, Throwable e) {
+                    timeoutFuture.cancel(false);
+                }
+            });
+        }
+
+        return future;
+    }
+
+    /**
+     * 异步渲染的结果：取消或超时时中断正在执行的线程（只在渲染期间中断，结束时清除中断状态，不影响线程池中的后续任务）。
+     */
+    private static class RenderFuture extends CompletableFuture<Void> {
+
+        private Thread thread;
+
+        private boolean finished;
+
+        synchronized boolean start() {
+            if (this.isDone()) {
+                return false;
+            }
+
+            this.thread = Thread.currentThread();
+            return true;
+        }
+
+        synchronized void finish() {
+            this.thread = null;
+            this.finished = true;
+            Thread.interrupted();
+        }
+
+        synchronized void interrupt() {
+            if (this.thread != null && !this.finished) {
+                this.thread.interrupt();
+            }
+        }
+
+        void timeout() {
+            if (this.completeExceptionally(new TimeoutException("render timeout"))) {
+                this.interrupt();
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled && mayInterruptIfRunning) {
+                this.interrupt();
+            }
+            return cancelled;
+        }
+    }
+
+    public int getInlineThreshold() {
+        return inlineThreshold;
+    }
+
+    /**
+     * 设置内联组件的代码长度上限（字符数），小于等于0时不内联（默认），见 {@link XViewScript#inline(int)}。
+     * 只影响之后编译的文件。
+     */
+    public void setInlineThreshold(int inlineThreshold) {
+        this.inlineThreshold = inlineThreshold;
+    }
+
+    public XViewBudget getXViewBudget() {
+        return xviewBudget;
+    }
+
+    /**
+     * 设置每次渲染的资源限制，传入null时不限制（默认）。
+     */
+    public void setXViewBudget(XViewBudget xviewBudget) {
+        this.xviewBudget = xviewBudget == null ? XViewBudget.UNLIMITED : xviewBudget;
+    }
+
+    public XViewOutputCache getXViewOutputCache() {
+        return xviewOutputCache;
+    }
+
+    /**
+     * 设置组件输出缓存，传入null或 new XViewOutputCache(0) 时禁用。
+     */
+    public void setXViewOutputCache(XViewOutputCache xviewOutputCache) {
+        this.xviewOutputCache = xviewOutputCache == null ? new XViewOutputCache(0) : xviewOutputCache;
+    }
+
+    /**
+     * 获取XView的脚本片段，首次调用时编译。
+     */
+    protected ScriptFragment compile(XView xview) throws ScriptException {
+        ScriptFragment scriptFragment = xview.getXViewScript().getScriptFragment();
+
+        if (scriptFragment == null) {
+            boolean metricsEnabled = this.metricsEnabled;
+            long begin = metricsEnabled ? System.nanoTime() : 0;
+
+            String filename = xview.getUri() + ".js";
+            int inlineThreshold = this.inlineThreshold;
+            String script = inlineThreshold > 0 ? xview.getXViewScript().inline(inlineThreshold) : xview.getXViewScript().getScript();
+            scriptFragment = this.scriptEnvironment.createScriptFragment(SCRIPT_LANGUAGE, this.compileFlag, filename, script);
+            xview.getXViewScript().setScriptFragment(scriptFragment);
+
+            if (metricsEnabled) {
+                this.metrics.onCompile(xview.getUri(), System.nanoTime() - begin);
+            }
+        }
+
+        return scriptFragment;
+    }
+
+    public XViewWarmup warmup(Collection<String> uris, int iterations) {
+        return this.warmup(uris, iterations, null, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * 预热：在executor中并行加载并编译（在所有脚本引擎上）指定的xview文件，
+     * iterations大于0时再使用示例参数渲染若干次（输出被丢弃），使脚本与渲染代码得到JIT编译。
+     * 返回的进度对象可以用于就绪检查。
+     *
+     * @param sampleAttributes 渲染时的调用参数，可以为null
+     */
+    public XViewWarmup warmup(Collection<String> uris, final int iterations, final Map<String, Object> sampleAttributes, Executor executor) {
+        final XViewWarmup xviewWarmup = new XViewWarmup(uris, iterations);
+
+        for (final String uri : xviewWarmup.getUris()) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        XView xview = XViewManager.this.load(uri);
+                        XViewManager.this.compile(xview).compileAll();
+                        xviewWarmup.onLoaded(uri);
+
+                        for (int i = 0; i < iterations; i++) {
+                            xview.execute(XViewWarmup.NULL_OUTPUT_STREAM, sampleAttributes, null);
+                            xviewWarmup.onRendered(uri);
+                        }
+
+                        xviewWarmup.onCompleted(uri, null);
+                    } catch (Throwable e) {
+                        xviewWarmup.onCompleted(uri, e);
+                    }
+                }
+            });
+        }
+
+        return xviewWarmup;
+    }
+
+    public XViewProfiler getXViewProfiler() {
+        return xviewProfiler;
+    }
+
+    /**
+     * 开启渲染分析（传入null关闭），见 {@link XViewProfiler}。
+     */
+    public void setXViewProfiler(XViewProfiler xviewProfiler) {
+        this.xviewProfiler = xviewProfiler;
+    }
+
+    public XViewMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * 设置指标监听器，传入null或 {@link XViewMetrics#NOOP} 时关闭。
+     */
+    public void setMetrics(XViewMetrics metrics) {
+        this.metrics = metrics == null ? XViewMetrics.NOOP : metrics;
+        this.metricsEnabled = this.metrics.isEnabled();
+
+        if (this.metricsEnabled) {
+            final XViewMetrics listener = this.metrics;
+            this.bindingsPool.setListener(new BindingsPool.Listener() {
+                @Override
+                public void onAllocationMiss() {
+                    listener.onBindingsMiss();
+                }
+            });
+        } else {
+            this.bindingsPool.setListener(null);
+        }
+    }
+
+    public boolean isStreamingParser() {
+        return streamingParser;
+    }
+
+    /**
+     * 使用StAX流式读取并编译xview文件（不构建也不保留DOM），开启validateSchema时仍使用DOM方式。
+     */
+    public void setStreamingParser(boolean streamingParser) {
+        this.streamingParser = streamingParser;
+    }
+
+    public XViewLoader getXViewLoader() {
+        return xviewLoader;
+    }
+
+    /**
+     * validateSchema模式下使用的Schema缓存（XSD文件通过XViewLoader读取）。
+     */
+    public XViewSchemaCache getXViewSchemaCache() {
+        return xviewSchemaCache;
+    }
+
+    public Charset getCharset() {
+        return charset;
+    }
+
+    /**
+     * 设置输出编码（静态片段在编译时按此编码），修改后会清空已编译XView的缓存。
+     */
+    public void setCharset(Charset charset) {
+        if (!this.charset.equals(charset)) {
+            this.charset = charset;
+            this.bufferedWriters.clear();
+            this.bufferedWritersSize.set(0);
+            this.bufferedDirectWriters.clear();
+            this.bufferedDirectWritersSize.set(0);
+            this.xviewCache.clear();
+            this.xviewOutputCache.clear();
+            this.codeCacheSalt = null;
+        }
+    }
+
+    public int getWriterBufferSize() {
+        return writerBufferSize;
+    }
+
+    public void setWriterBufferSize(int writerBufferSize) {
+        this.writerBufferSize = writerBufferSize;
+    }
+
+    public int getWriterFlushThreshold() {
+        return writerFlushThreshold;
+    }
+
+    /**
+     * 缓冲区中的内容达到此字节数后写入目标输出流，不大于缓冲区大小。
+     */
+    public void setWriterFlushThreshold(int writerFlushThreshold) {
+        this.writerFlushThreshold = writerFlushThreshold;
+    }
+
+    public int getBufferedWritersCount() {
+        return bufferedWritersCount;
+    }
+
+    public void setBufferedWritersCount(int bufferedWritersCount) {
+        this.bufferedWritersCount = bufferedWritersCount;
+    }
+
+    public ScriptEnvironment getScriptEnvironment() {
+        return scriptEnvironment;
+    }
+
+    public BindingsPool getBindingsPool() {
+        return bindingsPool;
+    }
+
+    public XViewCache getXViewCache() {
+        return xviewCache;
+    }
+
+    /**
+     * 设置已编译XView的缓存，传入 new XViewCache(0) 可禁用缓存。
+     */
+    public void setXViewCache(XViewCache xviewCache) {
+        this.xviewCache = xviewCache == null ? new XViewCache(0) : xviewCache;
+    }
+
+    /**
+     * 加载XView，优先从缓存中获取已编译的实例（包括已编译的脚本片段）。
+     */
     public XView load(String uri) {
+        boolean metricsEnabled = this.metricsEnabled;
+
+        XView xview = this.xviewCache.get(uri);
+        if (xview != null) {
+            if (metricsEnabled) {
+                this.metrics.onCacheHit(uri);
+            }
+            return xview;
+        }
+
+        long begin = 0;
+        if (metricsEnabled) {
+            this.metrics.onCacheMiss(uri);
+            begin = System.nanoTime();
+        }
+
+        // 热加载模式下记录开始加载时的失效次数，加载期间文件变化时读到的可能是旧内容
+        XViewWatcher xviewWatcher = this.xviewWatcher;
+        long generation = xviewWatcher == null ? 0 : xviewWatcher.getGeneration(uri);
+
+        XView loaded = this.loadXView(uri);
+
+        if (metricsEnabled) {
+            this.metrics.onLoad(uri, System.nanoTime() - begin);
+        }
+
+        xview = this.xviewCache.put(uri, loaded);
+
+        if (xviewWatcher != null) {
+            // 先放入缓存再检查：失效发生在检查之后时，invalidate会移除刚放入的实例
+            if (xviewWatcher.getGeneration(uri) != generation) {
+                this.xviewCache.remove(uri, loaded);
+                return xview;
+            }
+            xviewWatcher.watch(xview, this.xviewLoader.getFile(uri));
+        }
+
+        return xview;
+    }
+
+    public boolean isReloadMode() {
+        return this.xviewWatcher != null;
+    }
+
+    /**
+     * 热加载模式：监听已加载的xview文件，修改后只有该文件及引用它的文件会被重新编译。
+     */
+    public synchronized void setReloadMode(boolean reloadMode) {
+        if (reloadMode && this.xviewWatcher == null) {
+            try {
+                XViewWatcher xviewWatcher = new XViewWatcher(this);
+                xviewWatcher.start();
+                this.xviewWatcher = xviewWatcher;
+            } catch (IOException e) {
+                throw new XViewException(e);
+            }
+        } else if (!reloadMode && this.xviewWatcher != null) {
+            this.xviewWatcher.close();
+            this.xviewWatcher = null;
+        }
+    }
+
+    public XViewWatcher getXViewWatcher() {
+        return xviewWatcher;
+    }
+
+    public XViewBundle getXViewBundle() {
+        return xviewBundle;
+    }
+
+    /**
+     * 使用预编译包（传入null关闭）：包中的文件直接使用预编译的结果，不再读取单个xview文件；热加载模式下不使用。
+     */
+    public void setXViewBundle(XViewBundle xviewBundle) {
+        if (xviewBundle != null && !xviewBundle.getCharset().equals(this.charset)) {
+            throw new XViewException(xviewBundle.getFile() + " -> charset not match: " + xviewBundle.getCharset());
+        }
+
+        this.xviewBundle = xviewBundle;
+        this.xviewCache.clear();
+    }
+
+    public XViewCodeCache getXViewCodeCache() {
+        return xviewCodeCache;
+    }
+
+    /**
+     * 设置持久化的代码缓存（传入null关闭），应在首次加载之前设置。
+     * 开启Nashorn类缓存时会重新创建脚本引擎。
+     * Nashorn只能通过JVM全局的系统属性指定缓存目录（在创建引擎时读取），因此只在创建此XViewManager的引擎期间临时设置该属性，之后恢复原值；
+     * 其他线程恰好在这期间创建的Nashorn引擎（如果开启了持久化缓存）也会使用此目录。
+     */
+    public synchronized void setXViewCodeCache(XViewCodeCache xviewCodeCache) {
+        this.xviewCodeCache = xviewCodeCache;
+
+        File nashornDirectory = xviewCodeCache == null ? null : xviewCodeCache.getNashornDirectory();
+        if (nashornDirectory != null) {
+            synchronized (XViewManager.class) {
+                String previous = System.getProperty(NASHORN_CODE_CACHE_PROPERTY);
+                System.setProperty(NASHORN_CODE_CACHE_PROPERTY, nashornDirectory.getAbsolutePath());
+
+                try {
+                    // 已编译的脚本与池中的Bindings属于旧的引擎
+                    this.initScriptEnvironment(new String[] { "--persistent-code-cache=true" });
+
+                    // 立即创建所有引擎，使它们读取到此目录
+                    ScriptEnvironment.ScriptEnginePool scriptEnginePool = this.scriptEnvironment.getScriptEnginePool(SCRIPT_LANGUAGE);
+                    for (int i = 0; i < scriptEnginePool.size(); i++) {
+                        scriptEnginePool.get(i);
+                    }
+                } catch (ScriptException e) {
+                    throw new XViewException(e);
+                } finally {
+                    if (previous == null) {
+                        System.clearProperty(NASHORN_CODE_CACHE_PROPERTY);
+                    } else {
+                        System.setProperty(NASHORN_CODE_CACHE_PROPERTY, previous);
+                    }
+                }
+            }
+            this.xviewCache.clear();
+        }
+    }
+
+    /**
+     * 代码缓存键的附加信息：缓存的内容与脚本引擎版本、字符集（静态片段已编码）、是否验证有关。
+     */
+    private String getCodeCacheSalt() {
+        String codeCacheSalt = this.codeCacheSalt;
+
+        if (codeCacheSalt == null) {
+            ScriptEngineFactory scriptEngineFactory;
+            try {
+                scriptEngineFactory = this.scriptEnvironment.getScriptEnginePool(SCRIPT_LANGUAGE).getScriptEngineFactory();
+            } catch (ScriptException e) {
+                throw new XViewException(e);
+            }
+
+            codeCacheSalt = scriptEngineFactory.getEngineName() + " " + scriptEngineFactory.getEngineVersion() + " " + scriptEngineFactory.getLanguageVersion()
+                    + ";" + this.charset.name() + ";" + this.validateSchema;
+            this.codeCacheSalt = codeCacheSalt;
+        }
+
+        return codeCacheSalt;
+    }
+
+    private XView loadXView(String uri) {
         XView xview = null;
+        XViewCodeCache xviewCodeCache = this.xviewCodeCache;
+
+        XViewBundle xviewBundle = this.xviewBundle;
+        if (xviewBundle != null && this.xviewWatcher == null && xviewBundle.getCharset().equals(this.charset)) {
+            XViewCodeCache.Entry entry = xviewBundle.get(uri);
+            if (entry != null) {
+                return new XView(this, uri, entry);
+            }
+        }
 
         try (InputStream inputStream = this.xviewLoader.load(uri)) {
             if (inputStream != null) {
-                xview = new XView(this, uri, inputStream, this.validateSchema);
+                if (xviewCodeCache == null) {
+                    xview = new XView(this, uri, inputStream, this.validateSchema);
+                } else {
+                    // 以文件内容为键，内容未变化时直接使用缓存的编译结果
+                    byte[] source = XViewXml.readBytes(inputStream);
+                    String key = xviewCodeCache.key(source, this.getCodeCacheSalt());
+
+                    XViewCodeCache.Entry entry = xviewCodeCache.read(key);
+                    if (entry != null) {
+                        xview = new XView(this, uri, entry);
+                    } else {
+                        xview = new XView(this, uri, new ByteArrayInputStream(source), this.validateSchema);
+                        xviewCodeCache.write(key, new XViewCodeCache.Entry(xview));
+                    }
+                }
             }
         } catch (Exception e) {
             throw new XViewException(uri, e);
@@ -124,6 +981,13 @@ public class XViewManager {
 
         InputStream load(String uri);
 
+        /**
+         * 获取URI对应的本地文件，用于热加载模式下监听文件变化；无法对应到本地文件时返回null。
+         */
+        default File getFile(String uri) {
+            return null;
+        }
+
     }
 
     public static class DefaultXViewLoader implements XViewLoader {
@@ -147,6 +1011,25 @@ public class XViewManager {
             return null;
         }
 
+        @Override
+        public File getFile(String uri) {
+            URL url = this.getClass().getResource(uri);
+            if (url != null) {
+                if ("file".equalsIgnoreCase(url.getProtocol())) {
+                    try {
+                        return new File(url.toURI());
+                    } catch (URISyntaxException | IllegalArgumentException e) {
+                        return null;
+                    }
+                } else {
+                    return null;
+                }
+            }
+
+            File file = new File(uri);
+            return file.isFile() ? file : null;
+        }
+
         private InputStream loadFromUrl(String uri) {
             try {
                 return new URL(uri).openStream();
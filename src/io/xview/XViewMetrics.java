@@ -0,0 +1,54 @@
+package io.xview;
+
+/**
+ * 渲染指标监听器。
+ * 所有方法默认为空实现；{@link #isEnabled()} 返回false时XViewManager不会计时也不会调用其他方法（热路径上没有额外开销）。
+ * 实现类需要线程安全，见 {@link JmxXViewMetrics}。
+ */
+public interface XViewMetrics {
+
+    XViewMetrics NOOP = new XViewMetrics() {
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+    };
+
+    default boolean isEnabled() {
+        return true;
+    }
+
+    /**
+     * 加载xview文件（读取、解析并生成脚本）。
+     */
+    default void onLoad(String uri, long nanos) {
+    }
+
+    /**
+     * 编译生成的脚本（首次执行时）。
+     */
+    default void onCompile(String uri, long nanos) {
+    }
+
+    /**
+     * 执行一次xview文件（包括其中嵌套调用的组件）。
+     *
+     * @param bytes 输出的字节数（包括嵌套调用的组件）
+     * @param depth 嵌套调用的层数，顶层调用为0
+     */
+    default void onRender(String uri, long nanos, long bytes, int depth) {
+    }
+
+    default void onCacheHit(String uri) {
+    }
+
+    default void onCacheMiss(String uri) {
+    }
+
+    /**
+     * Bindings池中没有可用的Bindings而新建。
+     */
+    default void onBindingsMiss() {
+    }
+
+}
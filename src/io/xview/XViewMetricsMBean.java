@@ -0,0 +1,45 @@
+package io.xview;
+
+/**
+ * {@link JmxXViewMetrics} 的JMX接口，时间单位均为纳秒。
+ * 渲染总量（RenderCount、RenderTime、MaxRenderTime、BytesWritten）只统计顶层调用；
+ * 按URI的统计包括组件的所有调用，时间与字节数包括其中嵌套调用的组件。
+ */
+public interface XViewMetricsMBean {
+
+    long getLoadCount();
+
+    long getLoadTime();
+
+    long getCompileCount();
+
+    long getCompileTime();
+
+    long getRenderCount();
+
+    long getRenderTime();
+
+    long getMaxRenderTime();
+
+    long getBytesWritten();
+
+    int getMaxDepth();
+
+    long getCacheHitCount();
+
+    long getCacheMissCount();
+
+    long getBindingsMissCount();
+
+    String[] getUris();
+
+    /**
+     * 返回指定URI的统计（渲染时间与字节数包括嵌套调用的组件）：loadCount, loadTime, compileCount, compileTime, renderCount, renderTime, maxRenderTime, bytesWritten
+     */
+    long[] getUriStatistics(String uri);
+
+    String dump();
+
+    void reset();
+
+}
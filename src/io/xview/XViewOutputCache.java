@@ -0,0 +1,222 @@
+package io.xview;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 组件输出缓存：缓存声明了 xview:cache 的组件渲染出的字节（以URI与参数值为键），按字节数限制容量。
+ * 超过容量时淘汰最久未访问的条目，过期的条目在读取时移除。
+ */
+public class XViewOutputCache {
+
+    public static final long DEFAULT_MAXIMUM_BYTES = 16L * 1024 * 1024;
+
+    private static final char KEY_SEPARATOR = '\u0000';
+
+    private final long maximumBytes;
+
+    private final long maximumEntryBytes;
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private final AtomicLong bytes = new AtomicLong();
+
+    private final AtomicLong clock = new AtomicLong();
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+    private final AtomicLong expirationCount = new AtomicLong();
+
+    public XViewOutputCache() {
+        this(DEFAULT_MAXIMUM_BYTES);
+    }
+
+    public XViewOutputCache(long maximumBytes) {
+        this(maximumBytes, maximumBytes / 16);
+    }
+
+    /**
+     * @param maximumBytes      缓存的最大字节数，小于等于0时禁用缓存
+     * @param maximumEntryBytes 单个条目的最大字节数，超过时不缓存
+     */
+    public XViewOutputCache(long maximumBytes, long maximumEntryBytes) {
+        this.maximumBytes = maximumBytes;
+        this.maximumEntryBytes = maximumEntryBytes;
+    }
+
+    public long getMaximumBytes() {
+        return maximumBytes;
+    }
+
+    public long getMaximumEntryBytes() {
+        return maximumEntryBytes;
+    }
+
+    public boolean isEnabled() {
+        return this.maximumBytes > 0;
+    }
+
+    /**
+     * 生成缓存键：参数值按类型标记编码，只支持String、Number、Boolean与null，数值带有类型（输出时Integer的1与Double的1.0不同）。
+     * 有其他类型的值时返回null，不使用缓存，脚本对象与Java对象的toString不能区分不同的值。
+     */
+    public static String key(String uri, Object... values) {
+        StringBuilder stringBuilder = new StringBuilder(uri).append(KEY_SEPARATOR);
+        for (Object value : values) {
+            if (value == null) {
+                stringBuilder.append('n');
+            } else if (value instanceof CharSequence || value instanceof Character) {
+                // 带长度，值中的分隔符不会与其他参数混淆
+                String text = value.toString();
+                stringBuilder.append('s').append(text.length()).append(':').append(text);
+            } else if (value instanceof Boolean) {
+                stringBuilder.append('b').append(value);
+            } else if (value instanceof Number) {
+                stringBuilder.append('N').append(value.getClass().getName()).append(':').append(value);
+            } else {
+                return null;
+            }
+            stringBuilder.append(KEY_SEPARATOR);
+        }
+        return stringBuilder.toString();
+    }
+
+    public byte[] get(String key) {
+        Entry entry = this.entries.get(key);
+
+        if (entry != null && entry.expireTime < System.currentTimeMillis()) {
+            if (this.entries.remove(key, entry)) {
+                this.bytes.addAndGet(-entry.bytes.length);
+                this.expirationCount.incrementAndGet();
+            }
+            entry = null;
+        }
+
+        if (entry == null) {
+            this.missCount.incrementAndGet();
+            return null;
+        }
+
+        entry.stamp = this.clock.incrementAndGet();
+        this.hitCount.incrementAndGet();
+        return entry.bytes;
+    }
+
+    /**
+     * @param ttl 有效期（毫秒）
+     */
+    public void put(String key, byte[] bytes, long ttl) {
+        if (!this.isEnabled() || bytes.length > this.maximumEntryBytes || ttl <= 0) {
+            return;
+        }
+
+        Entry entry = new Entry(bytes, System.currentTimeMillis() + ttl, this.clock.incrementAndGet());
+        Entry existing = this.entries.put(key, entry);
+        this.bytes.addAndGet(bytes.length - (existing == null ? 0 : existing.bytes.length));
+
+        while (this.bytes.get() > this.maximumBytes) {
+            if (!this.evictOne()) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * 移除一个xview文件的所有缓存输出（热加载时调用）。
+     */
+    public void remove(String uri) {
+        String prefix = uri + KEY_SEPARATOR;
+
+        for (Iterator<Map.Entry<String, Entry>> iterator = this.entries.entrySet().iterator(); iterator.hasNext(); ) {
+            Map.Entry<String, Entry> entry = iterator.next();
+            if (entry.getKey().startsWith(prefix) && this.entries.remove(entry.getKey(), entry.getValue())) {
+                this.bytes.addAndGet(-entry.getValue().bytes.length);
+            }
+        }
+    }
+
+    public void clear() {
+        for (String key : this.entries.keySet()) {
+            Entry entry = this.entries.remove(key);
+            if (entry != null) {
+                this.bytes.addAndGet(-entry.bytes.length);
+            }
+        }
+    }
+
+    public int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * 已缓存的字节数
+     */
+    public long getBytes() {
+        return this.bytes.get();
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    public long getExpirationCount() {
+        return expirationCount.get();
+    }
+
+    /**
+     * 淘汰一个条目（优先淘汰已过期的，其次是时间戳最小者）。只在超出容量时调用，因此线性扫描的开销可以接受。
+     */
+    private boolean evictOne() {
+        long now = System.currentTimeMillis();
+        String victimKey = null;
+        Entry victim = null;
+
+        for (Map.Entry<String, Entry> i : this.entries.entrySet()) {
+            Entry entry = i.getValue();
+            if (entry.expireTime < now) {
+                victimKey = i.getKey();
+                victim = entry;
+                break;
+            }
+            if (victim == null || entry.stamp < victim.stamp) {
+                victimKey = i.getKey();
+                victim = entry;
+            }
+        }
+
+        if (victim != null && this.entries.remove(victimKey, victim)) {
+            this.bytes.addAndGet(-victim.bytes.length);
+            this.evictionCount.incrementAndGet();
+            return true;
+        }
+
+        return victim != null;
+    }
+
+    private static class Entry {
+
+        private final byte[] bytes;
+
+        private final long expireTime;
+
+        private volatile long stamp;
+
+        private Entry(byte[] bytes, long expireTime, long stamp) {
+            this.bytes = bytes;
+            this.expireTime = expireTime;
+            this.stamp = stamp;
+        }
+    }
+
+}
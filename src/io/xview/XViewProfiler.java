@@ -0,0 +1,275 @@
+package io.xview;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 渲染分析器（按采样率开启）。
+ * 对被采样的渲染记录调用树：每个节点为一个xview文件（按实际的调用栈嵌套，同一位置的多次调用合并），
+ * 记录调用次数、总耗时、自身耗时与输出字节数，可以导出为火焰图工具使用的折叠栈格式（collapsed stacks）。
+ */
+public class XViewProfiler {
+
+    public static final int DEFAULT_MAX_PROFILES = 100;
+
+    private final double sampleRate;
+
+    private final int maxProfiles;
+
+    private final Deque<Profile> profiles = new ConcurrentLinkedDeque<>();
+
+    private final AtomicInteger profileCount = new AtomicInteger();
+
+    public XViewProfiler(double sampleRate) {
+        this(sampleRate, DEFAULT_MAX_PROFILES);
+    }
+
+    /**
+     * @param sampleRate  采样率（0~1），1为记录每次渲染
+     * @param maxProfiles 最多保留的最近的调用树数量
+     */
+    public XViewProfiler(double sampleRate, int maxProfiles) {
+        this.sampleRate = sampleRate;
+        this.maxProfiles = maxProfiles;
+    }
+
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    public int getMaxProfiles() {
+        return maxProfiles;
+    }
+
+    /**
+     * 决定一次顶层渲染是否被采样，被采样时返回新的调用树。
+     */
+    public Profile sample() {
+        if (this.sampleRate >= 1 || (this.sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < this.sampleRate)) {
+            return new Profile();
+        }
+
+        return null;
+    }
+
+    /**
+     * 记录一次已完成的渲染。
+     */
+    public void record(Profile profile) {
+        this.profiles.addLast(profile);
+
+        if (this.profileCount.incrementAndGet() > this.maxProfiles) {
+            if (this.profiles.pollFirst() != null) {
+                this.profileCount.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * 最近记录的调用树（从旧到新）。
+     */
+    public List<Profile> getProfiles() {
+        return new ArrayList<>(this.profiles);
+    }
+
+    public void clear() {
+        this.profiles.clear();
+        this.profileCount.set(0);
+    }
+
+    /**
+     * 将保留的所有调用树合并后以折叠栈格式输出：每行为 "a.xview;b.xview;c.xview 自身耗时（微秒）"。
+     */
+    public void dumpCollapsedStacks(Writer writer) throws IOException {
+        Map<String, Long> stacks = new TreeMap<>();
+
+        for (Profile profile : this.profiles) {
+            profile.collapse(stacks);
+        }
+
+        for (Map.Entry<String, Long> entry : stacks.entrySet()) {
+            writer.write(entry.getKey());
+            writer.write(' ');
+            writer.write(Long.toString(entry.getValue()));
+            writer.write('\n');
+        }
+
+        writer.flush();
+    }
+
+    /**
+     * 一次渲染的调用树。渲染在单个线程中进行，不需要同步。
+     */
+    public static class Profile {
+
+        private final Node root = new Node(null, null);
+
+        private Node current = this.root;
+
+        private final Thread thread = Thread.currentThread();
+
+        private final long timestamp = System.currentTimeMillis();
+
+        public Node getRoot() {
+            return root;
+        }
+
+        /**
+         * 渲染开始的时间（毫秒）
+         */
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        /**
+         * 是否在渲染开始的线程中（并行渲染的子组件不记录）。
+         */
+        public boolean isCurrentThread() {
+            return Thread.currentThread() == this.thread;
+        }
+
+        public Node enter(String uri) {
+            Node node = this.current.child(uri);
+            this.current = node;
+            return node;
+        }
+
+        public void exit(Node node, long nanos, long bytes) {
+            node.count++;
+            node.totalTime += nanos;
+            node.bytes += bytes;
+            this.current = node.parent;
+        }
+
+        public void collapse(Map<String, Long> stacks) {
+            for (Node child : this.root.getChildren()) {
+                child.collapse(null, stacks);
+            }
+        }
+
+        public String toCollapsedStacks() {
+            Map<String, Long> stacks = new TreeMap<>();
+            this.collapse(stacks);
+
+            StringBuilder stringBuilder = new StringBuilder();
+            for (Map.Entry<String, Long> entry : stacks.entrySet()) {
+                stringBuilder.append(entry.getKey()).append(' ').append(entry.getValue()).append('\n');
+            }
+            return stringBuilder.toString();
+        }
+    }
+
+    public static class Node {
+
+        private final Node parent;
+
+        private final String uri;
+
+        private Map<String, Node> children;
+
+        private int count;
+
+        private long totalTime;
+
+        private long bytes;
+
+        private Node(Node parent, String uri) {
+            this.parent = parent;
+            this.uri = uri;
+        }
+
+        private Node child(String uri) {
+            if (this.children == null) {
+                this.children = new LinkedHashMap<>();
+            }
+
+            Node node = this.children.get(uri);
+            if (node == null) {
+                node = new Node(this, uri);
+                this.children.put(uri, node);
+            }
+
+            return node;
+        }
+
+        public String getUri() {
+            return uri;
+        }
+
+        /**
+         * 组件标签名（文件名去掉扩展名）
+         */
+        public String getTag() {
+            if (this.uri == null) {
+                return null;
+            }
+
+            String name = this.uri.substring(this.uri.replace('\\', '/').lastIndexOf('/') + 1);
+            return name.endsWith(XView.FILE_EXT) ? name.substring(0, name.length() - XView.FILE_EXT.length()) : name;
+        }
+
+        public Collection<Node> getChildren() {
+            return this.children == null ? Collections.<Node>emptyList() : this.children.values();
+        }
+
+        /**
+         * 调用次数
+         */
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * 总耗时（纳秒，包括嵌套调用）
+         */
+        public long getTotalTime() {
+            return totalTime;
+        }
+
+        /**
+         * 自身耗时（纳秒，不包括嵌套调用）
+         */
+        public long getSelfTime() {
+            long selfTime = this.totalTime;
+            for (Node child : this.getChildren()) {
+                selfTime -= child.totalTime;
+            }
+            return Math.max(0, selfTime);
+        }
+
+        /**
+         * 输出的字节数（包括嵌套调用）
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * 自身输出的字节数（不包括嵌套调用）
+         */
+        public long getSelfBytes() {
+            long selfBytes = this.bytes;
+            for (Node child : this.getChildren()) {
+                selfBytes -= child.bytes;
+            }
+            return Math.max(0, selfBytes);
+        }
+
+        private void collapse(String prefix, Map<String, Long> stacks) {
+            String stack = prefix == null ? this.uri : prefix + ";" + this.uri;
+
+            long selfTime = this.getSelfTime() / 1000;
+            Long value = stacks.get(stack);
+            stacks.put(stack, value == null ? selfTime : value + selfTime);
+
+            for (Node child : this.getChildren()) {
+                child.collapse(stack, stacks);
+            }
+        }
+    }
+
+}
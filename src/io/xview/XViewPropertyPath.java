@@ -0,0 +1,204 @@
+package io.xview;
+
+import jdk.nashorn.api.scripting.JSObject;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 属性路径（例如 ${user.name.first} 中的 name.first）：由脚本取得根变量后在Java中逐级读取，不经过脚本引擎。
+ * 脚本对象与Map按键读取，数组、List与String支持length，其他对象按public的getter（getXxx/isXxx）或public字段读取；
+ * 访问器按类缓存为MethodHandle，每一级再缓存最近一次的类型。
+ * 不能确定与脚本的结果相同时（属性不存在、中间的值为null等）返回 {@link #UNRESOLVED}，由调用方改为在脚本中求值。
+ */
+public class XViewPropertyPath {
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    /**
+     * 无法在Java中读取的属性路径
+     */
+    public static final Object UNRESOLVED = new Object();
+
+    private static final MethodHandle NOT_FOUND = MethodHandles.dropArguments(MethodHandles.constant(Object.class, UNRESOLVED), 0, Object.class);
+
+    private static final ClassValue<Map<String, MethodHandle>> ACCESSORS = new ClassValue<Map<String, MethodHandle>>() {
+        @Override
+        protected Map<String, MethodHandle> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    private final String path;
+
+    private final String[] names;
+
+    /**
+     * 每一级最近一次使用的访问器（不可变对象，并发读写时最多重新查找一次）
+     */
+    private final Step[] steps;
+
+    public XViewPropertyPath(String path) {
+        this.path = path;
+        this.names = path.split("\\.");
+        this.steps = new Step[this.names.length];
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public Object get(Object root) {
+        Object value = root;
+
+        for (int i = 0; i < this.names.length; i++) {
+            if (value == null) {
+                // 脚本中读取null的属性抛出TypeError
+                return UNRESOLVED;
+            }
+
+            if (value instanceof JSObject) {
+                // 不存在的成员在脚本中为undefined，getMember对undefined也返回null
+                JSObject jsObject = (JSObject) value;
+                value = jsObject.hasMember(this.names[i]) ? jsObject.getMember(this.names[i]) : null;
+                if (value == null) {
+                    return UNRESOLVED;
+                }
+                continue;
+            }
+
+            if (value instanceof Map) {
+                // 不存在的键在脚本中再按Bean属性读取
+                Map<?, ?> map = (Map<?, ?>) value;
+                if (!map.containsKey(this.names[i])) {
+                    return UNRESOLVED;
+                }
+                value = map.get(this.names[i]);
+                continue;
+            }
+
+            Class<?> type = value.getClass();
+            Step step = this.steps[i];
+            if (step == null || step.type != type) {
+                step = new Step(type, accessor(type, this.names[i]));
+                this.steps[i] = step;
+            }
+
+            try {
+                value = step.accessor.invokeExact(value);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new XViewException(e);
+            }
+
+            if (value == UNRESOLVED) {
+                return UNRESOLVED;
+            }
+        }
+
+        return value;
+    }
+
+    private static MethodHandle accessor(Class<?> type, String name) {
+        Map<String, MethodHandle> accessors = ACCESSORS.get(type);
+        MethodHandle accessor = accessors.get(name);
+
+        if (accessor == null) {
+            accessor = findAccessor(type, name);
+            accessors.put(name, accessor);
+        }
+
+        return accessor;
+    }
+
+    private static MethodHandle findAccessor(Class<?> type, String name) {
+        MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+
+        try {
+            if ("length".equals(name)) {
+                if (type.isArray()) {
+                    return lookup.findStatic(Array.class, "getLength", MethodType.methodType(int.class, Object.class)).asType(GETTER_TYPE);
+                }
+                if (List.class.isAssignableFrom(type)) {
+                    return lookup.findVirtual(List.class, "size", MethodType.methodType(int.class)).asType(GETTER_TYPE);
+                }
+                if (type == String.class) {
+                    // 其他CharSequence（如StringBuilder）在脚本中是Java对象，length为方法，交给脚本求值
+                    return lookup.findVirtual(String.class, "length", MethodType.methodType(int.class)).asType(GETTER_TYPE);
+                }
+            }
+
+            if (!name.isEmpty()) {
+                String suffix = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+
+                for (String methodName : new String[] { "get" + suffix, "is" + suffix }) {
+                    Method method = findPublicMethod(type, methodName);
+                    if (method != null && method.getReturnType() != void.class) {
+                        return lookup.unreflect(method).asType(GETTER_TYPE);
+                    }
+                }
+            }
+
+            for (Field field : type.getFields()) {
+                if (field.getName().equals(name) && !Modifier.isStatic(field.getModifiers()) && Modifier.isPublic(field.getDeclaringClass().getModifiers())) {
+                    return lookup.unreflectGetter(field).asType(GETTER_TYPE);
+                }
+            }
+        } catch (ReflectiveOperationException | SecurityException e) {
+            // 无法访问时按属性不存在处理
+        }
+
+        return NOT_FOUND;
+    }
+
+    /**
+     * 查找可以访问的无参public方法（非public的类实现的方法从public的父类或接口中查找）。
+     */
+    private static Method findPublicMethod(Class<?> type, String name) {
+        if (type == null) {
+            return null;
+        }
+
+        if (Modifier.isPublic(type.getModifiers())) {
+            try {
+                Method method = type.getMethod(name);
+                if (!Modifier.isStatic(method.getModifiers())) {
+                    return method;
+                }
+            } catch (NoSuchMethodException e) {
+                return null;
+            }
+        }
+
+        for (Class<?> i : type.getInterfaces()) {
+            Method method = findPublicMethod(i, name);
+            if (method != null) {
+                return method;
+            }
+        }
+
+        return findPublicMethod(type.getSuperclass(), name);
+    }
+
+    private static class Step {
+
+        private final Class<?> type;
+
+        private final MethodHandle accessor;
+
+        Step(Class<?> type, MethodHandle accessor) {
+            this.type = type;
+            this.accessor = accessor;
+        }
+    }
+
+}
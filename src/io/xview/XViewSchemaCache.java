@@ -0,0 +1,231 @@
+package io.xview;
+
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.Source;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 已编译Schema的缓存（以根元素的schemaLocation为键），并为每个Schema缓存在解析时同时验证的DocumentBuilder。
+ * XSD文件通过XViewLoader读取，无法读取时使用由文档中的schemaLocation提示决定的通用Schema。
+ * XSD文件修改后需要通过 {@link #invalidate(String)} 使相关的Schema失效（热加载模式下由XViewWatcher调用）。
+ */
+public class XViewSchemaCache {
+
+    private static final XViewSchemaCache DEFAULT = new XViewSchemaCache(null);
+
+    private static final ErrorHandler ERROR_HANDLER = new ErrorHandler() {
+        @Override
+        public void warning(SAXParseException exception) {
+        }
+
+        @Override
+        public void error(SAXParseException exception) throws SAXException {
+            throw exception;
+        }
+
+        @Override
+        public void fatalError(SAXParseException exception) throws SAXException {
+            throw exception;
+        }
+    };
+
+    private final XViewManager.XViewLoader xviewLoader;
+
+    private final SchemaFactory schemaFactory;
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong compileTime = new AtomicLong();
+
+    public XViewSchemaCache(XViewManager.XViewLoader xviewLoader) {
+        this.xviewLoader = xviewLoader;
+        this.schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+    }
+
+    /**
+     * 不通过XViewLoader读取XSD文件的缓存（只使用schemaLocation提示）。
+     */
+    public static XViewSchemaCache getDefault() {
+        return DEFAULT;
+    }
+
+    public Schema getSchema(String schemaLocation) throws SAXException {
+        return this.getEntry(schemaLocation).schema;
+    }
+
+    /**
+     * 获取当前线程可用的、在解析时按schemaLocation对应的Schema验证文档的DocumentBuilder。
+     */
+    public DocumentBuilder getDocumentBuilder(String schemaLocation) throws SAXException, ParserConfigurationException {
+        Entry entry = this.getEntry(schemaLocation);
+
+        DocumentBuilder documentBuilder = entry.documentBuilder.get();
+        if (documentBuilder == null) {
+            documentBuilder = entry.documentBuilderFactory.newDocumentBuilder();
+            documentBuilder.setErrorHandler(ERROR_HANDLER);
+            entry.documentBuilder.set(documentBuilder);
+        } else {
+            documentBuilder.reset();
+            documentBuilder.setErrorHandler(ERROR_HANDLER);
+        }
+
+        return documentBuilder;
+    }
+
+    private Entry getEntry(String schemaLocation) throws SAXException {
+        String key = normalize(schemaLocation);
+
+        Entry entry = this.entries.get(key);
+        if (entry != null) {
+            this.hitCount.incrementAndGet();
+            return entry;
+        }
+
+        this.missCount.incrementAndGet();
+        long begin = System.nanoTime();
+
+        entry = new Entry(this.compile(key), key);
+
+        this.compileTime.addAndGet(System.nanoTime() - begin);
+
+        Entry existing = this.entries.putIfAbsent(key, entry);
+        return existing != null ? existing : entry;
+    }
+
+    private Schema compile(String schemaLocation) throws SAXException {
+        List<InputStream> inputStreams = new ArrayList<>();
+
+        try {
+            List<Source> sources = new ArrayList<>();
+
+            if (this.xviewLoader != null && !schemaLocation.isEmpty()) {
+                String[] items = schemaLocation.split(" ");
+                for (int i = 0; i + 1 < items.length; i += 2) {
+                    InputStream inputStream = this.xviewLoader.load(items[i + 1]);
+                    if (inputStream == null) {
+                        sources = null;
+                        break;
+                    }
+
+                    inputStreams.add(inputStream);
+                    sources.add(new StreamSource(inputStream, items[i + 1]));
+                }
+            }
+
+            synchronized (this.schemaFactory) {
+                if (sources == null || sources.isEmpty()) {
+                    return this.schemaFactory.newSchema();
+                } else {
+                    return this.schemaFactory.newSchema(sources.toArray(new Source[0]));
+                }
+            }
+        } finally {
+            for (InputStream inputStream : inputStreams) {
+                try {
+                    inputStream.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+    }
+
+    private static String normalize(String schemaLocation) {
+        if (schemaLocation == null) {
+            return "";
+        }
+
+        StringBuilder stringBuilder = new StringBuilder();
+        for (String i : schemaLocation.trim().split("\\s+")) {
+            if (!i.isEmpty()) {
+                if (stringBuilder.length() > 0) {
+                    stringBuilder.append(' ');
+                }
+                stringBuilder.append(i);
+            }
+        }
+
+        return stringBuilder.toString();
+    }
+
+    /**
+     * 使schemaLocation中引用了指定XSD文件的Schema失效（XSD中include/import的其他文件不在此列）。
+     */
+    public void invalidate(String xsdUri) {
+        for (Map.Entry<String, Entry> i : this.entries.entrySet()) {
+            if (i.getValue().locations.contains(xsdUri)) {
+                this.entries.remove(i.getKey(), i.getValue());
+            }
+        }
+    }
+
+    public void clear() {
+        this.entries.clear();
+    }
+
+    public int size() {
+        return this.entries.size();
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * 编译Schema累计耗时（纳秒）
+     */
+    public long getCompileTime() {
+        return compileTime.get();
+    }
+
+    private static class Entry {
+
+        private final Schema schema;
+
+        /**
+         * schemaLocation中的XSD文件
+         */
+        private final Set<String> locations = new HashSet<>();
+
+        private final DocumentBuilderFactory documentBuilderFactory;
+
+        private final ThreadLocal<DocumentBuilder> documentBuilder = new ThreadLocal<>();
+
+        private Entry(Schema schema, String schemaLocation) {
+            this.schema = schema;
+
+            String[] items = schemaLocation.split(" ");
+            for (int i = 0; i + 1 < items.length; i += 2) {
+                this.locations.add(items[i + 1]);
+            }
+
+            this.documentBuilderFactory = XViewXml.newDocumentBuilderFactory();
+            this.documentBuilderFactory.setSchema(schema);
+        }
+    }
+
+}
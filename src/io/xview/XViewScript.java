@@ -3,26 +3,338 @@ package io.xview;
 import io.xview.script.ScriptFragment;
 import org.w3c.dom.*;
 
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import java.nio.charset.Charset;
+import java.util.*;
+import java.util.regex.Pattern;
+
 public class XViewScript {
 
+    private static final String EMPTY_CLOSURE = "function (){}";
+
+    /**
+     * 属性路径表达式：标识符.标识符...
+     */
+    private static final Pattern PROPERTY_PATH = Pattern.compile("[A-Za-z_$][\\w$]*(\\.[A-Za-z_$][\\w$]*)+");
+
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_$][\\w$]*");
+
+    private static final Set<String> RESERVED_WORDS = new HashSet<>(Arrays.asList(
+            "break", "case", "catch", "class", "const", "continue", "debugger", "default", "delete", "do", "else", "enum", "export",
+            "extends", "false", "finally", "for", "function", "if", "implements", "import", "in", "instanceof", "interface", "let",
+            "new", "null", "package", "private", "protected", "public", "return", "static", "super", "switch", "this", "throw",
+            "true", "try", "typeof", "var", "void", "while", "with", "yield", "arguments", "eval", "xview", XView.PROCESS_CHILD_NODES_FUNCTION));
+
+    /**
+     * 组件调用在生成代码中的标记：调用开始处与子内容函数之前（见 {@link #inline(int)}）
+     */
+    private static final String CALL_MARK = "/*xview:call:";
+    private static final String CLOSURE_MARK = "/*xview:closure:";
+
     private XView xview;
 
     private String script;
 
+    private byte[][] segments;
+
+    private XViewPropertyPath[] properties;
+
     private ScriptFragment scriptFragment;
 
+    private Set<String> dependencies = new LinkedHashSet<>();
+
+    private long cacheTtl;
+
+    private String[] cacheKeys;
+
+    private List<CallSite> callSites = new ArrayList<>();
+
+    private volatile XView[] inlined = new XView[0];
+
     public XViewScript(XView xview) {
         this.xview = xview;
 
-        CodeBuilder codeBuilder = new CodeBuilder();
-        this.buildCode(this.xview.getXViewXml().getRootElement(), codeBuilder);
-        this.script = codeBuilder.getScript();
+        Compiler compiler = new Compiler();
+        this.walk(this.xview.getXViewXml().getRootElement(), compiler);
+        this.finish(compiler);
+    }
+
+    /**
+     * 流式编译：reader位于根元素的开始标记（见 {@link XViewXml#XViewXml(XMLStreamReader)}），
+     * 边读取边生成代码，不构建DOM。
+     */
+    public XViewScript(XView xview, XMLStreamReader reader) throws XMLStreamException {
+        this.xview = xview;
+
+        Compiler compiler = new Compiler();
+        int depth = 0;
+
+        for (int event = reader.getEventType(); ; event = reader.next()) {
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                List<Attribute> attributes = new ArrayList<>(reader.getNamespaceCount() + reader.getAttributeCount());
+                for (int i = 0; i < reader.getNamespaceCount(); i++) {
+                    String prefix = reader.getNamespacePrefix(i);
+                    attributes.add(new Attribute(prefix == null || prefix.isEmpty() ? "xmlns" : "xmlns:" + prefix, reader.getNamespaceURI(i)));
+                }
+                for (int i = 0; i < reader.getAttributeCount(); i++) {
+                    attributes.add(new Attribute(toQualifiedName(reader.getAttributePrefix(i), reader.getAttributeLocalName(i)), reader.getAttributeValue(i)));
+                }
+                // 与DOM（NamedNodeMap按名称排序）的属性顺序一致，两种解析方式输出相同
+                Collections.sort(attributes, ATTRIBUTE_ORDER);
+
+                compiler.startElement(toQualifiedName(reader.getPrefix(), reader.getLocalName()), attributes);
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                compiler.endElement();
+                if (--depth == 0) {
+                    break;
+                }
+            } else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA || event == XMLStreamConstants.SPACE) {
+                compiler.characters(reader.getText());
+            } else if (event == XMLStreamConstants.PROCESSING_INSTRUCTION || event == XMLStreamConstants.ENTITY_REFERENCE) {
+                compiler.otherChild();
+            } else if (event == XMLStreamConstants.END_DOCUMENT) {
+                break;
+            }
+        }
+
+        this.finish(compiler);
+    }
+
+    /**
+     * 使用已生成的代码（来自代码缓存）。
+     */
+    public XViewScript(XView xview, String script, byte[][] segments, String[] properties, Set<String> dependencies) {
+        this.xview = xview;
+        this.script = script;
+        this.segments = segments;
+        this.properties = toPropertyPaths(properties);
+        this.dependencies.addAll(dependencies);
+    }
+
+    private void finish(Compiler compiler) {
+        this.script = compiler.root.getScript();
+        this.segments = compiler.segments.toBytes(this.xview.getXViewManager().getCharset());
+        this.properties = toPropertyPaths(compiler.properties.toArray());
+    }
+
+    private static XViewPropertyPath[] toPropertyPaths(String[] properties) {
+        XViewPropertyPath[] propertyPaths = new XViewPropertyPath[properties.length];
+        for (int i = 0; i < properties.length; i++) {
+            propertyPaths[i] = new XViewPropertyPath(properties[i]);
+        }
+        return propertyPaths;
     }
 
     public String getScript() {
         return this.script;
     }
 
+    /**
+     * 获取静态输出片段（编译时已编码），脚本中通过 xview.write(index) 输出。
+     */
+    public byte[][] getSegments() {
+        return this.segments;
+    }
+
+    /**
+     * 获取属性路径表，脚本中通过 xview.printProperty(index, root) 输出 ${root.a.b} 形式的表达式。
+     */
+    public XViewPropertyPath[] getProperties() {
+        return this.properties;
+    }
+
+    /**
+     * 获取属性路径的文本（与 {@link #getProperties()} 的顺序相同）。
+     */
+    public String[] getPropertyNames() {
+        String[] propertyNames = new String[this.properties.length];
+        for (int i = 0; i < propertyNames.length; i++) {
+            propertyNames[i] = this.properties[i].getPath();
+        }
+        return propertyNames;
+    }
+
+    /**
+     * 获取此文件引用的其他xview文件（由namespace的url与标签名解析得到）。
+     */
+    public Set<String> getDependencies() {
+        return Collections.unmodifiableSet(this.dependencies);
+    }
+
+    /**
+     * xview:cache 声明的输出缓存有效期（毫秒），没有声明时为0。
+     */
+    public long getCacheTtl() {
+        return cacheTtl;
+    }
+
+    /**
+     * xview:cache 声明的缓存键（参数名），为null时使用所有声明的参数。
+     */
+    public String[] getCacheKeys() {
+        return cacheKeys;
+    }
+
+    public void setCache(long cacheTtl, String[] cacheKeys) {
+        this.cacheTtl = cacheTtl;
+        this.cacheKeys = cacheKeys;
+    }
+
+    /**
+     * 组件调用（不包括并行调用），序号即生成代码中标记的序号。
+     */
+    public List<CallSite> getCallSites() {
+        return Collections.unmodifiableList(this.callSites);
+    }
+
+    public void setCallSites(List<CallSite> callSites) {
+        this.callSites = new ArrayList<>(callSites);
+    }
+
+    /**
+     * 内联到此文件的组件，脚本中通过 xview.inline(index) 取得。
+     */
+    public XView[] getInlined() {
+        return this.inlined;
+    }
+
+    /**
+     * 内联小组件：把目标组件的代码作为立即执行的函数替换运行时的 xview.execute 调用，
+     * 参数在调用处解析（调用参数 > 调用方的同名变量 > 默认值，与运行时相同），省去每次调用的路径解析、加载、Bindings与参数Map。
+     * 只内联代码长度不超过threshold、不再调用其他组件（因此不会递归）、没有声明 xview:cache 的组件，
+     * 调用传入了目标未声明的参数或参数名不能作为脚本变量名时不内联。
+     * 内联的代码与调用方处于同一词法作用域，为保持与运行时调用相同的结果，目标组件对未声明的变量赋值、
+     * 读取的未声明变量与调用方脚本中声明的变量同名（可能读到调用方函数内的局部变量），
+     * 或使用this、arguments、eval、with、let、const、箭头函数、模板字符串时不内联（见 {@link ScriptNames}）。
+     * 目标组件在编译调用方时加载（首次编译会加载所有可内联的组件）。
+     * 目标组件修改后由XViewWatcher按引用关系使此文件失效并重新编译；内联的组件不单独计入XViewMetrics与XViewProfiler。
+     *
+     * @return 内联后的代码，没有可内联的调用时为原代码
+     */
+    public String inline(int threshold) {
+        String script = this.script;
+        List<XView> inlined = new ArrayList<>();
+        Map<XView, Boolean> isolated = new HashMap<>();
+        Set<String> declared = null;
+
+        for (int i = 0; i < this.callSites.size(); i++) {
+            CallSite callSite = this.callSites.get(i);
+            XView target = this.inlineTarget(callSite, threshold);
+            if (target == null) {
+                continue;
+            }
+
+            Boolean targetIsolated = isolated.get(target);
+            if (targetIsolated == null) {
+                if (declared == null) {
+                    declared = ScriptNames.scan(this.script).getDeclared();
+                }
+                targetIsolated = isIsolated(target, declared);
+                isolated.put(target, targetIsolated);
+            }
+            if (!targetIsolated) {
+                continue;
+            }
+
+            String callMark = CALL_MARK + i + "*/";
+            String closureMark = CLOSURE_MARK + i + "*/";
+            int begin = script.indexOf(callMark);
+            int end = script.indexOf(closureMark, begin);
+            if (begin == -1 || end == -1) {
+                continue;
+            }
+
+            int index = inlined.indexOf(target);
+            if (index == -1) {
+                index = inlined.size();
+                inlined.add(target);
+            }
+
+            StringBuilder inlineScript = new StringBuilder();
+            inlineScript.append("(function(xview");
+            for (String name : target.getDefaultAttributes().keySet()) {
+                inlineScript.append(",").append(name);
+            }
+            inlineScript.append(",").append(XView.PROCESS_CHILD_NODES_FUNCTION).append("){\n");
+            inlineScript.append(target.getXViewScript().getScript());
+            inlineScript.append("\n})(xview.inline(").append(index).append("),");
+            for (Map.Entry<String, String> attribute : target.getDefaultAttributes().entrySet()) {
+                String value = callSite.getValue(attribute.getKey());
+                inlineScript.append("xview.attribute(").append(toScriptString(attribute.getKey())).append(",")
+                        .append(value == null ? "null" : "(" + value + ")||null").append(",")
+                        .append(attribute.getValue() == null ? "null" : toScriptString(attribute.getValue())).append("),");
+            }
+
+            script = script.substring(0, begin) + inlineScript + script.substring(end + closureMark.length());
+        }
+
+        this.inlined = inlined.toArray(new XView[0]);
+        return script;
+    }
+
+    private XView inlineTarget(CallSite callSite, int threshold) {
+        XView target;
+        try {
+            target = this.xview.getXViewManager().load(callSite.getUri());
+        } catch (XViewException e) {
+            // 加载失败时保留运行时调用（调用时报告错误）
+            return null;
+        }
+
+        XViewScript targetScript = target.getXViewScript();
+        if (target == this.xview || targetScript.getScript().length() > threshold || !targetScript.getDependencies().isEmpty() || targetScript.getCacheTtl() > 0) {
+            return null;
+        }
+
+        for (String name : callSite.getNames()) {
+            if (!target.getDefaultAttributes().containsKey(name)) {
+                return null;
+            }
+        }
+        for (String name : target.getDefaultAttributes().keySet()) {
+            if (!IDENTIFIER.matcher(name).matches() || RESERVED_WORDS.contains(name)) {
+                return null;
+            }
+        }
+
+        return target;
+    }
+
+    /**
+     * 目标组件的代码内联到调用方后是否与运行时调用的结果相同：不对未声明的变量赋值（运行时写入自身的作用域），
+     * 读取的未声明变量不与调用方声明的变量同名（运行时只能读到调用方的全局变量）。
+     */
+    private static boolean isIsolated(XView target, Set<String> callerDeclared) {
+        ScriptNames names = ScriptNames.scan(target.getXViewScript().getScript());
+        if (names.isDynamic()) {
+            return false;
+        }
+
+        for (String name : names.getFreeAssigned()) {
+            if (!isInlineParameter(target, name)) {
+                return false;
+            }
+        }
+        for (String name : names.getFreeReferenced()) {
+            if (!isInlineParameter(target, name) && callerDeclared.contains(name)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * 内联函数的参数：xview、声明的参数与子内容函数。
+     */
+    private static boolean isInlineParameter(XView target, String name) {
+        return "xview".equals(name) || XView.PROCESS_CHILD_NODES_FUNCTION.equals(name) || target.getDefaultAttributes().containsKey(name);
+    }
+
     public ScriptFragment getScriptFragment() {
         return scriptFragment;
     }
@@ -31,158 +343,443 @@ public class XViewScript {
         this.scriptFragment = scriptFragment;
     }
 
-    private void buildCode(Node node, CodeBuilder codeBuilder) {
+    /**
+     * 遍历DOM，转换为与流式读取相同的事件。
+     */
+    private void walk(Node node, Compiler compiler) {
         if (node instanceof Text) {
-            String s = ((Text) node).getWholeText();
+            compiler.characters(((Text) node).getWholeText());
+        } else if (node instanceof Element) {
+            NamedNodeMap nodeAttributes = node.getAttributes();
+            List<Attribute> attributes = new ArrayList<>(nodeAttributes == null ? 0 : nodeAttributes.getLength());
+            if (nodeAttributes != null) {
+                for (int i = 0; i < nodeAttributes.getLength(); i++) {
+                    attributes.add(new Attribute(nodeAttributes.item(i).getNodeName(), nodeAttributes.item(i).getNodeValue()));
+                }
+            }
+
+            compiler.startElement(node.getNodeName(), attributes);
+
+            NodeList childNodes = node.getChildNodes();
+            if (childNodes != null) {
+                for (int i = 0; i < childNodes.getLength(); i++) {
+                    this.walk(childNodes.item(i), compiler);
+                }
+            }
+
+            compiler.endElement();
+        } else {
+            compiler.otherChild();
+        }
+    }
+
+    private static String toQualifiedName(String prefix, String localName) {
+        return prefix == null || prefix.isEmpty() ? localName : prefix + ":" + localName;
+    }
+
+    /**
+     * 代码生成器：按文档顺序接收元素/文本事件，DOM与流式读取共用。
+     */
+    private class Compiler {
+
+        private Segments segments = new Segments();
+
+        private Segments properties = new Segments();
+
+        private CodeBuilder root = new CodeBuilder(this.segments, this.properties);
+
+        private Deque<Frame> frames = new ArrayDeque<>();
+
+        private int loopCount;
+
+        private boolean isXViewName(Name name, String tag) {
+            if (name.getPrefix() == null || !tag.equalsIgnoreCase(name.getName())) {
+                return false;
+            }
+
+            XViewXml.Namespace namespace = XViewScript.this.xview.getXViewXml().getNamespaceMapping().get(name.getPrefix());
+            return namespace != null && XView.XVIEW_NAMESPACE.equalsIgnoreCase(namespace.getTargetNamespace());
+        }
+
+        private boolean isParallel(List<Attribute> attributes) {
+            for (Attribute attribute : attributes) {
+                Name attributeName = Name.parse(attribute.name);
+                if (attributeName.getPrefix() != null && this.isXViewName(attributeName, XView.ATTRIBUTE_PARALLEL)) {
+                    return "true".equalsIgnoreCase(attribute.value.trim());
+                }
+            }
+
+            return false;
+        }
+
+        private String requireAttribute(String tagName, List<Attribute> attributes, String attributeName) {
+            String value = getAttribute(attributes, attributeName);
+
+            if (value == null || value.trim().isEmpty()) {
+                throw new XViewException(XViewScript.this.xview.getUri() + " -> [" + tagName + "] attribute [" + attributeName + "] is required");
+            }
+
+            return value.trim();
+        }
+
+        private CodeBuilder codeBuilder() {
+            Frame frame = this.frames.peek();
+            return frame == null ? this.root : frame.codeBuilder;
+        }
+
+        /**
+         * 父元素有了子节点：输出父元素标记头的结尾。
+         */
+        private void openParent() {
+            Frame frame = this.frames.peek();
+            if (frame != null && frame.type == FrameType.ELEMENT && frame.pendingOpen) {
+                frame.codeBuilder.appendOutput(">");
+                frame.pendingOpen = false;
+            }
+        }
+
+        private void otherChild() {
+            this.openParent();
+        }
+
+        private void characters(String s) {
+            this.openParent();
+
+            Frame frame = this.frames.peek();
+            if (frame != null && frame.type == FrameType.SCRIPT) {
+                frame.text.append(s);
+                return;
+            }
+            if (frame != null && frame.type == FrameType.IGNORE) {
+                return;
+            }
+            if (frame != null && frame.type == FrameType.CHOOSE) {
+                if (s != null && !s.trim().isEmpty()) {
+                    throw new XViewException(XViewScript.this.xview.getUri() + " -> text is not allowed in [xview:" + XView.TAG_CHOOSE + "]");
+                }
+                return;
+            }
+
             if (s != null) {
                 s = s.trim();
                 if (!s.isEmpty()) {
-                    codeBuilder.appendOutput(toMiniString(s));
+                    this.codeBuilder().appendOutput(toMiniString(s));
                 }
             }
-        } else if (node instanceof Element) {
-            Name name = Name.parse(node.getNodeName());
+        }
 
-            /*
-             * 输出自己的标记头。
-             */
-            boolean isClosed = false;
-            if (name.getPrefix() == null) {
-                isClosed = writeBeginTag(codeBuilder, node);
+        private void startElement(String tagName, List<Attribute> attributes) {
+            this.openParent();
+
+            Frame parent = this.frames.peek();
+            if (parent != null && (parent.type == FrameType.SCRIPT || parent.type == FrameType.IGNORE)) {
+                // xview:script 只取文本内容，xview:process_child_nodes 忽略子内容
+                this.frames.push(new Frame(parent.type, parent.codeBuilder));
+                this.frames.peek().text = parent.text;
+                return;
+            }
+
+            CodeBuilder codeBuilder = this.codeBuilder();
+            Name name = Name.parse(tagName);
+
+            if (parent != null && parent.type == FrameType.CHOOSE && !this.isXViewName(name, XView.TAG_WHEN) && !this.isXViewName(name, XView.TAG_OTHERWISE)) {
+                throw new XViewException(XViewScript.this.xview.getUri() + " -> [" + tagName + "] is not allowed in [xview:" + XView.TAG_CHOOSE + "]");
             }
 
-            /*
-             * 输出子内容。
-             */
             if (name.getPrefix() == null) {
-                if (!isClosed) {
-                    this.forEachChildNodes(codeBuilder, node);
+                /*
+                 * 输出自己的标记头（有子节点时再输出结尾）。
+                 */
+                codeBuilder.appendOutput("<").appendOutput(tagName);
+                for (Attribute attribute : attributes) {
+                    codeBuilder.appendOutput(" ");
+                    codeBuilder.appendOutput(attribute.name);
+                    codeBuilder.appendOutput("=\"");
+                    codeBuilder.appendOutput(attribute.value);
+                    codeBuilder.appendOutput("\"");
                 }
-            } else {
-                XViewXml.Namespace namespace = this.xview.getXViewXml().getNamespaceMapping().get(name.getPrefix());
-
-                if (namespace != null) {
-                    if (XView.XVIEW_NAMESPACE.equalsIgnoreCase(namespace.getTargetNamespace())) {
-                        if (XView.TAG_SCRIPT.equalsIgnoreCase(name.getName())) {
-                            // xview:script 直接追加脚本
-                            codeBuilder.appendScript("\n").appendScript(toMiniString(node.getTextContent())).appendScript("\n");
-                        } else if (XView.TAG_VIEW.equalsIgnoreCase(name.getName())) {
-                            // xview:view 递归解析
-                            this.forEachChildNodes(codeBuilder, node);
-                        } else if (XView.TAG_PROCESS_CHILD_NODES.equalsIgnoreCase(name.getName())) {
-                            // xview:processChildNodes 调用子内容
-                            codeBuilder.appendScript("if(").appendScript(XView.PROCESS_CHILD_NODES_FUNCTION).appendScript("){eval(")
-                                    .appendScript(XView.PROCESS_CHILD_NODES_FUNCTION).appendScript(")();}\n");
-                        } else {
-                            throw new XViewException(this.xview.getUri() + " -> unknow tag [" + ((Element) node).getTagName() + "]");
-                        }
+
+                Frame frame = new Frame(FrameType.ELEMENT, codeBuilder);
+                frame.tagName = tagName;
+                frame.pendingOpen = true;
+                this.frames.push(frame);
+                return;
+            }
+
+            XViewXml.Namespace namespace = XViewScript.this.xview.getXViewXml().getNamespaceMapping().get(name.getPrefix());
+
+            if (namespace == null) {
+                throw new XViewException(XViewScript.this.xview.getUri() + " -> unknow tag [" + tagName + "]");
+            }
+
+            if (XView.XVIEW_NAMESPACE.equalsIgnoreCase(namespace.getTargetNamespace())) {
+                if (XView.TAG_SCRIPT.equalsIgnoreCase(name.getName())) {
+                    // xview:script 直接追加脚本
+                    Frame frame = new Frame(FrameType.SCRIPT, codeBuilder);
+                    frame.text = new StringBuilder();
+                    this.frames.push(frame);
+                } else if (XView.TAG_VIEW.equalsIgnoreCase(name.getName())) {
+                    // xview:view 递归解析
+                    this.frames.push(new Frame(FrameType.VIEW, codeBuilder));
+                } else if (XView.TAG_PROCESS_CHILD_NODES.equalsIgnoreCase(name.getName())) {
+                    // xview:processChildNodes 调用子内容
+                    codeBuilder.appendScript("if(").appendScript(XView.PROCESS_CHILD_NODES_FUNCTION).appendScript("){")
+                            .appendScript(XView.PROCESS_CHILD_NODES_FUNCTION).appendScript("();}\n");
+                    this.frames.push(new Frame(FrameType.IGNORE, codeBuilder));
+                } else if (XView.TAG_FLUSH.equalsIgnoreCase(name.getName())) {
+                    // xview:flush 提前输出已渲染的内容
+                    codeBuilder.appendScript("xview.flush();\n");
+                    this.frames.push(new Frame(FrameType.IGNORE, codeBuilder));
+                } else if (XView.TAG_CACHE.equalsIgnoreCase(name.getName())) {
+                    // xview:cache 声明输出缓存，不生成代码
+                    if (XViewScript.this.cacheTtl > 0) {
+                        throw new XViewException(XViewScript.this.xview.getUri() + " -> duplicate [" + tagName + "]");
+                    }
+
+                    String ttl = this.requireAttribute(tagName, attributes, "ttl");
+                    try {
+                        XViewScript.this.cacheTtl = Long.parseLong(ttl) * 1000;
+                    } catch (NumberFormatException e) {
+                        throw new XViewException(XViewScript.this.xview.getUri() + " -> [" + tagName + "] invalid ttl [" + ttl + "]");
+                    }
+                    if (XViewScript.this.cacheTtl <= 0) {
+                        throw new XViewException(XViewScript.this.xview.getUri() + " -> [" + tagName + "] invalid ttl [" + ttl + "]");
+                    }
+
+                    String keys = getAttribute(attributes, "keys");
+                    if (keys != null && !keys.trim().isEmpty()) {
+                        XViewScript.this.cacheKeys = keys.trim().split("\\s*,\\s*");
+                    }
+
+                    this.frames.push(new Frame(FrameType.IGNORE, codeBuilder));
+                } else if (XView.TAG_IF.equalsIgnoreCase(name.getName())) {
+                    // xview:if 生成if语句
+                    codeBuilder.appendScript("if(").appendScript(this.requireAttribute(tagName, attributes, "test")).appendScript("){\n");
+                    this.frames.push(new Frame(FrameType.BLOCK, codeBuilder));
+                } else if (XView.TAG_FOR.equalsIgnoreCase(name.getName())) {
+                    // xview:for 通过Java迭代器遍历Iterable、数组、Map（Map.Entry）与脚本数组
+                    String items = this.requireAttribute(tagName, attributes, "items");
+                    String var = this.requireAttribute(tagName, attributes, "var");
+                    String index = getAttribute(attributes, "index");
+
+                    int id = this.loopCount++;
+                    String iterator = "$it" + id;
+                    String counter = "$i" + id;
+
+                    codeBuilder.appendScript("for(var ").appendScript(iterator).appendScript("=xview.iterator(").appendScript(items).appendScript("),")
+                            .appendScript(counter).appendScript("=0;").appendScript(iterator).appendScript(".hasNext();").appendScript(counter).appendScript("++){")
+                            .appendScript("var ").appendScript(var).appendScript("=").appendScript(iterator).appendScript(".next();");
+                    if (index != null && !index.trim().isEmpty()) {
+                        codeBuilder.appendScript("var ").appendScript(index.trim()).appendScript("=").appendScript(counter).appendScript("|0;");
+                    }
+                    codeBuilder.appendScript("\n");
+                    this.frames.push(new Frame(FrameType.BLOCK, codeBuilder));
+                } else if (XView.TAG_CHOOSE.equalsIgnoreCase(name.getName())) {
+                    // xview:choose 生成if/else if/else语句
+                    this.frames.push(new Frame(FrameType.CHOOSE, codeBuilder));
+                } else if (XView.TAG_WHEN.equalsIgnoreCase(name.getName()) || XView.TAG_OTHERWISE.equalsIgnoreCase(name.getName())) {
+                    if (parent == null || parent.type != FrameType.CHOOSE || parent.otherwise) {
+                        throw new XViewException(XViewScript.this.xview.getUri() + " -> [" + tagName + "] must be in [xview:" + XView.TAG_CHOOSE + "] before [xview:" + XView.TAG_OTHERWISE + "]");
+                    }
+
+                    if (parent.branches++ > 0) {
+                        codeBuilder.appendScript("else ");
+                    }
+                    if (XView.TAG_WHEN.equalsIgnoreCase(name.getName())) {
+                        codeBuilder.appendScript("if(").appendScript(this.requireAttribute(tagName, attributes, "test")).appendScript("){\n");
                     } else {
-                        // xxx:xxx 引用其他xview，递归解析（代码闭包传递）
-
-                        // 封装子内容代码
-                        CodeBuilder closureCodeBuilder = new CodeBuilder();
-                        closureCodeBuilder.appendScript("function ").appendScript("(){");
-                        this.forEachChildNodes(closureCodeBuilder, node);
-                        closureCodeBuilder.appendScript("}");
-
-                        // 生成调用参数
-                        StringBuilder callAttributeScript = new StringBuilder();
-                        callAttributeScript.append("(function(){");
-                        NamedNodeMap attributes = node.getAttributes();
-                        if (attributes != null) {
-                            callAttributeScript.append("var HashMap=Java.type(\"java.util.HashMap\");");
-                            callAttributeScript.append("var map=new HashMap();");
-
-                            for (int i = 0; i < attributes.getLength(); i++) {
-                                Name attributeName = Name.parse(attributes.item(i).getNodeName());
-                                if (attributeName.getPrefix() == null) {
-                                    attributeName.setPrefix(name.getPrefix());
-                                }
-
-                                if (name.getPrefix().equalsIgnoreCase(attributeName.getPrefix())) {
-                                    String varName = "value$" + i;
-                                    String varValue = attributes.item(i).getNodeValue();
-                                    callAttributeScript.append("var ").append(varName).append("=").append((varValue == null || varValue.trim().isEmpty()) ? "''" : varValue).append(";");
-                                    callAttributeScript.append("if(").append(varName).append("){");
-                                    callAttributeScript.append("map.put(\"").append(attributeName.getName()).append("\",").append(varName).append(");}");
-                                }
-                            }
-                            callAttributeScript.append("return map;");
-                        }
-                        callAttributeScript.append("})()");
-
-                        codeBuilder.appendScript("xview.execute(\"");
-                        codeBuilder.appendScript(namespace.getUrl());
-                        codeBuilder.appendScript("\",\"");
-                        codeBuilder.appendScript(name.getName());
-                        codeBuilder.appendScript("\",");
-                        codeBuilder.appendScript(callAttributeScript.toString());
-                        codeBuilder.appendScript(",\"");
-                        codeBuilder.appendScript(toSafeString(closureCodeBuilder.getScript()));
-                        codeBuilder.appendScript("\");\n");
+                        codeBuilder.appendScript("{\n");
+                        parent.otherwise = true;
                     }
+                    this.frames.push(new Frame(FrameType.BLOCK, codeBuilder));
                 } else {
-                    throw new XViewException(this.xview.getUri() + " -> unknow tag [" + ((Element) node).getTagName() + "]");
+                    throw new XViewException(XViewScript.this.xview.getUri() + " -> unknow tag [" + tagName + "]");
                 }
+                return;
             }
 
-            /*
-             * 输出自己的标记尾。
-             */
-            if (name.getPrefix() == null) {
-                if (!isClosed) {
-                    writeEndTag(codeBuilder, node);
+            // xxx:xxx 引用其他xview，递归解析（代码闭包传递）
+            XViewScript.this.dependencies.add(XViewScriptObject.resolvePath(namespace.getUrl(), name.getName() + XView.FILE_EXT));
+
+            // 封装子内容代码（与当前文件一起编译，作为函数对象传递给目标组件）
+            CodeBuilder closureCodeBuilder = new CodeBuilder(this.segments, this.properties);
+            closureCodeBuilder.appendScript("function ").appendScript("(){");
+
+            // 生成调用参数
+            StringBuilder callAttributeScript = new StringBuilder();
+            callAttributeScript.append("(function(){");
+            callAttributeScript.append("var HashMap=Java.type(\"java.util.HashMap\");");
+            callAttributeScript.append("var map=new HashMap();");
+
+            for (int i = 0; i < attributes.size(); i++) {
+                Name attributeName = Name.parse(attributes.get(i).name);
+                if (attributeName.getPrefix() == null) {
+                    attributeName.setPrefix(name.getPrefix());
+                }
+
+                if (name.getPrefix().equalsIgnoreCase(attributeName.getPrefix())) {
+                    String varName = "value$" + i;
+                    String varValue = attributes.get(i).value;
+                    callAttributeScript.append("var ").append(varName).append("=").append((varValue == null || varValue.trim().isEmpty()) ? "''" : varValue).append(";");
+                    callAttributeScript.append("if(").append(varName).append("){");
+                    callAttributeScript.append("map.put(\"").append(attributeName.getName()).append("\",").append(varName).append(");}");
+                }
+            }
+            callAttributeScript.append("return map;");
+            callAttributeScript.append("})()");
+
+            // xview:parallel="true" 时并行渲染，其他调用记录下来并加上标记（编译时可以内联）
+            boolean parallel = this.isParallel(attributes);
+            StringBuilder callScript = new StringBuilder();
+            if (!parallel) {
+                String uri = XViewScriptObject.resolvePath(namespace.getUrl(), name.getName() + XView.FILE_EXT);
+                List<String> callNames = new ArrayList<>();
+                List<String> callValues = new ArrayList<>();
+                for (Attribute attribute : attributes) {
+                    Name attributeName = Name.parse(attribute.name);
+                    if (attributeName.getPrefix() == null || name.getPrefix().equalsIgnoreCase(attributeName.getPrefix())) {
+                        callNames.add(attributeName.getName());
+                        callValues.add(attribute.value == null || attribute.value.trim().isEmpty() ? null : attribute.value);
+                    }
                 }
+
+                callScript.append(CALL_MARK).append(XViewScript.this.callSites.size()).append("*/");
+                XViewScript.this.callSites.add(new CallSite(uri, callNames.toArray(new String[0]), callValues.toArray(new String[0])));
+            }
+            callScript.append(parallel ? "xview.fork(\"" : "xview.execute(\"");
+            callScript.append(namespace.getUrl());
+            callScript.append("\",\"");
+            callScript.append(name.getName());
+            callScript.append("\",");
+            callScript.append(callAttributeScript);
+            callScript.append(",");
+            if (!parallel) {
+                callScript.append(CLOSURE_MARK).append(XViewScript.this.callSites.size() - 1).append("*/");
             }
 
-            return;
+            Frame frame = new Frame(FrameType.COMPONENT, closureCodeBuilder);
+            frame.parentCodeBuilder = codeBuilder;
+            frame.callScript = callScript.toString();
+            this.frames.push(frame);
         }
-    }
 
-    private void forEachChildNodes(CodeBuilder codeBuilder, Node node) {
-        NodeList childNodes = node.getChildNodes();
+        private void endElement() {
+            Frame frame = this.frames.pop();
 
-        if (childNodes != null && childNodes.getLength() > 0) {
-            for (int i = 0; i < childNodes.getLength(); i++) {
-                this.buildCode(childNodes.item(i), codeBuilder);
+            if (frame.type == FrameType.ELEMENT) {
+                /*
+                 * 输出自己的标记尾。
+                 */
+                if (frame.pendingOpen) {
+                    frame.codeBuilder.appendOutput("/>");
+                } else {
+                    frame.codeBuilder.appendOutput("</").appendOutput(frame.tagName).appendOutput(">");
+                }
+            } else if (frame.type == FrameType.SCRIPT) {
+                Frame parent = this.frames.peek();
+                if (parent == null || parent.type != FrameType.SCRIPT) {
+                    frame.codeBuilder.appendScript("\n").appendScript(toMiniString(frame.text.toString())).appendScript("\n");
+                }
+            } else if (frame.type == FrameType.BLOCK) {
+                frame.codeBuilder.appendScript("}\n");
+            } else if (frame.type == FrameType.COMPONENT) {
+                frame.codeBuilder.appendScript("}");
+
+                // 没有子内容时传递null（目标组件可以使用输出缓存）
+                String closureScript = frame.codeBuilder.getScript();
+                frame.parentCodeBuilder.appendScript(frame.callScript);
+                frame.parentCodeBuilder.appendScript(EMPTY_CLOSURE.equals(closureScript) ? "null" : closureScript);
+                frame.parentCodeBuilder.appendScript(");\n");
             }
         }
     }
 
-    private static boolean writeBeginTag(CodeBuilder codeBuilder, Node node) {
-        codeBuilder.appendOutput("<").appendOutput(node.getNodeName());
+    private enum FrameType {
+        ELEMENT, VIEW, SCRIPT, IGNORE, COMPONENT, BLOCK, CHOOSE
+    }
 
-        NamedNodeMap attributes = node.getAttributes();
-        if (attributes != null && attributes.getLength() > 0) {
-            for (int i = 0; i < attributes.getLength(); i++) {
-                codeBuilder.appendOutput(" ");
-                codeBuilder.appendOutput(attributes.item(i).getNodeName());
-                codeBuilder.appendOutput("=\"");
-                codeBuilder.appendOutput(attributes.item(i).getNodeValue());
-                codeBuilder.appendOutput("\"");
+    /**
+     * 按本地名称获取属性（xview:test 与 test 相同）。
+     */
+    private static String getAttribute(List<Attribute> attributes, String localName) {
+        for (Attribute attribute : attributes) {
+            if (!attribute.name.startsWith("xmlns") && localName.equals(Name.parse(attribute.name).getName())) {
+                return attribute.value;
             }
         }
 
-        NodeList childNodes = node.getChildNodes();
-        if (childNodes != null && childNodes.getLength() > 0) {
-            codeBuilder.appendOutput(">");
-            return false;
-        } else {
-            codeBuilder.appendOutput("/>");
-            return true;
+        return null;
+    }
+
+    /**
+     * 正在处理的元素。
+     */
+    private static class Frame {
+
+        private FrameType type;
+
+        /**
+         * 子内容输出到的CodeBuilder
+         */
+        private CodeBuilder codeBuilder;
+
+        private String tagName;
+
+        private boolean pendingOpen;
+
+        private StringBuilder text;
+
+        private CodeBuilder parentCodeBuilder;
+
+        private String callScript;
+
+        /**
+         * xview:choose 中已有的分支数量，以及是否已有xview:otherwise
+         */
+        private int branches;
+
+        private boolean otherwise;
+
+        public Frame(FrameType type, CodeBuilder codeBuilder) {
+            this.type = type;
+            this.codeBuilder = codeBuilder;
         }
     }
 
-    private static void writeEndTag(CodeBuilder codeBuilder, Node node) {
-        codeBuilder.appendOutput("</").appendOutput(node.getNodeName()).appendOutput(">");
+    private static final Comparator<Attribute> ATTRIBUTE_ORDER = new Comparator<Attribute>() {
+        @Override
+        public int compare(Attribute a, Attribute b) {
+            return a.name.compareTo(b.name);
+        }
+    };
+
+    private static class Attribute {
+
+        private String name;
+
+        private String value;
+
+        public Attribute(String name, String value) {
+            this.name = name;
+            this.value = value;
+        }
     }
 
     private static class CodeBuilder {
 
+        private Segments segments;
+
+        private Segments properties;
+
         private StringBuilder script = new StringBuilder();
 
         private StringBuilder peddingOutput;
 
+        public CodeBuilder(Segments segments, Segments properties) {
+            this.segments = segments;
+            this.properties = properties;
+        }
+
         public String getScript() {
             this.flushOutput();
 
@@ -200,9 +797,22 @@ public class XViewScript {
 
                 this.privateAppendOutput(output.substring(0, begin));
 
-                this.appendScript("xview.print(");
-                this.appendScript(output.substring(begin + "${".length(), end));
-                this.appendScript(");\n");
+                String expression = output.substring(begin + "${".length(), end).trim();
+                int offset = expression.indexOf('.');
+                if (offset != -1 && PROPERTY_PATH.matcher(expression).matches()) {
+                    // ${a.b.c}：脚本只取得根变量，属性路径在Java中读取，无法读取时由脚本求值
+                    this.appendScript("if(!xview.printProperty(");
+                    this.appendScript(String.valueOf(this.properties.indexOf(expression.substring(offset + 1))));
+                    this.appendScript(",");
+                    this.appendScript(expression.substring(0, offset));
+                    this.appendScript(")){xview.print(");
+                    this.appendScript(expression);
+                    this.appendScript(");}\n");
+                } else {
+                    this.appendScript("xview.print(");
+                    this.appendScript(output.substring(begin + "${".length(), end));
+                    this.appendScript(");\n");
+                }
 
                 output = output.substring(end + "}".length());
             }
@@ -225,7 +835,7 @@ public class XViewScript {
 
         private void flushOutput() {
             if (this.peddingOutput != null) {
-                this.script.append("xview.print(\"").append(toSafeString(this.peddingOutput.toString())).append("\");");
+                this.script.append("xview.write(").append(this.segments.indexOf(this.peddingOutput.toString())).append(");");
                 this.peddingOutput = null;
             }
         }
@@ -238,6 +848,42 @@ public class XViewScript {
         }
     }
 
+    /**
+     * 静态输出片段表（相同的片段只保存一份），也用于属性路径表。
+     */
+    private static class Segments {
+
+        private List<String> list = new ArrayList<>();
+
+        private Map<String, Integer> indexes = new HashMap<>();
+
+        public int indexOf(String segment) {
+            Integer index = this.indexes.get(segment);
+
+            if (index == null) {
+                index = this.list.size();
+                this.list.add(segment);
+                this.indexes.put(segment, index);
+            }
+
+            return index;
+        }
+
+        public String[] toArray() {
+            return this.list.toArray(new String[0]);
+        }
+
+        public byte[][] toBytes(Charset charset) {
+            byte[][] bytes = new byte[this.list.size()][];
+
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = this.list.get(i).getBytes(charset);
+            }
+
+            return bytes;
+        }
+    }
+
     private static class Name {
 
         private String prefix;
@@ -276,8 +922,58 @@ public class XViewScript {
 
     }
 
-    private static String toSafeString(String s) {
-        return s.replaceAll("\n", "\\\\n").replaceAll("\"", "\\\\\"");
+    /**
+     * 组件调用：目标xview文件与调用参数（值为脚本表达式，空值为null）。
+     */
+    public static class CallSite {
+
+        private final String uri;
+
+        private final String[] names;
+
+        private final String[] values;
+
+        public CallSite(String uri, String[] names, String[] values) {
+            this.uri = uri;
+            this.names = names;
+            this.values = values;
+        }
+
+        public String getUri() {
+            return uri;
+        }
+
+        public String[] getNames() {
+            return names;
+        }
+
+        public String[] getValues() {
+            return values;
+        }
+
+        public String getValue(String name) {
+            for (int i = 0; i < this.names.length; i++) {
+                if (this.names[i].equals(name)) {
+                    return this.values[i];
+                }
+            }
+            return null;
+        }
+    }
+
+    private static String toScriptString(String s) {
+        StringBuilder stringBuilder = new StringBuilder(s.length() + 2).append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                stringBuilder.append('\\').append(c);
+            } else if (c < 0x20 || c == 0x2028 || c == 0x2029) {
+                stringBuilder.append(String.format("\\u%04x", (int) c));
+            } else {
+                stringBuilder.append(c);
+            }
+        }
+        return stringBuilder.append('"').toString();
     }
 
     private static String toMiniString(String s) {
@@ -0,0 +1,142 @@
+package io.xview;
+
+import javax.script.Bindings;
+import javax.script.ScriptContext;
+import java.io.*;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 渲染时使用的ScriptContext：ENGINE_SCOPE为池化的Bindings，GLOBAL_SCOPE为调用方的作用域（{@link ScopeBindings}）。
+ * 与SimpleScriptContext相比不会为每次调用创建Reader/Writer。
+ */
+public class XViewScriptContext implements ScriptContext {
+
+    private static final List<Integer> SCOPES = Collections.unmodifiableList(Arrays.asList(ENGINE_SCOPE, GLOBAL_SCOPE));
+
+    private static final Reader DEFAULT_READER = new InputStreamReader(System.in);
+    private static final Writer DEFAULT_WRITER = new PrintWriter(System.out, true);
+    private static final Writer DEFAULT_ERROR_WRITER = new PrintWriter(System.err, true);
+
+    private Bindings engineScope;
+
+    private Bindings globalScope;
+
+    private Reader reader = DEFAULT_READER;
+    private Writer writer = DEFAULT_WRITER;
+    private Writer errorWriter = DEFAULT_ERROR_WRITER;
+
+    public XViewScriptContext(Bindings engineScope, Bindings globalScope) {
+        this.engineScope = engineScope;
+        this.globalScope = globalScope;
+    }
+
+    @Override
+    public void setBindings(Bindings bindings, int scope) {
+        if (scope == ENGINE_SCOPE) {
+            if (bindings == null) {
+                throw new NullPointerException("Engine scope Bindings may not be null.");
+            }
+            this.engineScope = bindings;
+        } else if (scope == GLOBAL_SCOPE) {
+            this.globalScope = bindings;
+        } else {
+            throw new IllegalArgumentException("Invalid scope value.");
+        }
+    }
+
+    @Override
+    public Bindings getBindings(int scope) {
+        if (scope == ENGINE_SCOPE) {
+            return this.engineScope;
+        } else if (scope == GLOBAL_SCOPE) {
+            return this.globalScope;
+        } else {
+            throw new IllegalArgumentException("Invalid scope value.");
+        }
+    }
+
+    @Override
+    public void setAttribute(String name, Object value, int scope) {
+        this.getScope(scope).put(name, value);
+    }
+
+    @Override
+    public Object getAttribute(String name, int scope) {
+        Bindings bindings = this.getBindings(scope);
+        return bindings == null ? null : bindings.get(name);
+    }
+
+    @Override
+    public Object removeAttribute(String name, int scope) {
+        Bindings bindings = this.getBindings(scope);
+        return bindings == null ? null : bindings.remove(name);
+    }
+
+    @Override
+    public Object getAttribute(String name) {
+        if (this.engineScope.containsKey(name)) {
+            return this.engineScope.get(name);
+        } else if (this.globalScope != null && this.globalScope.containsKey(name)) {
+            return this.globalScope.get(name);
+        }
+
+        return null;
+    }
+
+    @Override
+    public int getAttributesScope(String name) {
+        if (this.engineScope.containsKey(name)) {
+            return ENGINE_SCOPE;
+        } else if (this.globalScope != null && this.globalScope.containsKey(name)) {
+            return GLOBAL_SCOPE;
+        }
+
+        return -1;
+    }
+
+    @Override
+    public Writer getWriter() {
+        return writer;
+    }
+
+    @Override
+    public Writer getErrorWriter() {
+        return errorWriter;
+    }
+
+    @Override
+    public void setWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    @Override
+    public void setErrorWriter(Writer writer) {
+        this.errorWriter = writer;
+    }
+
+    @Override
+    public Reader getReader() {
+        return reader;
+    }
+
+    @Override
+    public void setReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    @Override
+    public List<Integer> getScopes() {
+        return SCOPES;
+    }
+
+    private Bindings getScope(int scope) {
+        Bindings bindings = this.getBindings(scope);
+        if (bindings == null) {
+            throw new IllegalArgumentException("Scope " + scope + " has no Bindings.");
+        }
+        return bindings;
+    }
+
+}
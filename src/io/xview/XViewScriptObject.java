@@ -1,33 +1,157 @@
 package io.xview;
 
-import javax.script.Bindings;
+import jdk.nashorn.api.scripting.JSObject;
+
+import javax.script.ScriptContext;
 import java.io.IOException;
-import java.io.OutputStream;
-import java.util.HashMap;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Future;
 
 public class XViewScriptObject {
 
     private XView xview;
 
-    private Bindings bindings;
+    private ScriptContext context;
+
+    private XViewWriter writer;
+
+    private byte[][] segments;
+
+    private XViewPropertyPath[] properties;
+
+    private int depth;
+
+    private XViewProfiler.Profile profile;
+
+    /**
+     * 由此对象发起的并行渲染（只在调用方线程中访问）
+     */
+    private List<Future<byte[]>> forks;
 
-    private OutputStream outputStream;
+    /**
+     * 内联组件使用的XViewScriptObject（见 {@link #inline(int)}）
+     */
+    private XViewScriptObject[] inlined;
 
-    public XViewScriptObject(XView xview, Bindings bindings, OutputStream outputStream) {
+    /**
+     * @param depth 嵌套调用的层数，顶层调用为0
+     * @param profile 被采样时的调用树，未采样时为null
+     */
+    public XViewScriptObject(XView xview, ScriptContext context, XViewWriter writer, int depth, XViewProfiler.Profile profile) {
         this.xview = xview;
-        this.bindings = bindings;
-        this.outputStream = outputStream;
+        this.context = context;
+        this.writer = writer;
+        this.depth = depth;
+        this.profile = profile;
+        this.segments = xview.getXViewScript().getSegments();
+        this.properties = xview.getXViewScript().getProperties();
     }
 
-    public void print(Object data) throws IOException {
-        String text = data == null ? null : data.toString();
+    public XView getXView() {
+        return xview;
+    }
+
+    public ScriptContext getContext() {
+        return context;
+    }
+
+    public XViewWriter getWriter() {
+        return writer;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public XViewProfiler.Profile getProfile() {
+        return profile;
+    }
+
+    /**
+     * 输出编译时已编码的静态片段。
+     */
+    public void write(int index) throws IOException {
+        this.writer.write(this.segments[index]);
+    }
+
+    /**
+     * 提前输出已渲染的内容（xview:flush）。
+     */
+    public void flush() throws IOException {
+        this.writer.flushEarly();
+    }
 
-        if (text == null) {
+    public void print(Object data) throws IOException {
+        if (data == null) {
             return;
         }
 
-        this.outputStream.write(text.getBytes());
+        if (data instanceof CharSequence) {
+            this.writer.print((CharSequence) data);
+        } else {
+            String text = data.toString();
+            if (text != null) {
+                this.writer.print(text);
+            }
+        }
+    }
+
+    /**
+     * 输出 ${root.a.b} 形式的表达式：root由脚本取得，属性路径在Java中读取（见 {@link XViewPropertyPath}）。
+     * 无法在Java中读取时不输出并返回false，由脚本对整个表达式求值后输出。
+     */
+    public boolean printProperty(int index, Object root) throws IOException {
+        Object value = this.properties[index].get(root);
+        if (value == XViewPropertyPath.UNRESOLVED) {
+            return false;
+        }
+
+        this.print(value);
+        return true;
+    }
+
+    /**
+     * xview:for 使用的迭代器：支持Iterator、Iterable、Map（遍历Map.Entry）、Java数组与脚本数组，null时为空，其他对象作为单个元素。
+     */
+    public Iterator<?> iterator(Object items) {
+        Iterator<?> iterator = this.newIterator(items);
+
+        // 限制了渲染时间时在循环中检查，不输出内容的循环也能被结束
+        return this.writer.getDeadline() != 0 ? new DeadlineIterator(iterator, this.writer) : iterator;
+    }
+
+    private Iterator<?> newIterator(Object items) {
+        if (items == null) {
+            return Collections.emptyIterator();
+        }
+
+        if (items instanceof JSObject && ((JSObject) items).isArray()) {
+            return ((JSObject) items).values().iterator();
+        }
+
+        if (items instanceof Iterator) {
+            return (Iterator<?>) items;
+        }
+
+        if (items instanceof Iterable) {
+            return ((Iterable<?>) items).iterator();
+        }
+
+        if (items instanceof Map) {
+            return ((Map<?, ?>) items).entrySet().iterator();
+        }
+
+        if (items.getClass().isArray()) {
+            return new ArrayIterator(items);
+        }
+
+        return Collections.singleton(items).iterator();
     }
 
     /**
@@ -43,6 +167,10 @@ public class XViewScriptObject {
      * path("/hello/1.png", "images/2.png") 返回 "/hello/images/2.png"
      */
     public String path(String uri, String path) {
+        return resolvePath(uri, path);
+    }
+
+    public static String resolvePath(String uri, String path) {
         String loadUri;
 
         int offset = uri.replaceAll("\\\\", "/").lastIndexOf('/');
@@ -56,19 +184,179 @@ public class XViewScriptObject {
         return loadUri;
     }
 
-    public void execute(String xsd, String tag, Map<String, Object> callAttributes, String processChildNodesFunction) throws Exception {
+    /**
+     * 调用其他xview组件。
+     *
+     * @param processChildNodesFunction 子内容函数（已随调用方一起编译），由目标组件的 xview:process_child_nodes 调用
+     */
+    public void execute(String xsd, String tag, Map<String, Object> callAttributes, Object processChildNodesFunction) throws Exception {
+        checkInterrupted();
+        this.writer.checkDeadline();
+
         // 根据引用组件的XSD文档获取组件xview文件路径（同目录）
         String uri = this.path(xsd, tag + XView.FILE_EXT);
 
         // 通过xview文件加载目标组件
         XView targetXview = this.xview.getXViewManager().load(uri);
 
-        // 由于组件之间是互相隔离的（不是同一个Bindings），所以需要将父组件的Bindings同步过来，这样子组件就可以访问父组件的变量
-        Map<String, Object> env = new HashMap<>();
-        env.putAll(this.bindings);
-        env.putAll(callAttributes);
+        // 组件之间是互相隔离的（不是同一个Bindings），子组件通过作用域链读取父组件的变量，不需要复制父组件的Bindings
+        targetXview.execute(this.writer, callAttributes, processChildNodesFunction, this);
+    }
+
+    /**
+     * 并行调用其他xview组件（组件标签上声明了 xview:parallel="true"）：在当前线程解析参数后交给XViewManager的执行器渲染到单独的缓冲区，
+     * 输出在文档中的位置保持不变。有子内容（子内容函数属于调用方的脚本，不能在其他线程执行）或没有执行器时按顺序调用。
+     */
+    public void fork(String xsd, String tag, Map<String, Object> callAttributes, Object processChildNodesFunction) throws Exception {
+        checkInterrupted();
+        this.writer.checkDeadline();
+
+        XViewManager xviewManager = this.xview.getXViewManager();
+
+        if (processChildNodesFunction != null || !xviewManager.isParallelRendering()) {
+            this.execute(xsd, tag, callAttributes, processChildNodesFunction);
+            return;
+        }
+
+        String uri = this.path(xsd, tag + XView.FILE_EXT);
+        XView targetXview = xviewManager.load(uri);
+
+        Future<byte[]> future = xviewManager.fork(targetXview, targetXview.resolveAttributes(callAttributes, null, this), this);
+        if (this.forks == null) {
+            this.forks = new ArrayList<>();
+        }
+        this.forks.add(future);
+        this.writer.fork(future);
+    }
+
+    /**
+     * 取得内联组件（见 {@link XViewScript#inline(int)}）使用的xview对象：与调用方共用输出缓冲区与ScriptContext，
+     * 输出片段、属性路径与相对路径属于目标组件。
+     */
+    public XViewScriptObject inline(int index) throws InterruptedException {
+        checkInterrupted();
+        this.writer.checkDeadline();
+
+        if (this.inlined == null) {
+            this.inlined = new XViewScriptObject[this.xview.getXViewScript().getInlined().length];
+        }
+
+        XViewScriptObject xviewScriptObject = this.inlined[index];
+        if (xviewScriptObject == null) {
+            XView target = this.xview.getXViewScript().getInlined()[index];
+            xviewScriptObject = new XViewScriptObject(target, this.context, this.writer, this.depth + 1, this.profile);
+            this.inlined[index] = xviewScriptObject;
+        }
+
+        return xviewScriptObject;
+    }
+
+    /**
+     * 解析内联组件的参数：调用参数 > 调用方的同名变量 > 默认值（与 {@link XView#resolveAttributes(Map, Object, XViewScriptObject)} 相同）。
+     */
+    public Object attribute(String name, Object value, Object defaultValue) {
+        if (XView.isEmpty(value)) {
+            value = this.context.getAttribute(name);
+        }
+        if (XView.isEmpty(value)) {
+            value = defaultValue;
+        }
+
+        return value;
+    }
+
+    /**
+     * 等待由此对象发起的并行渲染结束（子组件通过作用域链读取此对象的变量，结束前不能归还Bindings），异常由XViewWriter拼接时抛出。
+     */
+    void awaitForks() {
+        if (this.forks == null) {
+            return;
+        }
+
+        boolean interrupted = false;
+        for (Future<byte[]> future : this.forks) {
+            while (!future.isDone()) {
+                try {
+                    future.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    future.cancel(true);
+                } catch (Exception e) {
+                    break;
+                }
+            }
+        }
+        this.forks = null;
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 渲染线程被中断（异步渲染超时或取消）时结束渲染。
+     */
+    private static void checkInterrupted() throws InterruptedException {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedException("render interrupted");
+        }
+    }
+
+    private static class DeadlineIterator implements Iterator<Object> {
+
+        private final Iterator<?> iterator;
+
+        private final XViewWriter writer;
+
+        private int count;
 
-        targetXview.execute(this.outputStream, env, processChildNodesFunction);
+        DeadlineIterator(Iterator<?> iterator, XViewWriter writer) {
+            this.iterator = iterator;
+            this.writer = writer;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if ((++this.count & 63) == 0) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new XViewException("render interrupted");
+                }
+                this.writer.checkDeadline();
+            }
+            return this.iterator.hasNext();
+        }
+
+        @Override
+        public Object next() {
+            return this.iterator.next();
+        }
+    }
+
+    private static class ArrayIterator implements Iterator<Object> {
+
+        private final Object array;
+
+        private final int length;
+
+        private int index;
+
+        ArrayIterator(Object array) {
+            this.array = array;
+            this.length = Array.getLength(array);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.index < this.length;
+        }
+
+        @Override
+        public Object next() {
+            if (this.index >= this.length) {
+                throw new NoSuchElementException();
+            }
+            return Array.get(this.array, this.index++);
+        }
     }
 
 }
@@ -0,0 +1,161 @@
+package io.xview;
+
+import java.io.OutputStream;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 预热进度，见 {@link XViewManager#warmup(Collection, int, Map, java.util.concurrent.Executor)}。
+ * 每个文件完成（包括失败）后计数，全部完成后 {@link #isDone()} 为true，没有失败时 {@link #isReady()} 为true。
+ */
+public class XViewWarmup {
+
+    /**
+     * 丢弃所有输出
+     */
+    public static final OutputStream NULL_OUTPUT_STREAM = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    private final List<String> uris;
+
+    private final int iterations;
+
+    private final long startTime = System.nanoTime();
+
+    private volatile long endTime;
+
+    private final AtomicInteger loadedCount = new AtomicInteger();
+
+    private final AtomicLong renderCount = new AtomicLong();
+
+    private final AtomicInteger completedCount = new AtomicInteger();
+
+    private final Map<String, Throwable> failures = new ConcurrentHashMap<>();
+
+    private final CountDownLatch latch;
+
+    XViewWarmup(Collection<String> uris, int iterations) {
+        this.uris = Collections.unmodifiableList(new ArrayList<>(new LinkedHashSet<>(uris)));
+        this.iterations = iterations;
+        this.latch = new CountDownLatch(this.uris.size());
+
+        if (this.uris.isEmpty()) {
+            this.endTime = this.startTime;
+        }
+    }
+
+    void onLoaded(String uri) {
+        this.loadedCount.incrementAndGet();
+    }
+
+    void onRendered(String uri) {
+        this.renderCount.incrementAndGet();
+    }
+
+    void onCompleted(String uri, Throwable e) {
+        if (e != null) {
+            this.failures.put(uri, e);
+        }
+
+        if (this.completedCount.incrementAndGet() == this.uris.size()) {
+            this.endTime = System.nanoTime();
+        }
+        this.latch.countDown();
+    }
+
+    public List<String> getUris() {
+        return uris;
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * 已加载并编译的文件数量
+     */
+    public int getLoadedCount() {
+        return this.loadedCount.get();
+    }
+
+    /**
+     * 已完成的渲染次数
+     */
+    public long getRenderCount() {
+        return this.renderCount.get();
+    }
+
+    /**
+     * 已完成（包括失败）的文件数量
+     */
+    public int getCompletedCount() {
+        return this.completedCount.get();
+    }
+
+    /**
+     * 进度（0~1）
+     */
+    public double getProgress() {
+        return this.uris.isEmpty() ? 1 : (double) this.completedCount.get() / this.uris.size();
+    }
+
+    public boolean isDone() {
+        return this.latch.getCount() == 0;
+    }
+
+    /**
+     * 全部完成且没有失败。
+     */
+    public boolean isReady() {
+        return this.isDone() && this.failures.isEmpty();
+    }
+
+    /**
+     * 失败的文件及其异常
+     */
+    public Map<String, Throwable> getFailures() {
+        return Collections.unmodifiableMap(this.failures);
+    }
+
+    /**
+     * 预热耗时（毫秒），未完成时为到目前为止的耗时。
+     */
+    public long getElapsedTime() {
+        long endTime = this.isDone() ? this.endTime : System.nanoTime();
+        return TimeUnit.NANOSECONDS.toMillis(endTime - this.startTime);
+    }
+
+    /**
+     * 等待全部完成。
+     *
+     * @return 是否已全部完成
+     */
+    public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        return this.latch.await(timeout, unit);
+    }
+
+    public void await() throws InterruptedException {
+        this.latch.await();
+    }
+
+    @Override
+    public String toString() {
+        return "XViewWarmup{completed=" + this.completedCount.get() + "/" + this.uris.size()
+                + ", loaded=" + this.loadedCount.get()
+                + ", renders=" + this.renderCount.get()
+                + ", failures=" + this.failures.size()
+                + ", elapsed=" + this.getElapsedTime() + "ms}";
+    }
+
+}
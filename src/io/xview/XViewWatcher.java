@@ -0,0 +1,273 @@
+package io.xview;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 热加载：通过WatchService监听已加载的xview文件，文件变化时只让变化的文件以及（直接或间接）引用它的文件从缓存中失效。
+ * 引用关系由各文件namespace（schemaLocation）与组件标签解析得到，见 {@link XViewScript#getDependencies()}。
+ * 验证Schema的文件同时监听其schemaLocation中的XSD文件，XSD变化时使编译好的Schema与验证过的文件失效。
+ */
+public class XViewWatcher implements Runnable {
+
+    private final XViewManager xviewManager;
+
+    private final WatchService watchService;
+
+    private final Thread thread;
+
+    private volatile boolean running;
+
+    /**
+     * 已监听的目录
+     */
+    private final Map<Path, WatchKey> directories = new ConcurrentHashMap<>();
+
+    /**
+     * 文件 -> 由此文件加载的URI集合
+     */
+    private final Map<Path, Set<String>> files = new ConcurrentHashMap<>();
+
+    /**
+     * URI -> 此URI引用的URI集合
+     */
+    private final Map<String, Set<String>> dependencies = new ConcurrentHashMap<>();
+
+    /**
+     * URI -> 引用此URI的URI集合
+     */
+    private final Map<String, Set<String>> dependents = new ConcurrentHashMap<>();
+
+    /**
+     * URI -> 失效次数，加载期间发生失效时加载的结果不放入缓存（见 {@link XViewManager#load(String)}）
+     */
+    private final Map<String, AtomicLong> generations = new ConcurrentHashMap<>();
+
+    /**
+     * 已失效、尚未重新编译的URI
+     */
+    private final Set<String> invalidated = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong invalidationCount = new AtomicLong();
+    private final AtomicLong changedFileCount = new AtomicLong();
+    private final AtomicLong recompileCount = new AtomicLong();
+    private final AtomicLong totalInvalidationLatency = new AtomicLong();
+    private volatile long lastInvalidationLatency;
+    private volatile long maxInvalidationLatency;
+
+    public XViewWatcher(XViewManager xviewManager) throws IOException {
+        this.xviewManager = xviewManager;
+        this.watchService = FileSystems.getDefault().newWatchService();
+
+        this.thread = new Thread(this, "xview-watcher");
+        this.thread.setDaemon(true);
+    }
+
+    public void start() {
+        this.running = true;
+        this.thread.start();
+    }
+
+    public void close() {
+        this.running = false;
+        this.thread.interrupt();
+
+        try {
+            this.watchService.close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+    /**
+     * 登记一个已编译的xview：监听其文件所在目录并记录它的引用关系。
+     */
+    public void watch(XView xview, File file) {
+        String uri = xview.getUri();
+
+        if (this.invalidated.remove(uri)) {
+            this.recompileCount.incrementAndGet();
+        }
+
+        Set<String> newDependencies = new HashSet<>(xview.getXViewScript().getDependencies());
+        if (xview.isValidateSchema() && xview.getXViewXml() != null) {
+            for (XViewXml.Namespace namespace : xview.getXViewXml().getNamespaceMapping().values()) {
+                String xsdUri = namespace.getUrl();
+                if (xsdUri != null && !xsdUri.equals(namespace.getTargetNamespace()) && newDependencies.add(xsdUri)) {
+                    this.watchFile(xsdUri, this.xviewManager.getXViewLoader().getFile(xsdUri));
+                }
+            }
+        }
+        Set<String> oldDependencies = this.dependencies.put(uri, newDependencies);
+        if (oldDependencies != null) {
+            for (String i : oldDependencies) {
+                Set<String> set = this.dependents.get(i);
+                if (set != null) {
+                    set.remove(uri);
+                }
+            }
+        }
+        for (String i : newDependencies) {
+            this.dependents.computeIfAbsent(i, k -> ConcurrentHashMap.newKeySet()).add(uri);
+        }
+
+        this.watchFile(uri, file);
+    }
+
+    private void watchFile(String uri, File file) {
+        if (file == null) {
+            return;
+        }
+
+        Path path = file.toPath().toAbsolutePath().normalize();
+        Path directory = path.getParent();
+        if (directory == null) {
+            return;
+        }
+
+        this.files.computeIfAbsent(path, k -> ConcurrentHashMap.newKeySet()).add(uri);
+
+        if (!this.directories.containsKey(directory)) {
+            try {
+                WatchKey watchKey = directory.register(this.watchService,
+                        StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+                this.directories.putIfAbsent(directory, watchKey);
+            } catch (IOException | ClosedWatchServiceException e) {
+                throw new XViewException(uri + " -> unable to watch [" + directory + "]", e);
+            }
+        }
+    }
+
+    /**
+     * URI的失效次数。
+     */
+    public long getGeneration(String uri) {
+        AtomicLong generation = this.generations.get(uri);
+        return generation == null ? 0 : generation.get();
+    }
+
+    /**
+     * 使URI及所有引用它的URI失效。
+     */
+    public void invalidate(String uri) {
+        Deque<String> pending = new ArrayDeque<>();
+        Set<String> visited = new HashSet<>();
+        pending.add(uri);
+
+        while (!pending.isEmpty()) {
+            String i = pending.poll();
+            if (!visited.add(i)) {
+                continue;
+            }
+
+            // 先增加失效次数再移除缓存，与XViewManager.load中先放入缓存再检查的顺序配合
+            this.generations.computeIfAbsent(i, k -> new AtomicLong()).incrementAndGet();
+
+            this.xviewManager.getXViewOutputCache().remove(i);
+            this.xviewManager.getXViewSchemaCache().invalidate(i);
+
+            if (this.xviewManager.getXViewCache().remove(i) != null) {
+                this.invalidated.add(i);
+                this.invalidationCount.incrementAndGet();
+            }
+
+            Set<String> set = this.dependents.get(i);
+            if (set != null) {
+                pending.addAll(set);
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        while (this.running) {
+            WatchKey watchKey;
+            try {
+                watchKey = this.watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                break;
+            }
+
+            Path directory = (Path) watchKey.watchable();
+
+            for (WatchEvent<?> event : watchKey.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    // 事件丢失时无法确定变化的文件，使此目录下的所有文件失效
+                    for (Path path : this.files.keySet()) {
+                        if (directory.equals(path.getParent())) {
+                            this.invalidateFile(path);
+                        }
+                    }
+                    continue;
+                }
+
+                this.invalidateFile(directory.resolve((Path) event.context()));
+            }
+
+            if (!watchKey.reset()) {
+                this.directories.remove(directory);
+            }
+        }
+    }
+
+    private void invalidateFile(Path path) {
+        Set<String> uris = this.files.get(path);
+        if (uris == null || uris.isEmpty()) {
+            return;
+        }
+
+        for (String uri : uris) {
+            this.invalidate(uri);
+        }
+        this.changedFileCount.incrementAndGet();
+
+        // 延迟 = 文件修改时间到失效完成的时间
+        long lastModified = path.toFile().lastModified();
+        if (lastModified > 0) {
+            long latency = Math.max(0, System.currentTimeMillis() - lastModified);
+            this.lastInvalidationLatency = latency;
+            this.totalInvalidationLatency.addAndGet(latency);
+            if (latency > this.maxInvalidationLatency) {
+                this.maxInvalidationLatency = latency;
+            }
+        }
+    }
+
+    public long getInvalidationCount() {
+        return invalidationCount.get();
+    }
+
+    public long getChangedFileCount() {
+        return changedFileCount.get();
+    }
+
+    public long getRecompileCount() {
+        return recompileCount.get();
+    }
+
+    /**
+     * 最近一次失效的延迟（毫秒）
+     */
+    public long getLastInvalidationLatency() {
+        return lastInvalidationLatency;
+    }
+
+    /**
+     * 最大失效延迟（毫秒）
+     */
+    public long getMaxInvalidationLatency() {
+        return maxInvalidationLatency;
+    }
+
+    /**
+     * 累计失效延迟（毫秒），除以 {@link #getChangedFileCount()} 即为平均延迟
+     */
+    public long getTotalInvalidationLatency() {
+        return totalInvalidationLatency.get();
+    }
+
+}
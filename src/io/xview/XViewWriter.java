@@ -0,0 +1,390 @@
+package io.xview;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 渲染输出缓冲区。
+ * 一次渲染（包括其中嵌套调用的组件）共用一个XViewWriter：静态片段直接复制字节，动态内容通过复用的CharsetEncoder编码，
+ * 缓冲区达到阈值后才写入目标输出流，由XViewManager池化复用。
+ * 并行渲染的子组件（见 {@link #fork(Future)}）在文档中的位置之后的内容暂存在内存中，子组件完成后按文档顺序拼接输出。
+ * 目标也可以是WritableByteChannel（使用直接缓冲区），非阻塞通道暂时写不进去时等待（背压），不在内存中堆积输出。
+ */
+public class XViewWriter {
+
+    public static final int DEFAULT_BUFFER_SIZE = 1024 * 8;
+
+    private final Charset charset;
+
+    private final CharsetEncoder encoder;
+
+    private final ByteBuffer buffer;
+
+    private final int flushThreshold;
+
+    private final boolean direct;
+
+    private OutputStream outputStream;
+
+    private WritableByteChannel channel;
+
+    private long count;
+
+    /**
+     * 渲染结束时间（System.nanoTime，0表示不限制）与最多输出的字节数，见 {@link XViewBudget}
+     */
+    private long deadline;
+
+    private long maxBytes = Long.MAX_VALUE;
+
+    /**
+     * 等待拼接的内容：未完成的子组件（Future）与其后的输出（byte[]）
+     */
+    private Deque<Object> deferred;
+
+    public XViewWriter(Charset charset, int bufferSize, int flushThreshold) {
+        this(charset, bufferSize, flushThreshold, false);
+    }
+
+    /**
+     * @param direct 是否使用直接缓冲区（输出到WritableByteChannel时避免复制）
+     */
+    public XViewWriter(Charset charset, int bufferSize, int flushThreshold, boolean direct) {
+        this.charset = charset;
+        this.encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.direct = direct;
+        this.buffer = direct ? ByteBuffer.allocateDirect(Math.max(bufferSize, 64)) : ByteBuffer.allocate(Math.max(bufferSize, 64));
+        this.flushThreshold = flushThreshold <= 0 || flushThreshold > this.buffer.capacity() ? this.buffer.capacity() : flushThreshold;
+    }
+
+    public Charset getCharset() {
+        return charset;
+    }
+
+    public int getBufferSize() {
+        return this.buffer.capacity();
+    }
+
+    public int getFlushThreshold() {
+        return flushThreshold;
+    }
+
+    public boolean isDirect() {
+        return direct;
+    }
+
+    /**
+     * 已输出的字节数（包括尚在缓冲区中的），并行渲染的子组件在拼接时计入。
+     */
+    public long getCount() {
+        return count;
+    }
+
+    public long getDeadline() {
+        return deadline;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * 设置本次渲染的限制（open时重置为不限制）。
+     *
+     * @param deadline 结束时间（System.nanoTime），0表示不限制
+     * @param maxBytes 最多输出的字节数
+     */
+    public void setBudget(long deadline, long maxBytes) {
+        this.deadline = deadline;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * 检查渲染时间是否超出限制。
+     */
+    public void checkDeadline() {
+        if (this.deadline != 0 && System.nanoTime() - this.deadline > 0) {
+            throw new XViewBudget.ExceededException("render time exceeded");
+        }
+    }
+
+    private void checkBytes() {
+        if (this.count > this.maxBytes) {
+            throw new XViewBudget.ExceededException("render output exceeded " + this.maxBytes + " bytes");
+        }
+    }
+
+    /**
+     * 绑定到目标输出流，开始一次新的渲染。
+     */
+    public XViewWriter open(OutputStream outputStream) {
+        this.outputStream = outputStream;
+        this.channel = null;
+        this.buffer.clear();
+        this.encoder.reset();
+        this.count = 0;
+        this.deadline = 0;
+        this.maxBytes = Long.MAX_VALUE;
+        return this;
+    }
+
+    /**
+     * 绑定到目标通道，开始一次新的渲染。
+     */
+    public XViewWriter open(WritableByteChannel channel) {
+        this.outputStream = null;
+        this.channel = channel;
+        this.buffer.clear();
+        this.encoder.reset();
+        this.count = 0;
+        this.deadline = 0;
+        this.maxBytes = Long.MAX_VALUE;
+        return this;
+    }
+
+    /**
+     * 解除与目标输出流的绑定，缓冲区中未输出的内容会被丢弃。
+     */
+    public void release() {
+        if (this.deferred != null) {
+            for (Object part : this.deferred) {
+                if (part instanceof Future) {
+                    ((Future<?>) part).cancel(true);
+                }
+            }
+            this.deferred.clear();
+        }
+
+        this.outputStream = null;
+        this.channel = null;
+        this.buffer.clear();
+    }
+
+    /**
+     * 在当前位置插入一个并行渲染的子组件的输出，完成后按文档顺序输出。
+     */
+    public void fork(Future<byte[]> future) throws IOException {
+        this.flushBuffer();
+
+        if (this.deferred == null) {
+            this.deferred = new ArrayDeque<>();
+        }
+        this.deferred.add(future);
+    }
+
+    /**
+     * 等待所有并行渲染的子组件完成，并按文档顺序输出暂存的内容。
+     */
+    public void join() throws IOException {
+        this.flushBuffer();
+        this.drain(true);
+    }
+
+    public void write(byte[] bytes) throws IOException {
+        this.write(bytes, 0, bytes.length);
+    }
+
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        this.count += length;
+        this.checkBytes();
+
+        if (length > this.buffer.remaining()) {
+            this.flushBuffer();
+
+            // 大于缓冲区的内容直接输出
+            if (length >= this.buffer.capacity()) {
+                if (this.deferred != null && !this.deferred.isEmpty()) {
+                    this.deferred.add(Arrays.copyOfRange(bytes, offset, offset + length));
+                } else {
+                    this.output(bytes, offset, length);
+                }
+                return;
+            }
+        }
+
+        this.buffer.put(bytes, offset, length);
+        if (this.buffer.position() >= this.flushThreshold) {
+            this.flushBuffer();
+        }
+    }
+
+    public void print(CharSequence text) throws IOException {
+        if (text.length() == 0) {
+            return;
+        }
+
+        CharBuffer charBuffer = CharBuffer.wrap(text);
+        int position = this.buffer.position();
+
+        for (;;) {
+            CoderResult coderResult = this.encoder.encode(charBuffer, this.buffer, true);
+            if (coderResult.isOverflow()) {
+                this.count += this.buffer.position() - position;
+                this.checkBytes();
+                this.flushBuffer();
+                position = 0;
+                continue;
+            }
+
+            coderResult = this.encoder.flush(this.buffer);
+            if (coderResult.isOverflow()) {
+                this.count += this.buffer.position() - position;
+                this.checkBytes();
+                this.flushBuffer();
+                position = 0;
+                this.encoder.flush(this.buffer);
+            }
+            break;
+        }
+
+        this.count += this.buffer.position() - position;
+        this.encoder.reset();
+        this.checkBytes();
+
+        if (this.buffer.position() >= this.flushThreshold) {
+            this.flushBuffer();
+        }
+    }
+
+    /**
+     * 将缓冲区内容写入目标输出流并刷新目标输出流。
+     */
+    public void flush() throws IOException {
+        this.join();
+        if (this.outputStream != null) {
+            this.outputStream.flush();
+        }
+    }
+
+    /**
+     * 提前输出（xview:flush）：输出缓冲区中的内容，不等待未完成的并行子组件。
+     */
+    public void flushEarly() throws IOException {
+        this.flushBuffer();
+        this.drain(false);
+
+        if (this.outputStream != null && (this.deferred == null || this.deferred.isEmpty())) {
+            this.outputStream.flush();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        // 渲染线程被中断（异步渲染超时或取消）时结束渲染
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedIOException("render interrupted");
+        }
+        this.checkDeadline();
+
+        if (this.buffer.position() > 0) {
+            if (this.deferred != null && !this.deferred.isEmpty()) {
+                // 前面有未完成的子组件，暂存
+                byte[] bytes = new byte[this.buffer.position()];
+                this.buffer.flip();
+                this.buffer.get(bytes);
+                this.buffer.clear();
+                this.deferred.add(bytes);
+                this.drain(false);
+            } else if (this.channel != null) {
+                this.buffer.flip();
+                this.writeFully(this.buffer);
+                this.buffer.clear();
+            } else if (this.buffer.hasArray()) {
+                this.outputStream.write(this.buffer.array(), this.buffer.arrayOffset(), this.buffer.position());
+                this.buffer.clear();
+            } else {
+                byte[] bytes = new byte[this.buffer.position()];
+                this.buffer.flip();
+                this.buffer.get(bytes);
+                this.buffer.clear();
+                this.outputStream.write(bytes);
+            }
+        }
+    }
+
+    private void output(byte[] bytes, int offset, int length) throws IOException {
+        if (this.channel != null) {
+            this.writeFully(ByteBuffer.wrap(bytes, offset, length));
+        } else {
+            this.outputStream.write(bytes, offset, length);
+        }
+    }
+
+    /**
+     * 写入全部内容。非阻塞通道写入0字节时等待后重试（背压）。
+     */
+    private void writeFully(ByteBuffer byteBuffer) throws IOException {
+        int idle = 0;
+
+        while (byteBuffer.hasRemaining()) {
+            if (this.channel.write(byteBuffer) > 0) {
+                idle = 0;
+                continue;
+            }
+
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedIOException();
+            }
+            this.checkDeadline();
+            LockSupport.parkNanos(Math.min(1000000L, 1000L << Math.min(idle++, 10)));
+        }
+    }
+
+    /**
+     * 按顺序输出暂存的内容，wait为false时遇到未完成的子组件即停止。
+     */
+    private void drain(boolean wait) throws IOException {
+        if (this.deferred == null) {
+            return;
+        }
+
+        Object part;
+        while ((part = this.deferred.peek()) != null) {
+            if (part instanceof Future) {
+                Future<?> future = (Future<?>) part;
+                if (!wait && !future.isDone()) {
+                    return;
+                }
+
+                byte[] bytes;
+                try {
+                    bytes = (byte[]) future.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                } catch (ExecutionException e) {
+                    this.deferred.poll();
+                    if (e.getCause() instanceof RuntimeException) {
+                        throw (RuntimeException) e.getCause();
+                    }
+                    throw new IOException(e.getCause());
+                }
+
+                this.deferred.poll();
+                this.count += bytes.length;
+                this.checkBytes();
+                this.output(bytes, 0, bytes.length);
+            } else {
+                this.deferred.poll();
+                byte[] bytes = (byte[]) part;
+                this.output(bytes, 0, bytes.length);
+            }
+        }
+    }
+
+}
@@ -11,13 +11,16 @@ import javax.xml.XMLConstants;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.stream.StreamSource;
-import javax.xml.validation.Schema;
-import javax.xml.validation.SchemaFactory;
-import javax.xml.validation.Validator;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import java.io.*;
 import java.nio.charset.Charset;
+import java.nio.file.Files;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 public class XViewXml {
 
@@ -25,47 +28,112 @@ public class XViewXml {
 
     private Element rootElement;
 
+    private long validateTime;
+
+    private long parseTime;
+
     public XViewXml(InputStream inputStream) throws IOException, SAXException, ParserConfigurationException {
         this(inputStream, false);
     }
 
     public XViewXml(InputStream inputStream, boolean validateSchema) throws IOException, SAXException, ParserConfigurationException {
-        byte[] bytes = null;
-
-        if (validateSchema) {
-            bytes = readBytes(inputStream);
-            try (ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(bytes)) {
-                this.validate(byteArrayInputStream);
-            }
-        }
+        this(inputStream, validateSchema ? XViewSchemaCache.getDefault() : null);
+    }
 
+    /**
+     * @param schemaCache 不为null时按文档的schemaLocation验证文档
+     */
+    public XViewXml(InputStream inputStream, XViewSchemaCache schemaCache) throws IOException, SAXException, ParserConfigurationException {
+        long begin = System.nanoTime();
         Document document;
-        if (bytes != null) {
-            try (ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(bytes)) {
-                byteArrayInputStream.reset();
-                document = this.read(byteArrayInputStream);
+
+        if (schemaCache != null) {
+            // 先读取根元素上的schemaLocation获取已编译的Schema，再在解析的同时验证（文档只完整读取一次）
+            BufferedInputStream bufferedInputStream = new BufferedInputStream(inputStream, BUFFER_SIZE);
+            bufferedInputStream.mark(Integer.MAX_VALUE);
+
+            String schemaLocation;
+            try {
+                schemaLocation = readSchemaLocation(bufferedInputStream);
+            } catch (XMLStreamException e) {
+                throw new SAXException(e);
             }
+            bufferedInputStream.reset();
+
+            DocumentBuilder documentBuilder = schemaCache.getDocumentBuilder(schemaLocation);
+            this.validateTime = System.nanoTime() - begin;
+
+            document = documentBuilder.parse(bufferedInputStream);
         } else {
             document = this.read(inputStream);
         }
 
+        this.parseTime = System.nanoTime() - begin - this.validateTime;
         this.parse(document);
     }
 
     /**
-     * 验证XML文档。
+     * 流式读取：只读取到根元素的开始标记并提取namespace信息，reader停留在根元素上，由 {@link XViewScript} 继续读取。
      */
-    private void validate(InputStream inputStream) throws SAXException, IOException {
-        SchemaFactory factory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
-        Schema schema = factory.newSchema();
-        Validator validator = schema.newValidator();
-        validator.validate(new StreamSource(inputStream));
+    public XViewXml(XMLStreamReader reader) throws XMLStreamException {
+        while (reader.getEventType() != XMLStreamConstants.START_ELEMENT) {
+            reader.next();
+        }
+
+        Map<String, String> attributes = new LinkedHashMap<>();
+        for (int i = 0; i < reader.getNamespaceCount(); i++) {
+            String prefix = reader.getNamespacePrefix(i);
+            attributes.put(prefix == null || prefix.isEmpty() ? "xmlns" : "xmlns:" + prefix, reader.getNamespaceURI(i));
+        }
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            String prefix = reader.getAttributePrefix(i);
+            String localName = reader.getAttributeLocalName(i);
+            attributes.put(prefix == null || prefix.isEmpty() ? localName : prefix + ":" + localName, reader.getAttributeValue(i));
+        }
+
+        this.parse(attributes);
+    }
+
+    private static final ThreadLocal<XMLInputFactory> XML_INPUT_FACTORY = new ThreadLocal<XMLInputFactory>() {
+        @Override
+        protected XMLInputFactory initialValue() {
+            XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
+            xmlInputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+            xmlInputFactory.setProperty(XMLInputFactory.IS_COALESCING, true);
+            xmlInputFactory.setProperty(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES, true);
+            return xmlInputFactory;
+        }
+    };
+
+    /**
+     * 创建流式读取器（与 {@link #read(InputStream)} 的DOM设置一致：namespace、合并文本、展开实体）。
+     */
+    public static XMLStreamReader createStreamReader(InputStream inputStream) throws XMLStreamException {
+        return XML_INPUT_FACTORY.get().createXMLStreamReader(inputStream);
     }
 
     /**
-     * 读取XML文档。
+     * 只读取到根元素的开始标记，返回其上的schemaLocation属性。
      */
-    private Document read(InputStream inputStream) throws IOException, SAXException, ParserConfigurationException {
+    public static String readSchemaLocation(InputStream inputStream) throws XMLStreamException {
+        XMLStreamReader reader = createStreamReader(inputStream);
+
+        try {
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                    return reader.getAttributeValue(XMLConstants.W3C_XML_SCHEMA_INSTANCE_NS_URI, "schemaLocation");
+                }
+            }
+
+            return null;
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static final ThreadLocal<DocumentBuilder> DOCUMENT_BUILDER = new ThreadLocal<>();
+
+    static DocumentBuilderFactory newDocumentBuilderFactory() {
         DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
         documentBuilderFactory.setValidating(false);
         documentBuilderFactory.setXIncludeAware(true);
@@ -74,7 +142,22 @@ public class XViewXml {
         documentBuilderFactory.setCoalescing(true);
         documentBuilderFactory.setIgnoringComments(true);
         documentBuilderFactory.setIgnoringElementContentWhitespace(true);
-        DocumentBuilder documentBuilder = documentBuilderFactory.newDocumentBuilder();
+        return documentBuilderFactory;
+    }
+
+    /**
+     * 读取XML文档（每个线程复用一个DocumentBuilder）。
+     */
+    private Document read(InputStream inputStream) throws IOException, SAXException, ParserConfigurationException {
+        DocumentBuilder documentBuilder = DOCUMENT_BUILDER.get();
+
+        if (documentBuilder == null) {
+            documentBuilder = newDocumentBuilderFactory().newDocumentBuilder();
+            DOCUMENT_BUILDER.set(documentBuilder);
+        } else {
+            documentBuilder.reset();
+        }
+
         return documentBuilder.parse(inputStream);
     }
 
@@ -83,16 +166,27 @@ public class XViewXml {
      */
     private void parse(Document document) {
         this.rootElement = document.getDocumentElement();
-        NamedNodeMap attributes = this.rootElement.getAttributes();
+        NamedNodeMap nodeAttributes = this.rootElement.getAttributes();
+
+        Map<String, String> attributes = new LinkedHashMap<>();
+        for (int i = 0; i < nodeAttributes.getLength(); i++) {
+            Node attribute = nodeAttributes.item(i);
+            attributes.put(attribute.getNodeName(), attribute.getNodeValue());
+        }
 
+        this.parse(attributes);
+    }
+
+    /**
+     * 从根元素的属性（名称包含前缀）中提取导入信息。
+     */
+    private void parse(Map<String, String> attributes) {
         /*
          * 解析根元素的namespace属性集
          */
-        for (int i = 0; i < attributes.getLength(); i++) {
-            Node attribute = attributes.item(i);
-
-            String attributeName = attribute.getNodeName();
-            String attributeValue = attribute.getNodeValue();
+        for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+            String attributeName = attribute.getKey();
+            String attributeValue = attribute.getValue();
 
             String prefixName = null;
             String suffixName = null;
@@ -181,6 +275,20 @@ public class XViewXml {
         return rootElement;
     }
 
+    /**
+     * 验证准备耗时（纳秒）：读取schemaLocation并获取（未缓存时编译）Schema，验证本身在解析过程中完成，计入解析耗时。
+     */
+    public long getValidateTime() {
+        return validateTime;
+    }
+
+    /**
+     * DOM解析耗时（纳秒），流式读取时为0。
+     */
+    public long getParseTime() {
+        return parseTime;
+    }
+
     public Map<String, String> getAttributes() {
         for (String key : this.namespaceMapping.keySet()) {
             Namespace namespace = this.namespaceMapping.get(key);
@@ -260,76 +368,138 @@ public class XViewXml {
     }
 
     public static void buildXsd(File directory) {
-        File[] xviewFiles = directory.listFiles(new FileFilter() {
-            @Override
-            public boolean accept(File pathname) {
-                if (pathname.isFile() && pathname.getName().endsWith(XView.FILE_EXT)) {
-                    return true;
-                } else {
-                    return false;
+        buildXsd(directory, false);
+    }
+
+    /**
+     * 为目录树中包含xview文件的每个目录生成XSD文件，各目录在ForkJoinPool中并行处理。
+     *
+     * @param force 为false时跳过XSD文件比目录及其中xview文件都新的目录，内容没有变化时也不重写XSD文件
+     */
+    public static void buildXsd(File directory, boolean force) {
+        ForkJoinPool.commonPool().invoke(new BuildXsdTask(directory, force));
+    }
+
+    private static class BuildXsdTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final File directory;
+
+        private final boolean force;
+
+        BuildXsdTask(File directory, boolean force) {
+            this.directory = directory;
+            this.force = force;
+        }
+
+        @Override
+        protected void compute() {
+            File[] files = this.directory.listFiles();
+            if (files == null) {
+                return;
+            }
+            Arrays.sort(files);
+
+            List<BuildXsdTask> subtasks = new ArrayList<>();
+            List<File> xviewFiles = new ArrayList<>();
+            for (File file : files) {
+                if (file.isDirectory()) {
+                    subtasks.add(new BuildXsdTask(file, this.force));
+                } else if (file.isFile() && file.getName().endsWith(XView.FILE_EXT)) {
+                    xviewFiles.add(file);
                 }
             }
-        });
 
-        if (xviewFiles != null && xviewFiles.length > 0) {
-            System.out.println("创建XSD文件：" + directory.getAbsolutePath());
+            for (BuildXsdTask subtask : subtasks) {
+                subtask.fork();
+            }
 
-            String targetNamespace = directory.getName();
-            File xsdFile = new File(directory, targetNamespace + ".xsd");
+            if (!xviewFiles.isEmpty()) {
+                buildXsd(this.directory, xviewFiles, this.force);
+            }
 
-            try (FileOutputStream fileOutputStream = new FileOutputStream(xsdFile, false)) {
-                try (OutputStreamWriter outputStreamWriter = new OutputStreamWriter(fileOutputStream, "UTF-8")) {
-                    outputStreamWriter.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
-                    outputStreamWriter.write("<schema xmlns=\"http://www.w3.org/2001/XMLSchema\" elementFormDefault=\"qualified\" targetNamespace=\"" + targetNamespace + "\">\n");
-
-                    for (int i = 0; i < xviewFiles.length; i++) {
-                        try (FileInputStream fileInputStream = new FileInputStream(xviewFiles[i])) {
-                            XViewXml xviewXml = new XViewXml(fileInputStream, false);
-                            String xviewName = xviewFiles[i].getName().substring(0, xviewFiles[i].getName().lastIndexOf('.'));
-                            StringBuilder stringBuilder = new StringBuilder();
-
-                            stringBuilder.append("<element name=\"" + xviewName + "\">\n");
-                            stringBuilder.append("<complexType mixed=\"true\">\n");
-                            stringBuilder.append("<sequence minOccurs=\"0\" maxOccurs=\"unbounded\">\n");
-                            stringBuilder.append("<any processContents=\"lax\"/>\n");
-                            stringBuilder.append("</sequence>\n");
-
-                            Map<String, String> attributes = xviewXml.getAttributes();
-                            for (String key : attributes.keySet()) {
-                                String value = attributes.get(key);
-                                value = value == null ? "" : value;
-                                stringBuilder.append("<attribute name=\"" + key + "\" type=\"string\" default=\"" + value + "\"/>\n");
-                            }
-
-                            stringBuilder.append("</complexType>\n");
-                            stringBuilder.append("</element>\n");
-
-                            outputStreamWriter.write(stringBuilder.toString());
-
-                        } catch (Exception e) {
-                            System.out.println("无法访问XVIEW文件：" + xviewFiles[i].getAbsolutePath());
-                            e.printStackTrace();
-                        }
-                    }
+            for (BuildXsdTask subtask : subtasks) {
+                subtask.join();
+            }
+        }
+    }
+
+    private static void buildXsd(File directory, List<File> xviewFiles, boolean force) {
+        String targetNamespace = directory.getName();
+        File xsdFile = new File(directory, targetNamespace + ".xsd");
+
+        // 目录的修改时间包括文件的增加与删除
+        if (!force && xsdFile.isFile()) {
+            long lastModified = directory.lastModified();
+            for (File xviewFile : xviewFiles) {
+                lastModified = Math.max(lastModified, xviewFile.lastModified());
+            }
+
+            if (xsdFile.lastModified() >= lastModified) {
+                return;
+            }
+        }
+
+        StringBuilder stringBuilder = new StringBuilder();
+        stringBuilder.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        stringBuilder.append("<schema xmlns=\"http://www.w3.org/2001/XMLSchema\" elementFormDefault=\"qualified\" targetNamespace=\"" + targetNamespace + "\">\n");
+
+        for (File xviewFile : xviewFiles) {
+            // 只读取根元素上的参数声明
+            try (FileInputStream fileInputStream = new FileInputStream(xviewFile)) {
+                XMLStreamReader reader = createStreamReader(fileInputStream);
+                XViewXml xviewXml;
+                try {
+                    xviewXml = new XViewXml(reader);
+                } finally {
+                    reader.close();
+                }
+
+                String xviewName = xviewFile.getName().substring(0, xviewFile.getName().lastIndexOf('.'));
+
+                stringBuilder.append("<element name=\"" + xviewName + "\">\n");
+                stringBuilder.append("<complexType mixed=\"true\">\n");
+                stringBuilder.append("<sequence minOccurs=\"0\" maxOccurs=\"unbounded\">\n");
+                stringBuilder.append("<any processContents=\"lax\"/>\n");
+                stringBuilder.append("</sequence>\n");
 
-                    outputStreamWriter.write("</schema>");
+                Map<String, String> attributes = xviewXml.getAttributes();
+                for (String key : attributes.keySet()) {
+                    String value = attributes.get(key);
+                    value = value == null ? "" : value;
+                    stringBuilder.append("<attribute name=\"" + key + "\" type=\"string\" default=\"" + value + "\"/>\n");
                 }
+
+                // 允许xview命名空间的属性（例如 xview:parallel）
+                stringBuilder.append("<anyAttribute namespace=\"" + XView.XVIEW_NAMESPACE + "\" processContents=\"skip\"/>\n");
+                stringBuilder.append("</complexType>\n");
+                stringBuilder.append("</element>\n");
             } catch (Exception e) {
-                System.out.println("无法创建XSD文件：" + xsdFile.getAbsolutePath());
+                System.out.println("无法访问XVIEW文件：" + xviewFile.getAbsolutePath());
                 e.printStackTrace();
             }
         }
 
-        directory.listFiles(new FileFilter() {
-            @Override
-            public boolean accept(File pathname) {
-                if (pathname.isDirectory()) {
-                    buildXsd(pathname);
-                }
+        stringBuilder.append("</schema>");
+
+        try {
+            byte[] bytes = stringBuilder.toString().getBytes("UTF-8");
 
-                return false;
+            if (xsdFile.isFile() && Arrays.equals(bytes, Files.readAllBytes(xsdFile.toPath()))) {
+                // 内容没有变化，只更新修改时间，下次可以直接跳过
+                xsdFile.setLastModified(System.currentTimeMillis());
+                return;
             }
-        });
+
+            System.out.println("创建XSD文件：" + directory.getAbsolutePath());
+            try (FileOutputStream fileOutputStream = new FileOutputStream(xsdFile, false)) {
+                fileOutputStream.write(bytes);
+            }
+        } catch (Exception e) {
+            System.out.println("无法创建XSD文件：" + xsdFile.getAbsolutePath());
+            e.printStackTrace();
+        }
     }
 
     public static void main(String[] args) {
@@ -341,8 +511,10 @@ public class XViewXml {
             file = new File(new File("").getAbsolutePath());
         }
 
+        boolean force = args != null && args.length > 1 && "-f".equals(args[1]);
+
         System.out.println("扫描XVIEW文件并生成XSD文件：" + file.getAbsolutePath());
-        buildXsd(file);
+        buildXsd(file, force);
     }
 
 }
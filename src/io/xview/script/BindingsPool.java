@@ -0,0 +1,226 @@
+package io.xview.script;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.script.Bindings;
+import javax.script.ScriptException;
+
+/**
+ * Bindings池。
+ * 与ScriptEnvironment的引擎一样按线程分段，每段使用无锁队列，保证取出的Bindings由当前线程所使用的引擎创建。
+ */
+public class BindingsPool {
+	
+	public static final int DEFAULT_RESET_THRESHOLD = 256;
+
+	private ScriptEnvironment scriptEnvironment;
+	
+	private ScriptEnvironment.ScriptEnginePool scriptEnginePool;
+	
+	private Stripe[] stripes;
+	
+	private volatile int minSize;
+	
+	private volatile int maxSize;
+	
+	/**
+	 * 归还时变量数量超过此值的Bindings直接丢弃（重新创建比逐个删除大量变量更快）
+	 */
+	private volatile int resetThreshold = DEFAULT_RESET_THRESHOLD;
+	
+	private AtomicInteger inUse = new AtomicInteger();
+	
+	private AtomicInteger highWaterMark = new AtomicInteger();
+	
+	private AtomicLong allocationMissCount = new AtomicLong();
+	
+	private AtomicLong discardCount = new AtomicLong();
+	
+	private volatile Listener listener;
+	
+	/**
+	 * @param minSize 预先创建的数量
+	 * @param maxSize 最多缓存的数量
+	 */
+	public BindingsPool(ScriptEnvironment scriptEnvironment, String language, int minSize, int maxSize) throws ScriptException {
+		this.scriptEnvironment = scriptEnvironment;
+		this.scriptEnginePool = scriptEnvironment.getScriptEnginePool(language);
+		this.maxSize = maxSize;
+		
+		this.stripes = new Stripe[this.scriptEnginePool.size()];
+		for (int i = 0; i < this.stripes.length; i++) {
+			this.stripes[i] = new Stripe();
+		}
+		
+		this.setMinSize(minSize);
+	}
+	
+	public Bindings pop() {
+		int index = this.scriptEnvironment.getStripe();
+		Bindings bindings = this.stripes[index].poll();
+		
+		if (bindings == null) {
+			this.allocationMissCount.incrementAndGet();
+			
+			Listener listener = this.listener;
+			if (listener != null) {
+				listener.onAllocationMiss();
+			}
+			
+			bindings = this.scriptEnginePool.get(index).createBindings();
+		}
+		
+		int count = this.inUse.incrementAndGet();
+		int max;
+		while (count > (max = this.highWaterMark.get()) && !this.highWaterMark.compareAndSet(max, count)) {
+			// retry
+		}
+		
+		return bindings;
+	}
+	
+	public void push(Bindings bindings) {
+		this.inUse.decrementAndGet();
+		
+		if (bindings.size() > this.resetThreshold) {
+			this.discardCount.incrementAndGet();
+			return;
+		}
+		
+		Stripe stripe = this.stripes[this.scriptEnvironment.getStripe()];
+		if (stripe.size.get() >= this.stripeMaxSize()) {
+			this.discardCount.incrementAndGet();
+			return;
+		}
+		
+		bindings.clear();
+		if (!stripe.offer(bindings, this.stripeMaxSize())) {
+			this.discardCount.incrementAndGet();
+		}
+	}
+	
+	private int stripeMaxSize() {
+		return (this.maxSize + this.stripes.length - 1) / this.stripes.length;
+	}
+	
+	public Listener getListener() {
+		return listener;
+	}
+	
+	public void setListener(Listener listener) {
+		this.listener = listener;
+	}
+	
+	public int getMinSize() {
+		return minSize;
+	}
+	
+	/**
+	 * 设置最小数量，不足时立即预先创建。
+	 */
+	public void setMinSize(int minSize) {
+		this.minSize = minSize;
+		
+		int stripeMinSize = (Math.min(minSize, this.maxSize) + this.stripes.length - 1) / this.stripes.length;
+		for (int i = 0; i < this.stripes.length; i++) {
+			while (this.stripes[i].size.get() < stripeMinSize) {
+				if (!this.stripes[i].offer(this.scriptEnginePool.get(i).createBindings(), stripeMinSize)) {
+					break;
+				}
+			}
+		}
+	}
+	
+	public int getMaxSize() {
+		return maxSize;
+	}
+	
+	public void setMaxSize(int maxSize) {
+		this.maxSize = maxSize;
+	}
+	
+	public int getResetThreshold() {
+		return resetThreshold;
+	}
+	
+	public void setResetThreshold(int resetThreshold) {
+		this.resetThreshold = resetThreshold;
+	}
+	
+	/**
+	 * 池中空闲的数量
+	 */
+	public int size() {
+		int size = 0;
+		for (Stripe stripe : this.stripes) {
+			size += stripe.size.get();
+		}
+		return size;
+	}
+	
+	/**
+	 * 正在使用的数量
+	 */
+	public int getInUse() {
+		return inUse.get();
+	}
+	
+	/**
+	 * 同时使用数量的最大值
+	 */
+	public int getHighWaterMark() {
+		return highWaterMark.get();
+	}
+	
+	/**
+	 * 池中没有可用Bindings而新建的次数
+	 */
+	public long getAllocationMissCount() {
+		return allocationMissCount.get();
+	}
+	
+	/**
+	 * 归还时因池已满或变量过多而丢弃的次数
+	 */
+	public long getDiscardCount() {
+		return discardCount.get();
+	}
+	
+	public interface Listener {
+		
+		/**
+		 * 池中没有可用的Bindings而新建。
+		 */
+		void onAllocationMiss();
+		
+	}
+	
+	private static class Stripe {
+		
+		private Queue<Bindings> queue = new ConcurrentLinkedQueue<>();
+		
+		private AtomicInteger size = new AtomicInteger();
+		
+		private Bindings poll() {
+			Bindings bindings = this.queue.poll();
+			if (bindings != null) {
+				this.size.decrementAndGet();
+			}
+			return bindings;
+		}
+		
+		private boolean offer(Bindings bindings, int maxSize) {
+			if (this.size.incrementAndGet() > maxSize) {
+				this.size.decrementAndGet();
+				return false;
+			}
+			
+			this.queue.offer(bindings);
+			return true;
+		}
+	}
+	
+}
@@ -1,12 +1,14 @@
 package io.xview.script;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import javax.script.Bindings;
 import javax.script.Compilable;
+import javax.script.CompiledScript;
 import javax.script.ScriptContext;
 import javax.script.ScriptEngine;
 import javax.script.ScriptEngineFactory;
@@ -19,28 +21,78 @@ public class ScriptEnvironment {
 	
 	private ScriptEngineManager scriptEngineManager;
 
-	private Map<String, ScriptEngine> scriptEngineMapping;
+	/**
+	 * 每种语言的脚本引擎数量，同一线程总是使用同一个引擎（按线程ID分段），使已编译的脚本可以在多个CPU上并发执行。
+	 */
+	private int poolSize;
+
+	private Map<String, ScriptEnginePool> scriptEngineMapping;
+	
+	/**
+	 * 创建Nashorn引擎时附加的参数
+	 */
+	private String[] engineArguments;
 	
 	public ScriptEnvironment() {
+		this(1);
+	}
+	
+	public ScriptEnvironment(int poolSize) {
+		this(poolSize, null);
+	}
+	
+	/**
+	 * @param engineArguments 创建Nashorn引擎时附加的参数（例如 --persistent-code-cache=true）
+	 */
+	public ScriptEnvironment(int poolSize, String[] engineArguments) {
 		this.scriptEngineManager = new ScriptEngineManager();
-		this.scriptEngineMapping = new HashMap<>();
+		this.scriptEngineMapping = new ConcurrentHashMap<>();
+		this.poolSize = Math.max(1, poolSize);
+		this.engineArguments = engineArguments == null ? new String[0] : engineArguments.clone();
 	}
 	
 	public ScriptEngineManager getScriptEngineManager() {
 		return this.scriptEngineManager;
 	}
 
+	public int getPoolSize() {
+		return this.poolSize;
+	}
+
+	public String[] getEngineArguments() {
+		return this.engineArguments.clone();
+	}
+
+	/**
+	 * 当前线程所使用的引擎序号。
+	 */
+	public int getStripe() {
+		return this.poolSize == 1 ? 0 : (int) (Thread.currentThread().getId() % this.poolSize);
+	}
+
 	public ScriptEngineFactory getScriptEngineFactory(String language) throws ScriptException {
 		return this.getScriptEngine(language).getFactory();
 	}
 
+	/**
+	 * 获取当前线程所使用的脚本引擎。
+	 */
 	public ScriptEngine getScriptEngine(String language) throws ScriptException {
-		ScriptEngine scriptEngine = this.scriptEngineMapping.get(language = language.toLowerCase());
-		
-		if (scriptEngine != null) {
-			return scriptEngine;
+		return this.getScriptEnginePool(language).get(this.getStripe());
+	}
+
+	public ScriptEnginePool getScriptEnginePool(String language) throws ScriptException {
+		ScriptEnginePool scriptEnginePool = this.scriptEngineMapping.get(language);
+
+		if (scriptEnginePool != null) {
+			return scriptEnginePool;
 		}
 		
+		if ((scriptEnginePool = this.scriptEngineMapping.get(language.toLowerCase())) != null) {
+			this.scriptEngineMapping.putIfAbsent(language, scriptEnginePool);
+			return scriptEnginePool;
+		}
+
 		ScriptEngineFactory scriptEngineFactory = null;
 		
 		for (ScriptEngineFactory i : this.scriptEngineManager.getEngineFactories()) {
@@ -54,10 +106,28 @@ public class ScriptEnvironment {
 		
 		if (scriptEngineFactory == null) {
 			throw new ScriptException("找不到[" + language + "]语言的脚本引擎。");
-		} else if ("Oracle Nashorn".equals(scriptEngineFactory.getEngineName())) {
+		}
+		
+		scriptEnginePool = new ScriptEnginePool(scriptEngineFactory, this.poolSize, this.engineArguments);
+
+		ScriptEnginePool existing = this.scriptEngineMapping.putIfAbsent(language.toLowerCase(), scriptEnginePool);
+		if (existing != null) {
+			scriptEnginePool = existing;
+		}
+		
+		this.scriptEngineMapping.putIfAbsent(language, scriptEnginePool);
+		return scriptEnginePool;
+	}
+	
+	private static ScriptEngine newScriptEngine(ScriptEngineFactory scriptEngineFactory, String[] engineArguments) {
+		ScriptEngine scriptEngine;
+		
+		if ("Oracle Nashorn".equals(scriptEngineFactory.getEngineName())) {
 //			String[] args = new String[] { };
 //			String[] args = new String[] { "--optimistic-types=false", "--language=es5", "--persistent-code-cache=true"/*, "--print-code=false"*/, "--print-mem-usage=false" };
-			String[] args = new String[] { "--language=es6" };
+			String[] args = new String[engineArguments.length + 1];
+			args[0] = "--language=es6";
+			System.arraycopy(engineArguments, 0, args, 1, engineArguments.length);
 			jdk.nashorn.api.scripting.NashornScriptEngineFactory nashornScriptEngineFactory = (jdk.nashorn.api.scripting.NashornScriptEngineFactory) scriptEngineFactory;
 			scriptEngine = nashornScriptEngineFactory.getScriptEngine(args);
 			
@@ -70,32 +140,38 @@ public class ScriptEnvironment {
 			scriptEngine = scriptEngineFactory.getScriptEngine();
 		}
 		
-		this.scriptEngineMapping.put(language, scriptEngine);
 		return scriptEngine;
 	}
 	
 	public ScriptFragment createScriptFragment(String language, boolean tryCompile, String filename, String script) throws ScriptException {
-		ScriptEngine scriptEngine = this.getScriptEngine(language);
+		ScriptEnginePool scriptEnginePool = this.getScriptEnginePool(language);
+		ScriptEngine scriptEngine = scriptEnginePool.get(this.getStripe());
 		
 		if (tryCompile && scriptEngine instanceof Compilable) {
 			/*
-			 * 编译。
+			 * 编译（在当前线程的引擎上编译，其他引擎在首次使用时编译）。
 			 */
-			synchronized (scriptEngine) {
-				Bindings bindings = scriptEngine.getBindings(ScriptContext.ENGINE_SCOPE);
-				
-				Object oldFilename = bindings.put(ScriptEngine.FILENAME, filename);
-				try {
-					return new ScriptFragment(script, filename, ((Compilable) scriptEngine).compile(script));
-				} finally {
-					bindings.put(ScriptEngine.FILENAME, oldFilename);
-				}
-			}
+			ScriptFragment scriptFragment = new ScriptFragment(script, filename, this, scriptEnginePool);
+			scriptFragment.getCompiledScript(this.getStripe());
+			return scriptFragment;
 		} else {
 			/*
 			 * 解释。
 			 */
-			return new ScriptFragment(script, filename, scriptEngine);
+			return new ScriptFragment(script, filename, this, scriptEnginePool, false);
+		}
+	}
+	
+	public static CompiledScript compile(ScriptEngine scriptEngine, String script, String filename) throws ScriptException {
+		synchronized (scriptEngine) {
+			Bindings bindings = scriptEngine.getBindings(ScriptContext.ENGINE_SCOPE);
+			
+			Object oldFilename = bindings.put(ScriptEngine.FILENAME, filename);
+			try {
+				return ((Compilable) scriptEngine).compile(script);
+			} finally {
+				bindings.put(ScriptEngine.FILENAME, oldFilename);
+			}
 		}
 	}
 	
@@ -132,8 +208,62 @@ public class ScriptEnvironment {
 		}
 	}
 	
+	public static Object eval(ScriptEngine scriptEngine, ScriptContext scriptContext, String script, String filename) throws ScriptException {
+		Bindings bindings = scriptContext.getBindings(ScriptContext.ENGINE_SCOPE);
+		Object oldFilename = bindings.put(ScriptEngine.FILENAME, filename);
+		
+		try {
+			return scriptEngine.eval(script, scriptContext);
+		} finally {
+			bindings.put(ScriptEngine.FILENAME, oldFilename);
+		}
+	}
+	
 	public static Object eval(ScriptEngine scriptEngine, Bindings bindings, String script) throws ScriptException {
 		return eval(scriptEngine, bindings, script, null);
 	}
 	
+	/**
+	 * 同一种语言的一组脚本引擎，按序号延迟创建，获取时不加锁。
+	 */
+	public static class ScriptEnginePool {
+		
+		private ScriptEngineFactory scriptEngineFactory;
+		
+		private AtomicReferenceArray<ScriptEngine> scriptEngines;
+		
+		private String[] engineArguments;
+		
+		public ScriptEnginePool(ScriptEngineFactory scriptEngineFactory, int size) {
+			this(scriptEngineFactory, size, null);
+		}
+		
+		public ScriptEnginePool(ScriptEngineFactory scriptEngineFactory, int size, String[] engineArguments) {
+			this.scriptEngineFactory = scriptEngineFactory;
+			this.scriptEngines = new AtomicReferenceArray<>(size);
+			this.engineArguments = engineArguments == null ? new String[0] : engineArguments;
+		}
+		
+		public ScriptEngineFactory getScriptEngineFactory() {
+			return this.scriptEngineFactory;
+		}
+		
+		public int size() {
+			return this.scriptEngines.length();
+		}
+		
+		public ScriptEngine get(int index) {
+			ScriptEngine scriptEngine = this.scriptEngines.get(index);
+			
+			if (scriptEngine == null) {
+				scriptEngine = newScriptEngine(this.scriptEngineFactory, this.engineArguments);
+				if (!this.scriptEngines.compareAndSet(index, null, scriptEngine)) {
+					scriptEngine = this.scriptEngines.get(index);
+				}
+			}
+			
+			return scriptEngine;
+		}
+	}
+	
 }
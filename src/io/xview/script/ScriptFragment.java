@@ -1,7 +1,10 @@
 package io.xview.script;
 
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
 import javax.script.Bindings;
 import javax.script.CompiledScript;
+import javax.script.ScriptContext;
 import javax.script.ScriptEngine;
 import javax.script.ScriptException;
 
@@ -20,6 +23,15 @@ public class ScriptFragment {
 	
 	private ScriptEngine scriptEngine;
 	
+	private ScriptEnvironment scriptEnvironment;
+	
+	private ScriptEnvironment.ScriptEnginePool scriptEnginePool;
+	
+	/**
+	 * 每个引擎各自的编译结果（已编译的脚本只能在编译它的引擎上执行）
+	 */
+	private AtomicReferenceArray<CompiledScript> compiledScripts;
+	
 	public ScriptFragment(String script, String filename, CompiledScript compiledScript) {
 		this.script = script;
 		this.filename = filename;
@@ -31,6 +43,24 @@ public class ScriptFragment {
 		this.filename = filename;
 		this.scriptEngine = scriptEngine;
 	}
+	
+	/**
+	 * 在引擎池上编译执行的脚本片段。
+	 */
+	public ScriptFragment(String script, String filename, ScriptEnvironment scriptEnvironment, ScriptEnvironment.ScriptEnginePool scriptEnginePool) {
+		this(script, filename, scriptEnvironment, scriptEnginePool, true);
+	}
+	
+	public ScriptFragment(String script, String filename, ScriptEnvironment scriptEnvironment, ScriptEnvironment.ScriptEnginePool scriptEnginePool, boolean compile) {
+		this.script = script;
+		this.filename = filename;
+		this.scriptEnvironment = scriptEnvironment;
+		this.scriptEnginePool = scriptEnginePool;
+		
+		if (compile) {
+			this.compiledScripts = new AtomicReferenceArray<>(scriptEnginePool.size());
+		}
+	}
 
 	public String getScript() {
 		return script;
@@ -41,21 +71,75 @@ public class ScriptFragment {
 	}
 
 	public CompiledScript getCompiledScript() {
+		if (this.compiledScripts != null) {
+			return this.compiledScripts.get(this.scriptEnvironment.getStripe());
+		}
+		
 		return compiledScript;
 	}
 
 	public ScriptEngine getScriptEngine() {
+		if (this.scriptEnginePool != null) {
+			return this.scriptEnginePool.get(this.scriptEnvironment.getStripe());
+		}
+		
 		return scriptEngine;
 	}
 	
+	/**
+	 * 获取指定引擎上的编译结果，未编译时先编译。
+	 */
+	public CompiledScript getCompiledScript(int index) throws ScriptException {
+		CompiledScript compiledScript = this.compiledScripts.get(index);
+		
+		if (compiledScript == null) {
+			compiledScript = ScriptEnvironment.compile(this.scriptEnginePool.get(index), this.script, this.filename);
+			if (!this.compiledScripts.compareAndSet(index, null, compiledScript)) {
+				compiledScript = this.compiledScripts.get(index);
+			}
+		}
+		
+		return compiledScript;
+	}
+	
+	/**
+	 * 在引擎池的所有引擎上编译（预热），解释执行的片段不做处理。
+	 */
+	public void compileAll() throws ScriptException {
+		if (this.compiledScripts != null) {
+			for (int i = 0; i < this.compiledScripts.length(); i++) {
+				this.getCompiledScript(i);
+			}
+		}
+	}
+	
 	public Object eval(Bindings bindings) throws ScriptException {
-		if (this.compiledScript != null) {
+		if (this.compiledScripts != null) {
+			return this.getCompiledScript(this.scriptEnvironment.getStripe()).eval(bindings);
+		} else if (this.scriptEnginePool != null) {
+			return ScriptEnvironment.eval(this.scriptEnginePool.get(this.scriptEnvironment.getStripe()), bindings, this.script, this.filename);
+		} else if (this.compiledScript != null) {
 			return this.compiledScript.eval(bindings);
 		} else {
 			return ScriptEnvironment.eval(this.scriptEngine, bindings, this.script, this.filename);
 		}
 	}
 	
+	/**
+	 * 在指定的ScriptContext中执行（可以通过GLOBAL_SCOPE提供上层作用域）。
+	 */
+	public Object eval(ScriptContext scriptContext) throws ScriptException {
+		if (this.compiledScripts != null) {
+			return this.getCompiledScript(this.scriptEnvironment.getStripe()).eval(scriptContext);
+		} else if (this.scriptEnginePool != null) {
+			return ScriptEnvironment.eval(this.scriptEnginePool.get(this.scriptEnvironment.getStripe()), scriptContext, this.script, this.filename);
+		} else if (this.compiledScript != null) {
+			return this.compiledScript.eval(scriptContext);
+		} else {
+			return ScriptEnvironment.eval(this.scriptEngine, scriptContext, this.script, this.filename);
+		}
+	}
+	
 	public Object call(Bindings bindings, Object... args) throws ScriptException {
 		if (args != null && args.length > 0) {
 			bindings.put(ScriptEnvironment.CALL_PARAMS_NAME, args);
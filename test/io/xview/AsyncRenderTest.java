@@ -0,0 +1,120 @@
+package io.xview;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 异步渲染（{@link XViewManager#executeAsync(String, java.io.OutputStream, java.util.Map, long, TimeUnit)}）：
+ * 超时或取消时中断渲染线程，线程随后可以执行其他渲染。
+ */
+public class AsyncRenderTest extends XViewTestCase {
+
+    private interface Test {
+
+        void run(XViewManager xviewManager) throws Exception;
+
+    }
+
+    /**
+     * 使用单线程的执行器，超时或取消的渲染结束后才会执行下一个渲染。
+     */
+    private void run(Test test) throws Exception {
+        // 每次调用组件等待20毫秒，共约4秒
+        this.component("tick", "", "<xview:script>java.lang.Thread.sleep(20);</xview:script>.");
+        this.put("/slow.xview", view("",
+                "<xview:script>var items = []; while (items.length != 200) { items.push(0); }</xview:script>"
+                        + "<xview:for items=\"items\" var=\"v\"><c:tick/></xview:for>"));
+        this.put("/fast.xview", view("xview:name=\"\"", "<p>${name}</p>"));
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            XViewManager xviewManager = this.newManager();
+            xviewManager.setRenderExecutor(executor);
+            test.run(xviewManager);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 渲染fast.xview并等待完成，同时确认执行器已可用（之前的渲染已结束）。
+     */
+    private static void assertFastRender(XViewManager xviewManager) throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        long begin = System.nanoTime();
+        xviewManager.executeAsync("/fast.xview", outputStream, attributes("name", "fast")).get(10, TimeUnit.SECONDS);
+        assertEquals("<p>fast</p>", new String(outputStream.toByteArray(), StandardCharsets.UTF_8));
+        assertTrue("previous render should stop early", System.nanoTime() - begin < TimeUnit.SECONDS.toNanos(2));
+    }
+
+    public void testComplete() throws Exception {
+        this.run(new Test() {
+            @Override
+            public void run(XViewManager xviewManager) throws Exception {
+                ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+                CompletableFuture<Void> future = xviewManager.executeAsync("/fast.xview", outputStream, attributes("name", "a"), 10, TimeUnit.SECONDS);
+                future.get(10, TimeUnit.SECONDS);
+                assertEquals("<p>a</p>", new String(outputStream.toByteArray(), StandardCharsets.UTF_8));
+
+                try {
+                    xviewManager.executeAsync("/missing.xview", outputStream, new HashMap<String, Object>()).get(10, TimeUnit.SECONDS);
+                    fail("loading a missing view should fail");
+                } catch (ExecutionException e) {
+                    assertTrue("cause " + e.getCause(), e.getCause() instanceof XViewException);
+                }
+            }
+        });
+    }
+
+    public void testTimeout() throws Exception {
+        this.run(new Test() {
+            @Override
+            public void run(XViewManager xviewManager) throws Exception {
+                CompletableFuture<Void> future = xviewManager.executeAsync("/slow.xview", new ByteArrayOutputStream(), new HashMap<String, Object>(), 100, TimeUnit.MILLISECONDS);
+                try {
+                    future.get(10, TimeUnit.SECONDS);
+                    fail("render should time out");
+                } catch (ExecutionException e) {
+                    assertTrue("cause " + e.getCause(), e.getCause() instanceof TimeoutException);
+                }
+
+                assertFastRender(xviewManager);
+            }
+        });
+    }
+
+    public void testCancel() throws Exception {
+        this.run(new Test() {
+            @Override
+            public void run(XViewManager xviewManager) throws Exception {
+                CompletableFuture<Void> running = xviewManager.executeAsync("/slow.xview", new ByteArrayOutputStream(), new HashMap<String, Object>());
+
+                // 排队中的渲染取消后不再执行
+                ByteArrayOutputStream queuedOutput = new ByteArrayOutputStream();
+                CompletableFuture<Void> queued = xviewManager.executeAsync("/fast.xview", queuedOutput, attributes("name", "queued"));
+                assertTrue("queued render cancelled", queued.cancel(true));
+
+                Thread.sleep(100);
+                assertTrue("running render cancelled", running.cancel(true));
+                try {
+                    running.get(10, TimeUnit.SECONDS);
+                    fail("cancelled render should not complete");
+                } catch (CancellationException e) {
+                    // expected
+                }
+
+                assertFastRender(xviewManager);
+                assertEquals(0, queuedOutput.size());
+            }
+        });
+    }
+
+}
@@ -0,0 +1,137 @@
+package io.xview;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import javax.xml.XMLConstants;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.SchemaFactory;
+
+/**
+ * 生成XSD文件（{@link XViewXml#buildXsd(File, boolean)}）：每个包含xview文件的目录一个XSD，未修改的目录跳过。
+ */
+public class BuildXsdTest extends XViewTestCase {
+
+    private File directory;
+
+    /**
+     * 早于测试开始的修改时间（秒的整数倍，兼容精度较低的文件系统）
+     */
+    private final long past = (System.currentTimeMillis() / 1000 - 1000) * 1000;
+
+    private interface Test {
+
+        void run() throws Exception;
+
+    }
+
+    private void run(Test test) throws Exception {
+        this.directory = Files.createTempDirectory("xview-xsd").toFile();
+        try {
+            test.run();
+        } finally {
+            delete(this.directory);
+        }
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File i : files) {
+                delete(i);
+            }
+        }
+        file.delete();
+    }
+
+    private File file(String path) {
+        return new File(this.directory, path);
+    }
+
+    private void write(String path, String content, long lastModified) throws IOException {
+        File file = this.file(path);
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        file.setLastModified(lastModified);
+    }
+
+    private String read(String path) throws IOException {
+        return new String(Files.readAllBytes(this.file(path).toPath()), StandardCharsets.UTF_8);
+    }
+
+    private void fixtures() throws IOException {
+        this.write("components/a.xview", view("xview:title=\"untitled\"", "<h1>${title}</h1>"), this.past);
+        this.write("components/b.xview", view("xview:x=\"\" xview:y=\"1\"", "${x}${y}"), this.past);
+        this.write("widgets/nested/w.xview", view("", "w"), this.past);
+        this.file("empty").mkdirs();
+        for (String path : new String[] { "components", "widgets", "widgets/nested", "empty" }) {
+            this.file(path).setLastModified(this.past);
+        }
+    }
+
+    public void testBuild() throws Exception {
+        this.run(new Test() {
+            @Override
+            public void run() throws Exception {
+                BuildXsdTest.this.fixtures();
+                XViewXml.buildXsd(BuildXsdTest.this.directory, false);
+
+                String components = BuildXsdTest.this.read("components/components.xsd");
+                assertTrue(components, components.contains("targetNamespace=\"components\""));
+                assertTrue(components, components.contains("<element name=\"a\">") && components.contains("<element name=\"b\">"));
+                assertTrue(components, components.contains("<attribute name=\"title\" type=\"string\" default=\"untitled\"/>"));
+                assertTrue(components, components.contains("<attribute name=\"y\" type=\"string\" default=\"1\"/>"));
+                assertTrue(components, components.indexOf("name=\"a\"") < components.indexOf("name=\"b\""));
+
+                String nested = BuildXsdTest.this.read("widgets/nested/nested.xsd");
+                assertTrue(nested, nested.contains("<element name=\"w\">"));
+
+                // 不包含xview文件的目录不生成XSD
+                assertTrue("widgets.xsd", !BuildXsdTest.this.file("widgets/widgets.xsd").exists());
+                assertTrue("empty.xsd", !BuildXsdTest.this.file("empty/empty.xsd").exists());
+
+                // 生成的是有效的Schema
+                SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI)
+                        .newSchema(new StreamSource(new ByteArrayInputStream(components.getBytes(StandardCharsets.UTF_8))));
+            }
+        });
+    }
+
+    public void testIncremental() throws Exception {
+        this.run(new Test() {
+            @Override
+            public void run() throws Exception {
+                BuildXsdTest.this.fixtures();
+                XViewXml.buildXsd(BuildXsdTest.this.directory, false);
+                String generated = BuildXsdTest.this.read("components/components.xsd");
+
+                // XSD比目录与xview文件都新时跳过，即使内容不同
+                BuildXsdTest.this.write("components/components.xsd", "stale", BuildXsdTest.this.past + 10000);
+                BuildXsdTest.this.file("components").setLastModified(BuildXsdTest.this.past);
+                XViewXml.buildXsd(BuildXsdTest.this.directory, false);
+                assertEquals("stale", BuildXsdTest.this.read("components/components.xsd"));
+
+                XViewXml.buildXsd(BuildXsdTest.this.directory, true);
+                assertEquals(generated, BuildXsdTest.this.read("components/components.xsd"));
+
+                // xview文件修改后重新生成
+                BuildXsdTest.this.file("components/components.xsd").setLastModified(BuildXsdTest.this.past + 10000);
+                BuildXsdTest.this.write("components/b.xview", view("xview:x=\"\" xview:y=\"1\" xview:z=\"\"", "${x}${y}${z}"), BuildXsdTest.this.past + 20000);
+                XViewXml.buildXsd(BuildXsdTest.this.directory, false);
+                assertTrue("z", BuildXsdTest.this.read("components/components.xsd").contains("<attribute name=\"z\""));
+
+                // 内容没有变化时只更新修改时间
+                generated = BuildXsdTest.this.read("components/components.xsd");
+                BuildXsdTest.this.file("components/components.xsd").setLastModified(BuildXsdTest.this.past + 10000);
+                BuildXsdTest.this.file("components/a.xview").setLastModified(BuildXsdTest.this.past + 30000);
+                XViewXml.buildXsd(BuildXsdTest.this.directory, false);
+                assertEquals(generated, BuildXsdTest.this.read("components/components.xsd"));
+                assertTrue("touched", BuildXsdTest.this.file("components/components.xsd").lastModified() >= BuildXsdTest.this.past + 30000);
+            }
+        });
+    }
+
+}
@@ -0,0 +1,89 @@
+package io.xview;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * xview:if、xview:for 与 xview:choose。
+ */
+public class ControlFlowTest extends XViewTestCase {
+
+    public void testIf() {
+        this.put("/page.xview", view("xview:n=\"\"", "<xview:if test=\"n &gt; 1\">many</xview:if><xview:if test=\"n == 1\">one</xview:if>"));
+        XViewManager xviewManager = this.newManager();
+
+        assertEquals("many", render(xviewManager, "/page.xview", attributes("n", 2)));
+        assertEquals("one", render(xviewManager, "/page.xview", attributes("n", 1)));
+        assertEquals("", render(xviewManager, "/page.xview", attributes("n", 0)));
+    }
+
+    public void testForOverScriptArrayAndJavaCollections() {
+        this.put("/page.xview", view("xview:items=\"\"", "<xview:for items=\"items\" var=\"item\" index=\"i\">[${i}=${item}]</xview:for>"));
+        XViewManager xviewManager = this.newManager();
+
+        assertEquals("[0=a][1=b]", render(xviewManager, "/page.xview", attributes("items", Arrays.asList("a", "b"))));
+        assertEquals("[0=x][1=y][2=z]", render(xviewManager, "/page.xview", attributes("items", new String[]{"x", "y", "z"})));
+        assertEquals("", render(xviewManager, "/page.xview", attributes("items", Collections.emptyList())));
+        assertEquals("", render(xviewManager, "/page.xview", attributes("items", new String[0])));
+
+        this.put("/script.xview", view("", "<xview:for items=\"[1, 2, 3]\" var=\"n\">${String(n * 2)},</xview:for>"));
+        assertEquals("2,4,6,", render(xviewManager, "/script.xview"));
+    }
+
+    public void testForOverMapEntries() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("a", 1);
+        map.put("b", 2);
+        this.put("/page.xview", view("xview:map=\"\"", "<xview:for items=\"map\" var=\"e\">${e.key}=${e.value};</xview:for>"));
+
+        assertEquals("a=1;b=2;", render(this.newManager(), "/page.xview", attributes("map", map)));
+    }
+
+    public void testNestedFor() {
+        this.put("/page.xview", view("", "<xview:for items=\"[1, 2]\" var=\"a\" index=\"i\"><xview:for items=\"['x', 'y']\" var=\"b\" index=\"j\">${i}${j}${a}${b},</xview:for></xview:for>"));
+
+        assertEquals("001x,011y,102x,112y,", render(this.newManager(), "/page.xview"));
+    }
+
+    public void testChoose() {
+        this.put("/page.xview", view("xview:n=\"\"", "<xview:choose>"
+                + "<xview:when test=\"n &lt; 0\">negative</xview:when>"
+                + "<xview:when test=\"n &lt; 10\">small</xview:when>"
+                + "<xview:when test=\"n &lt; 5\">unreachable</xview:when>"
+                + "<xview:otherwise>large</xview:otherwise>"
+                + "</xview:choose>"));
+        XViewManager xviewManager = this.newManager();
+
+        assertEquals("negative", render(xviewManager, "/page.xview", attributes("n", -1)));
+        assertEquals("small", render(xviewManager, "/page.xview", attributes("n", 3)));
+        assertEquals("large", render(xviewManager, "/page.xview", attributes("n", 10)));
+
+        this.put("/nootherwise.xview", view("", "<xview:choose><xview:when test=\"false\">no</xview:when></xview:choose>"));
+        assertEquals("", render(xviewManager, "/nootherwise.xview"));
+    }
+
+    public void testWhenOutsideChoose() {
+        this.put("/page.xview", view("", "<xview:when test=\"true\">x</xview:when>"));
+
+        try {
+            render(this.newManager(), "/page.xview");
+            fail("xview:when outside xview:choose should be rejected");
+        } catch (XViewException e) {
+            // 预期的异常
+        }
+    }
+
+    public void testWhenAfterOtherwise() {
+        this.put("/page.xview", view("", "<xview:choose><xview:otherwise>a</xview:otherwise><xview:when test=\"true\">b</xview:when></xview:choose>"));
+
+        try {
+            render(this.newManager(), "/page.xview");
+            fail("xview:when after xview:otherwise should be rejected");
+        } catch (XViewException e) {
+            // 预期的异常
+        }
+    }
+
+}
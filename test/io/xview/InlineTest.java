@@ -0,0 +1,122 @@
+package io.xview;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+/**
+ * 内联组件（{@link XViewManager#setInlineThreshold(int)}）与运行时调用的输出相同。
+ */
+public class InlineTest extends XViewTestCase {
+
+    private XViewManager inliningManager() {
+        XViewManager xviewManager = this.newManager();
+        xviewManager.setInlineThreshold(10000);
+        return xviewManager;
+    }
+
+    /**
+     * 分别以运行时调用与内联渲染，断言输出相同，返回输出。
+     */
+    private String renderBoth(String uri, String expected) {
+        assertEquals(expected, render(this.newManager(), uri));
+        assertEquals(expected, render(this.inliningManager(), uri));
+        return expected;
+    }
+
+    private int inlinedCount(String uri) {
+        XViewManager xviewManager = this.inliningManager();
+        render(xviewManager, uri);
+        return xviewManager.load(uri).getXViewScript().getInlined().length;
+    }
+
+    public void testInlined() {
+        this.component("cell", "xview:value=\"\"", "<td>${value}</td>");
+        this.component("layout", "xview:title=\"\"", "<h1>${title}</h1><xview:process_child_nodes/>");
+        this.put("/page.xview", view("",
+                "<xview:script>var rows = ['a', 'b'];</xview:script>"
+                        + "<c:layout title=\"'t'\"><xview:for items=\"rows\" var=\"row\"><c:cell value=\"row\"/></xview:for></c:layout>"));
+
+        this.renderBoth("/page.xview", "<h1>t</h1><td>a</td><td>b</td>");
+        assertEquals(2, this.inlinedCount("/page.xview"));
+    }
+
+    public void testAssignmentToCallerVariable() {
+        // 运行时赋值写入组件自身的作用域，内联后不能修改调用方的变量
+        this.component("assign", "xview:v=\"\"", "<xview:script>x = v + '!';</xview:script>(${x})");
+        this.put("/page.xview", view("", "<xview:script>var x = 'caller';</xview:script><c:assign v=\"'a'\"/>[${x}]"));
+
+        this.renderBoth("/page.xview", "(a!)[caller]");
+        assertEquals(0, this.inlinedCount("/page.xview"));
+    }
+
+    public void testLocalAssignment() {
+        this.component("assign", "xview:v=\"\"", "<xview:script>var x = v + '!'; v = v + '?';</xview:script>(${x}${v})");
+        this.put("/page.xview", view("", "<xview:script>var x = 'caller'; var v = 'v';</xview:script><c:assign v=\"'a'\"/>[${x}${v}]"));
+
+        this.renderBoth("/page.xview", "(a!a?)[callerv]");
+        assertEquals(1, this.inlinedCount("/page.xview"));
+    }
+
+    public void testCallerClosureLocals() {
+        // 子内容中声明的变量是调用方闭包的局部变量，运行时被调用的组件读不到
+        this.component("reader", "", "<xview:script>var type = typeof secret;</xview:script>${type}");
+        this.component("wrapper", "", "<div><xview:process_child_nodes/></div>");
+        this.put("/page.xview", view("", "<c:wrapper><xview:script>var secret = 'local';</xview:script><c:reader/></c:wrapper>"));
+
+        this.renderBoth("/page.xview", "<div>undefined</div>");
+    }
+
+    public void testCallerGlobals() {
+        // 调用方的全局变量通过作用域链可见，内联前后相同
+        this.component("reader", "", "${typeof shared}");
+        this.put("/page.xview", view("", "<xview:script>shared = 1;</xview:script><c:reader/>"));
+
+        this.renderBoth("/page.xview", "number");
+        assertEquals(1, this.inlinedCount("/page.xview"));
+    }
+
+    public void testThis() {
+        this.component("self", "", "<xview:script>var same = this === xview;</xview:script>${same}");
+        this.put("/page.xview", view("", "<c:self/>"));
+
+        this.renderBoth("/page.xview", "false");
+        assertEquals(0, this.inlinedCount("/page.xview"));
+    }
+
+    public void testBlockScope() {
+        // let只在块内可见，块外的赋值在运行时写入组件自身的作用域（需要以ES6模式创建脚本引擎）
+        String nashornArgs = System.getProperty("nashorn.args");
+        System.setProperty("nashorn.args", "--language=es6");
+        try {
+            this.component("block", "", "<xview:script>{ let y = 1; } y = 'changed';</xview:script>");
+            this.put("/page.xview", view("", "<xview:script>var y = 'orig';</xview:script><c:block/>[${y}]"));
+
+            this.renderBoth("/page.xview", "[orig]");
+            assertEquals(0, this.inlinedCount("/page.xview"));
+        } finally {
+            if (nashornArgs == null) {
+                System.clearProperty("nashorn.args");
+            } else {
+                System.setProperty("nashorn.args", nashornArgs);
+            }
+        }
+    }
+
+    public void testScriptNames() {
+        ScriptNames names = ScriptNames.scan("var a = 1, b = f(c, d); e = a; g++; function h(i) { var j = i; k = j; }"
+                + " var l = function m(n) { return o / 2 + /p'/.test(q); }; for (r in s) {} try {} catch (t) { u.v = t; }"
+                + " var w = {x: y, 'z': 1};");
+
+        assertEquals(new HashSet<>(Arrays.asList("e", "g", "k", "r")), names.getFreeAssigned());
+        assertEquals(new HashSet<>(Arrays.asList("f", "c", "d", "e", "g", "k", "o", "q", "r", "s", "u", "y")), names.getFreeReferenced());
+        assertTrue("declared", names.getDeclared().containsAll(Arrays.asList("a", "b", "h", "i", "j", "l", "m", "n", "t", "w")));
+        assertTrue("no dynamic scope", !names.isDynamic());
+        assertTrue("this", ScriptNames.scan("var a = this;").isDynamic());
+        assertTrue("let", ScriptNames.scan("{ let y = 1; } y = 2;").isDynamic());
+        assertTrue("const", ScriptNames.scan("const y = 1;").isDynamic());
+        assertTrue("arrow function", ScriptNames.scan("var f = (a) => a;").isDynamic());
+        assertTrue("template literal", ScriptNames.scan("var s = `${a}`;").isDynamic());
+        assertTrue("let declared", ScriptNames.scan("function f() { let z = 1; }").getDeclared().contains("z"));
+    }
+
+}
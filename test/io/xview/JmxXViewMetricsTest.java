@@ -0,0 +1,77 @@
+package io.xview;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.ObjectName;
+
+/**
+ * 渲染指标（{@link JmxXViewMetrics}）：总量只统计顶层调用，按URI的统计包括嵌套调用的组件。
+ */
+public class JmxXViewMetricsTest extends XViewTestCase {
+
+    private static final int RENDER_COUNT = 4;
+
+    private static final int BYTES_WRITTEN = 7;
+
+    private XViewManager fixtures(JmxXViewMetrics metrics) {
+        this.component("item", "xview:value=\"\"", "<i>${value}</i>");
+        this.put("/page.xview", view("", "<p><c:item value=\"'a'\"/><c:item value=\"'b'\"/></p>"));
+
+        XViewManager xviewManager = this.newManager();
+        xviewManager.setMetrics(metrics);
+        return xviewManager;
+    }
+
+    public void testNestedCalls() {
+        JmxXViewMetrics metrics = new JmxXViewMetrics();
+        XViewManager xviewManager = this.fixtures(metrics);
+
+        String output = render(xviewManager, "/page.xview");
+        render(xviewManager, "/page.xview");
+        assertEquals("<p><i>a</i><i>b</i></p>", output);
+
+        // 嵌套调用的组件不重复计入总量
+        assertEquals(2L, metrics.getRenderCount());
+        assertEquals(2L * output.length(), metrics.getBytesWritten());
+        assertEquals(1, metrics.getMaxDepth());
+        assertTrue("render time", metrics.getRenderTime() > 0 && metrics.getMaxRenderTime() <= metrics.getRenderTime());
+
+        long[] page = metrics.getUriStatistics("/page.xview");
+        assertEquals(2L, page[RENDER_COUNT]);
+        assertEquals(2L * output.length(), page[BYTES_WRITTEN]);
+
+        long[] item = metrics.getUriStatistics("/components/item.xview");
+        assertEquals(4L, item[RENDER_COUNT]);
+        assertEquals(4L * "<i>a</i>".length(), item[BYTES_WRITTEN]);
+
+        // 每个文件只加载一次，其后从缓存中获取
+        assertEquals(2L, metrics.getLoadCount());
+        assertEquals(2L, metrics.getCacheMissCount());
+        assertTrue("cache hits " + metrics.getCacheHitCount(), metrics.getCacheHitCount() > 0);
+        assertEquals(2, metrics.getUris().length);
+        assertTrue("dump", metrics.dump().contains("/components/item.xview\t"));
+
+        metrics.reset();
+        assertEquals(0L, metrics.getRenderCount());
+        assertEquals(0, metrics.getUris().length);
+    }
+
+    public void testDisabled() {
+        XViewManager xviewManager = this.fixtures(null);
+        assertTrue("noop", xviewManager.getMetrics() == XViewMetrics.NOOP);
+        assertEquals("<p><i>a</i><i>b</i></p>", render(xviewManager, "/page.xview"));
+    }
+
+    public void testJmx() throws Exception {
+        JmxXViewMetrics metrics = new JmxXViewMetrics().register("JmxXViewMetricsTest");
+        try {
+            render(this.fixtures(metrics), "/page.xview");
+
+            ObjectName objectName = new ObjectName(JmxXViewMetrics.DOMAIN + ":type=XViewMetrics,name=" + ObjectName.quote("JmxXViewMetricsTest"));
+            assertEquals(1L, ManagementFactory.getPlatformMBeanServer().getAttribute(objectName, "RenderCount"));
+        } finally {
+            metrics.unregister();
+        }
+    }
+
+}
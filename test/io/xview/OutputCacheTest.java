@@ -0,0 +1,65 @@
+package io.xview;
+
+/**
+ * xview:cache 组件输出缓存与缓存键。
+ */
+public class OutputCacheTest extends XViewTestCase {
+
+    private XViewManager cachingManager() {
+        XViewManager xviewManager = this.newManager();
+        xviewManager.setXViewOutputCache(new XViewOutputCache());
+        return xviewManager;
+    }
+
+    public void testScriptObjectsDoNotCollide() {
+        // 两个脚本对象的toString都是 [object Object]，不能共用一个缓存条目
+        this.component("user", "xview:user=\"\"", "<xview:cache ttl=\"60\"/><b>${user.name}</b>");
+        this.put("/page.xview", view("",
+                "<xview:script>var u1 = {name: 'alice'}; var u2 = {name: 'bob'};</xview:script>"
+                        + "<c:user user=\"u1\"/><c:user user=\"u2\"/>"));
+
+        XViewManager xviewManager = this.cachingManager();
+        assertEquals("<b>alice</b><b>bob</b>", render(xviewManager, "/page.xview"));
+        assertEquals("<b>alice</b><b>bob</b>", render(xviewManager, "/page.xview"));
+        assertEquals(0, xviewManager.getXViewOutputCache().size());
+    }
+
+    public void testStringAndNumberKeys() {
+        this.component("item", "xview:id=\"\"", "<xview:cache ttl=\"60\"/><i>${id}</i>");
+        this.put("/page.xview", view("", "<c:item id=\"'a'\"/><c:item id=\"'b'\"/><c:item id=\"'a'\"/><c:item id=\"7\"/><c:item id=\"7\"/>"));
+
+        XViewManager xviewManager = this.cachingManager();
+        assertEquals("<i>a</i><i>b</i><i>a</i><i>7</i><i>7</i>", render(xviewManager, "/page.xview"));
+
+        XViewOutputCache xviewOutputCache = xviewManager.getXViewOutputCache();
+        assertEquals(3, xviewOutputCache.size());
+        assertEquals(2L, xviewOutputCache.getHitCount());
+    }
+
+    public void testNumberTypes() {
+        // Integer的1输出为1，Double的1.0输出为1.0，不能共用缓存
+        this.component("item", "xview:id=\"\"", "<xview:cache ttl=\"60\"/><i>${id}</i>");
+        this.put("/page.xview", view("xview:a=\"\" xview:b=\"\"", "<c:item id=\"a\"/><c:item id=\"b\"/>"));
+
+        String expected = render(this.newManager(), "/page.xview", attributes("a", 1, "b", 1.0));
+        assertEquals("<i>1</i><i>1.0</i>", expected);
+        assertEquals(expected, render(this.cachingManager(), "/page.xview", attributes("a", 1, "b", 1.0)));
+    }
+
+    public void testKey() {
+        assertEquals(XViewOutputCache.key("/a", 1), XViewOutputCache.key("/a", 1));
+        assertEquals(XViewOutputCache.key("/a", 1.5), XViewOutputCache.key("/a", 1.5));
+        assertEquals(XViewOutputCache.key("/a", "x"), XViewOutputCache.key("/a", new StringBuilder("x")));
+
+        assertTrue("string and number", !XViewOutputCache.key("/a", "1").equals(XViewOutputCache.key("/a", 1)));
+        assertTrue("string and boolean", !XViewOutputCache.key("/a", "true").equals(XViewOutputCache.key("/a", true)));
+        assertTrue("string and null", !XViewOutputCache.key("/a", "null").equals(XViewOutputCache.key("/a", (Object) null)));
+        assertTrue("separator in value", !XViewOutputCache.key("/a", "x\u0000sy", "z").equals(XViewOutputCache.key("/a", "x", "y\u0000sz")));
+        assertTrue("integer and double", !XViewOutputCache.key("/a", 1).equals(XViewOutputCache.key("/a", 1.0)));
+        assertTrue("negative zero", !XViewOutputCache.key("/a", -0.0).equals(XViewOutputCache.key("/a", 0.0)));
+        assertTrue("fraction", !XViewOutputCache.key("/a", 1.5).equals(XViewOutputCache.key("/a", 1)));
+
+        assertEquals(null, XViewOutputCache.key("/a", "x", new Object()));
+    }
+
+}
@@ -0,0 +1,54 @@
+package io.xview;
+
+/**
+ * xview:parallel 组件的输出按文档顺序拼接，与顺序渲染的输出相同。
+ */
+public class ParallelRenderingTest extends XViewTestCase {
+
+    private static final String SLEEP = "<xview:script>java.lang.Thread.sleep(delay);</xview:script>";
+
+    private void fixtures() {
+        // 先调用的组件等待更久，并行时后调用的组件先完成
+        this.component("slow", "xview:id=\"0\" xview:delay=\"0\"", SLEEP + "<section id=\"${id}\"><xview:process_child_nodes/></section>");
+        this.component("item", "xview:n=\"0\"", "<li>${n}</li>");
+        this.put("/page.xview", view("",
+                "<header>top</header>"
+                        + "<c:slow xview:parallel=\"true\" id=\"1\" delay=\"60\"><c:item n=\"1\"/><c:item n=\"2\"/></c:slow>"
+                        + "<hr/>"
+                        + "<c:slow xview:parallel=\"true\" id=\"2\" delay=\"30\"><c:slow xview:parallel=\"true\" id=\"21\" delay=\"20\"/><c:slow xview:parallel=\"true\" id=\"22\" delay=\"0\"/></c:slow>"
+                        + "<c:slow xview:parallel=\"true\" id=\"3\" delay=\"0\">${'caller-' + 3}</c:slow>"
+                        + "<footer>bottom</footer>"));
+    }
+
+    public void testSameOutputAsSequential() {
+        this.fixtures();
+
+        XViewManager sequential = this.newManager();
+        XViewManager parallel = this.newManager();
+        parallel.setParallelRendering(true);
+
+        String expected = render(sequential, "/page.xview");
+        assertEquals("<header>top</header><section id=\"1\"><li>1</li><li>2</li></section><hr/>"
+                + "<section id=\"2\"><section id=\"21\"></section><section id=\"22\"></section></section>"
+                + "<section id=\"3\">caller-3</section><footer>bottom</footer>", expected);
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals(expected, render(parallel, "/page.xview"));
+        }
+    }
+
+    public void testForkFailure() {
+        this.component("broken", "", "<xview:script>throw new Error('broken');</xview:script>");
+        this.put("/page.xview", view("", "<c:broken xview:parallel=\"true\"/><p>after</p>"));
+
+        XViewManager xviewManager = this.newManager();
+        xviewManager.setParallelRendering(true);
+        try {
+            render(xviewManager, "/page.xview");
+            fail("failure in a parallel component should fail the render");
+        } catch (XViewException e) {
+            // 预期的异常
+        }
+    }
+
+}
@@ -0,0 +1,113 @@
+package io.xview;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+/**
+ * ${a.b.c} 在Java中读取属性路径，结果与脚本求值相同。
+ */
+public class PropertyPathTest extends XViewTestCase {
+
+    public static class User {
+
+        public final String nickname = "nick";
+
+        private final String name;
+
+        private final User friend;
+
+        public User(String name, User friend) {
+            this.name = name;
+            this.friend = friend;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public User getFriend() {
+            return friend;
+        }
+
+        public boolean isActive() {
+            return true;
+        }
+    }
+
+    private String print(String expression, Object root) {
+        this.put("/page.xview", view("xview:root=\"\"", "[${" + expression + "}]"));
+        return render(this.newManager(), "/page.xview", attributes("root", root));
+    }
+
+    private String printScript(String script, String expression) {
+        this.put("/page.xview", view("", "<xview:script>" + script + "</xview:script>[${" + expression + "}]"));
+        return render(this.newManager(), "/page.xview");
+    }
+
+    public void testStringLength() {
+        assertEquals("[5]", this.print("root.length", "hello"));
+        assertEquals("[5]", this.printScript("var s = 'hel' + 'lo';", "s.length"));
+        assertEquals("[false]", this.print("root.empty", "hello"));
+
+        // StringBuilder的length是方法，与脚本的结果相同
+        StringBuilder builder = new StringBuilder("hello");
+        assertEquals(this.print("root['length']", builder), this.print("root.length", builder));
+        assertTrue("length should not be read in Java", !"[5]".equals(this.print("root.length", builder)));
+    }
+
+    public void testJavaBean() {
+        User user = new User("alice", new User("bob", null));
+
+        assertEquals("[alice]", this.print("root.name", user));
+        assertEquals("[bob]", this.print("root.friend.name", user));
+        assertEquals("[true]", this.print("root.active", user));
+        assertEquals("[nick]", this.print("root.nickname", user));
+        assertEquals("[]", this.print("root.friend.friend", user));
+        assertEquals("[undefined]", this.print("root.missing", user));
+    }
+
+    public void testJavaCollections() {
+        Map<String, Object> map = new HashMap<>();
+        map.put("size", "key");
+        map.put("empty", null);
+
+        assertEquals("[key]", this.print("root.size", map));
+        assertEquals("[]", this.print("root.empty", map));
+        assertEquals("[]", this.print("root.missing", map));
+        assertEquals("[2]", this.print("root.length", Arrays.asList("a", "b")));
+        assertEquals("[3]", this.print("root.length", new int[3]));
+        assertEquals("[undefined]", this.print("root.length", new HashSet<>(Collections.singleton("a"))));
+    }
+
+    public void testScriptObjects() {
+        String script = "var o = {a: {b: 'c', n: null, u: undefined}, list: [1, 2, 3]};";
+
+        assertEquals("[c]", this.printScript(script, "o.a.b"));
+        assertEquals("[3]", this.printScript(script, "o.list.length"));
+        assertEquals("[]", this.printScript(script, "o.a.n"));
+        assertEquals("[undefined]", this.printScript(script, "o.a.u"));
+        assertEquals("[undefined]", this.printScript(script, "o.a.missing"));
+        assertEquals("[undefined]", this.printScript(script, "o.missing"));
+    }
+
+    public void testMissingIntermediate() {
+        // 与脚本相同，读取undefined或null的属性时报错
+        try {
+            this.printScript("var o = {};", "o.missing.name");
+            fail("reading a member of undefined should fail");
+        } catch (XViewException e) {
+            assertTrue("unexpected cause " + e.getCause(), String.valueOf(e.getCause()).contains("TypeError"));
+        }
+
+        try {
+            this.print("root.friend.name", new User("alice", null));
+            fail("reading a member of null should fail");
+        } catch (XViewException e) {
+            assertTrue("unexpected cause " + e.getCause(), String.valueOf(e.getCause()).contains("TypeError"));
+        }
+    }
+
+}
@@ -0,0 +1,135 @@
+package io.xview;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 热加载模式（{@link XViewManager#setReloadMode(boolean)}）：文件修改后重新编译该文件与引用它的文件。
+ */
+public class ReloadTest extends XViewTestCase {
+
+    private Path directory;
+
+    private Runnable beforeLoad;
+
+    private void write(String uri, String content) throws IOException {
+        Path path = this.directory.resolve(uri.substring(1));
+        Files.createDirectories(path.getParent());
+        Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    protected XViewManager.XViewLoader loader() {
+        return new XViewManager.XViewLoader() {
+            @Override
+            public InputStream load(String uri) {
+                try {
+                    byte[] bytes = Files.readAllBytes(this.getFile(uri).toPath());
+                    Runnable beforeLoad = ReloadTest.this.beforeLoad;
+                    if (beforeLoad != null) {
+                        beforeLoad.run();
+                    }
+                    return new ByteArrayInputStream(bytes);
+                } catch (IOException e) {
+                    return null;
+                }
+            }
+
+            @Override
+            public File getFile(String uri) {
+                return ReloadTest.this.directory.resolve(uri.substring(1)).toFile();
+            }
+        };
+    }
+
+    private void run(Test test) throws Exception {
+        this.directory = Files.createTempDirectory("xview-reload");
+        XViewManager xviewManager = this.newManager();
+        xviewManager.setReloadMode(true);
+        try {
+            test.run(xviewManager);
+        } finally {
+            xviewManager.setReloadMode(false);
+            delete(this.directory.toFile());
+        }
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File i : files) {
+                delete(i);
+            }
+        }
+        file.delete();
+    }
+
+    private static void awaitRender(XViewManager xviewManager, String uri, String expected) throws InterruptedException {
+        String actual = null;
+        for (int i = 0; i < 200; i++) {
+            actual = render(xviewManager, uri);
+            if (expected.equals(actual)) {
+                return;
+            }
+            Thread.sleep(50);
+        }
+        assertEquals(expected, actual);
+    }
+
+    private interface Test {
+
+        void run(XViewManager xviewManager) throws Exception;
+
+    }
+
+    public void testComponentChange() throws Exception {
+        this.run(new Test() {
+            @Override
+            public void run(XViewManager xviewManager) throws Exception {
+                ReloadTest.this.write("/components/label.xview", view("", "<b>old</b>"));
+                ReloadTest.this.write("/page.xview", view("", "<p><c:label/></p>"));
+                assertEquals("<p><b>old</b></p>", render(xviewManager, "/page.xview"));
+
+                ReloadTest.this.write("/components/label.xview", view("", "<b>new</b>"));
+                awaitRender(xviewManager, "/page.xview", "<p><b>new</b></p>");
+                assertTrue("page should be recompiled", xviewManager.getXViewWatcher().getGeneration("/page.xview") > 0);
+            }
+        });
+    }
+
+    public void testChangeDuringLoad() throws Exception {
+        this.run(new Test() {
+            @Override
+            public void run(final XViewManager xviewManager) throws Exception {
+                ReloadTest.this.write("/page.xview", view("", "<p>old</p>"));
+
+                // 读取旧内容之后、放入缓存之前文件被修改
+                final AtomicBoolean changed = new AtomicBoolean();
+                ReloadTest.this.beforeLoad = new Runnable() {
+                    @Override
+                    public void run() {
+                        if (changed.compareAndSet(false, true)) {
+                            try {
+                                ReloadTest.this.write("/page.xview", view("", "<p>new</p>"));
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                            xviewManager.getXViewWatcher().invalidate("/page.xview");
+                        }
+                    }
+                };
+
+                assertEquals("<p>old</p>", render(xviewManager, "/page.xview"));
+                assertEquals("<p>new</p>", render(xviewManager, "/page.xview"));
+            }
+        });
+    }
+
+}
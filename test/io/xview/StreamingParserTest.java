@@ -0,0 +1,43 @@
+package io.xview;
+
+/**
+ * StAX解析路径（{@link XViewManager#setStreamingParser(boolean)}）与DOM路径渲染出相同的输出。
+ */
+public class StreamingParserTest extends XViewTestCase {
+
+    private void assertSameOutput(String uri) {
+        XViewManager domXViewManager = this.newManager();
+        XViewManager streamingXViewManager = this.newManager();
+        streamingXViewManager.setStreamingParser(true);
+
+        String expected = render(domXViewManager, uri);
+        assertEquals(expected, render(streamingXViewManager, uri));
+    }
+
+    public void testMarkupAndExpressions() {
+        this.put("/page.xview", view("xview:title=\"page\"",
+                "<xview:script>var items = ['a', 'b&amp;c'];</xview:script>"
+                        + "<!-- comment --><html lang=\"zh\"><head><title>${title}</title></head>"
+                        + "<body class=\"${title + '-body'}\" data-empty=\"\">"
+                        + "<p>&lt;escaped&gt; &amp; &quot;quoted&quot; ${items.length}</p>"
+                        + "<pre><![CDATA[<raw> & text]]></pre>"
+                        + "<br/><img src=\"a.png\" alt=\"\"/>"
+                        + "</body></html>"));
+
+        this.assertSameOutput("/page.xview");
+    }
+
+    public void testComponentsAndControlFlow() {
+        this.component("card", "xview:name=\"''\"",
+                "<div class=\"card\"><h2>${name}</h2><xview:process_child_nodes/></div>");
+        this.put("/page.xview", view("",
+                "<ul><xview:for items=\"['x', 'y', 'z']\" var=\"item\" index=\"i\">"
+                        + "<li>${i}:${item}<xview:if test=\"i == 1\"> (second)</xview:if></li>"
+                        + "</xview:for></ul>"
+                        + "<c:card name=\"'outer'\"><c:card name=\"'inner'\"><span>leaf</span></c:card></c:card>"
+                        + "<xview:choose><xview:when test=\"false\">no</xview:when><xview:otherwise>yes</xview:otherwise></xview:choose>"));
+
+        this.assertSameOutput("/page.xview");
+    }
+
+}
@@ -0,0 +1,147 @@
+package io.xview;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * 流式输出：输出到WritableByteChannel或分块输出（{@link XViewChunkConsumer}），xview:flush 时提前输出已渲染的内容。
+ */
+public class StreamingTest extends XViewTestCase {
+
+    /**
+     * 记录每一块的内容
+     */
+    private static class Chunks implements XViewChunkConsumer {
+
+        private final List<String> chunks = new ArrayList<>();
+
+        @Override
+        public void accept(ByteBuffer chunk) {
+            byte[] bytes = new byte[chunk.remaining()];
+            chunk.get(bytes);
+            this.chunks.add(new String(bytes, StandardCharsets.UTF_8));
+        }
+
+        String joined() {
+            StringBuilder stringBuilder = new StringBuilder();
+            for (String chunk : this.chunks) {
+                stringBuilder.append(chunk);
+            }
+            return stringBuilder.toString();
+        }
+    }
+
+    /**
+     * 每次最多写入几个字节、每隔一次写入0字节的通道（模拟写满的非阻塞通道）
+     */
+    private static class SlowChannel implements WritableByteChannel {
+
+        private final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        private int calls;
+
+        private int stalls;
+
+        @Override
+        public int write(ByteBuffer src) {
+            if (this.calls++ % 2 == 0) {
+                this.stalls++;
+                return 0;
+            }
+
+            int length = Math.min(src.remaining(), 5);
+            for (int i = 0; i < length; i++) {
+                this.outputStream.write(src.get());
+            }
+            return length;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static final String PAGE = "<head>${'h'}</head><xview:flush/><body><c:item value=\"'a'\"/>${'b'}</body>";
+
+    private static final String OUTPUT = "<head>h</head><body><i>a</i>b</body>";
+
+    private void fixtures() {
+        this.component("item", "xview:value=\"\"", "<i>${value}</i>");
+        this.put("/page.xview", view("", PAGE));
+    }
+
+    public void testFlushChunks() {
+        this.fixtures();
+        XViewManager xviewManager = this.newManager();
+        assertEquals(OUTPUT, render(xviewManager, "/page.xview"));
+
+        Chunks chunks = new Chunks();
+        xviewManager.load("/page.xview").execute(chunks, new HashMap<String, Object>(), null);
+
+        // xview:flush 之前的内容单独成为第一块
+        assertEquals(2, chunks.chunks.size());
+        assertEquals("<head>h</head>", chunks.chunks.get(0));
+        assertEquals(OUTPUT, chunks.joined());
+    }
+
+    public void testBufferChunks() {
+        this.put("/page.xview", view("",
+                "<xview:script>var items = []; while (items.length != 100) { items.push(0); }</xview:script>"
+                        + "<xview:for items=\"items\" var=\"v\"><p>${'0123456789'}</p></xview:for>"));
+        XViewManager xviewManager = this.newManager();
+        xviewManager.setWriterBufferSize(64);
+        String expected = render(xviewManager, "/page.xview");
+        assertEquals(100 * "<p>0123456789</p>".length(), expected.length());
+
+        // 缓冲区写满时输出一块，不在内存中堆积整个输出
+        Chunks chunks = new Chunks();
+        xviewManager.load("/page.xview").execute(chunks, new HashMap<String, Object>(), null);
+        assertEquals(expected, chunks.joined());
+        assertTrue("chunks " + chunks.chunks.size(), chunks.chunks.size() >= expected.length() / 64);
+        for (String chunk : chunks.chunks) {
+            assertTrue("chunk size " + chunk.length(), chunk.length() <= 64);
+        }
+    }
+
+    public void testChannel() throws IOException {
+        this.fixtures();
+        XViewManager xviewManager = this.newManager();
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        xviewManager.load("/page.xview").execute(Channels.newChannel(outputStream), new HashMap<String, Object>(), null);
+        assertEquals(OUTPUT, new String(outputStream.toByteArray(), StandardCharsets.UTF_8));
+
+        // 通道暂时写不进去时等待后重试
+        SlowChannel slowChannel = new SlowChannel();
+        xviewManager.load("/page.xview").execute(slowChannel, new HashMap<String, Object>(), null);
+        assertEquals(OUTPUT, new String(slowChannel.outputStream.toByteArray(), StandardCharsets.UTF_8));
+        assertTrue("stalls " + slowChannel.stalls, slowChannel.stalls > 0);
+    }
+
+    public void testFlushWithParallel() {
+        // 前面有未完成的并行子组件时，xview:flush 不打乱输出顺序
+        this.component("slow", "", "<xview:script>java.lang.Thread.sleep(50);</xview:script><s>slow</s>");
+        this.put("/page.xview", view("", "<a>1</a><c:slow xview:parallel=\"true\"/><xview:flush/><b>2</b><xview:flush/><c>3</c>"));
+
+        XViewManager xviewManager = this.newManager();
+        xviewManager.setParallelRendering(true);
+
+        Chunks chunks = new Chunks();
+        xviewManager.load("/page.xview").execute(chunks, new HashMap<String, Object>(), null);
+        assertEquals("<a>1</a><s>slow</s><b>2</b><c>3</c>", chunks.joined());
+        assertEquals("<a>1</a>", chunks.chunks.get(0));
+    }
+
+}
@@ -0,0 +1,90 @@
+package io.xview;
+
+import java.util.AbstractList;
+
+/**
+ * {@link XViewBudget} 的时间、嵌套层数与输出字节数限制。
+ */
+public class XViewBudgetTest extends XViewTestCase {
+
+    private static void assertExceeded(XViewManager xviewManager, String uri, String message) {
+        try {
+            render(xviewManager, uri);
+            fail("budget should be exceeded: " + message);
+        } catch (XViewBudget.ExceededException e) {
+            assertTrue("unexpected message [" + e.getMessage() + "]", e.getMessage().contains(message));
+        }
+    }
+
+    public void testDepth() {
+        // 组件引用自身，没有限制时无限递归
+        this.component("recursive", "xview:n=\"0\"", "<i>${n}</i><c:recursive n=\"n + 1\"/>");
+        this.component("nested", "xview:n=\"0\"", "<xview:if test=\"n &lt; 4\"><c:nested n=\"n + 1\"/></xview:if>${String(n)}");
+        this.put("/recursive.xview", view("", "<c:recursive n=\"1\"/>"));
+        this.put("/nested.xview", view("", "<c:nested n=\"1\"/>"));
+
+        XViewManager xviewManager = this.newManager();
+        xviewManager.setXViewBudget(new XViewBudget(0, 4, 0));
+
+        assertExceeded(xviewManager, "/recursive.xview", "render depth exceeded 4");
+        assertEquals("4321", render(xviewManager, "/nested.xview"));
+    }
+
+    public void testBytes() {
+        this.component("text", "", "<p>0123456789</p>");
+        this.put("/page.xview", view("xview:count=\"\"", "<xview:for items=\"count\" var=\"i\"><c:text/></xview:for>"));
+
+        XViewManager xviewManager = this.newManager();
+        xviewManager.setXViewBudget(new XViewBudget(0, 0, 1000));
+
+        assertEquals(170, render(xviewManager, "/page.xview", attributes("count", new Object[10])).length());
+        try {
+            render(xviewManager, "/page.xview", attributes("count", new Object[1000]));
+            fail("output budget should be exceeded");
+        } catch (XViewBudget.ExceededException e) {
+            assertTrue("unexpected message [" + e.getMessage() + "]", e.getMessage().contains("1000 bytes"));
+        }
+    }
+
+    public void testTime() {
+        this.put("/page.xview", view("xview:items=\"\"", "<xview:for items=\"items\" var=\"i\">${i}</xview:for>"));
+
+        // 很长的列表，没有限制时需要渲染很久
+        AbstractList<Integer> items = new AbstractList<Integer>() {
+            @Override
+            public Integer get(int index) {
+                return index;
+            }
+
+            @Override
+            public int size() {
+                return Integer.MAX_VALUE;
+            }
+        };
+
+        XViewManager xviewManager = this.newManager();
+        xviewManager.setXViewBudget(new XViewBudget(100, 0, 0));
+
+        long begin = System.nanoTime();
+        try {
+            render(xviewManager, "/page.xview", attributes("items", items));
+            fail("time budget should be exceeded");
+        } catch (XViewBudget.ExceededException e) {
+            assertTrue("unexpected message [" + e.getMessage() + "]", e.getMessage().contains("time exceeded"));
+        }
+        long millis = (System.nanoTime() - begin) / 1000000;
+        assertTrue("render ended after " + millis + "ms", millis < 5000);
+    }
+
+    public void testUnlimited() {
+        this.component("text", "", "<p>0123456789</p>");
+        this.put("/page.xview", view("xview:count=\"\"", "<xview:for items=\"count\" var=\"i\"><c:text/></xview:for>"));
+
+        XViewManager xviewManager = this.newManager();
+        xviewManager.setXViewBudget(new XViewBudget(10, 1, 10));
+        xviewManager.setXViewBudget(null);
+
+        assertEquals(17000, render(xviewManager, "/page.xview", attributes("count", new Object[1000])).length());
+    }
+
+}
@@ -0,0 +1,121 @@
+package io.xview;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+/**
+ * 预编译包（{@link XViewBundle}）：由目录树生成，运行时不再读取单个xview文件，输出与直接编译相同。
+ */
+public class XViewBundleTest extends XViewTestCase {
+
+    private File directory;
+
+    private interface Test {
+
+        void run() throws Exception;
+
+    }
+
+    private void run(Test test) throws Exception {
+        this.directory = Files.createTempDirectory("xview-bundle").toFile();
+        try {
+            test.run();
+        } finally {
+            delete(this.directory);
+        }
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File i : files) {
+                delete(i);
+            }
+        }
+        file.delete();
+    }
+
+    private void write(String uri, String content) throws IOException {
+        File file = new File(this.directory, uri.substring(1));
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void fixtures() throws IOException {
+        this.write("/components/item.xview", view("xview:value=\"\"", "<i>${value}</i>"));
+        this.write("/page.xview", view("", "<p><c:item value=\"'a'\"/><c:item value=\"'b'\"/></p>"));
+    }
+
+    public void testBuildAndRender() throws Exception {
+        this.run(new Test() {
+            @Override
+            public void run() throws Exception {
+                XViewBundleTest.this.fixtures();
+                File bundleFile = new File(XViewBundleTest.this.directory, "views" + XViewBundle.FILE_EXT);
+
+                List<String> errors = XViewBundle.build(XViewBundleTest.this.directory, "/", bundleFile, StandardCharsets.UTF_8);
+                assertEquals(0, errors.size());
+
+                try (XViewBundle xviewBundle = XViewBundle.open(bundleFile)) {
+                    assertTrue("uris " + xviewBundle.getUris(), xviewBundle.contains("/page.xview") && xviewBundle.contains("/components/item.xview"));
+                    assertEquals(2, xviewBundle.getUris().size());
+                    assertEquals(StandardCharsets.UTF_8, xviewBundle.getCharset());
+                    assertEquals(null, xviewBundle.get("/missing.xview"));
+
+                    // 加载器中没有任何文件，只能从预编译包中获取
+                    XViewManager xviewManager = XViewBundleTest.this.newManager();
+                    xviewManager.setXViewBundle(xviewBundle);
+                    assertEquals("<p><i>a</i><i>b</i></p>", render(xviewManager, "/page.xview"));
+                }
+            }
+        });
+    }
+
+    public void testMissingComponent() throws Exception {
+        this.run(new Test() {
+            @Override
+            public void run() throws Exception {
+                XViewBundleTest.this.fixtures();
+                XViewBundleTest.this.write("/broken.xview", view("", "<c:missing/>"));
+                File bundleFile = new File(XViewBundleTest.this.directory, "views" + XViewBundle.FILE_EXT);
+
+                List<String> errors = XViewBundle.build(XViewBundleTest.this.directory, "/", bundleFile, StandardCharsets.UTF_8);
+                assertEquals(1, errors.size());
+                assertTrue(errors.get(0), errors.get(0).startsWith("/broken.xview: ") && errors.get(0).contains("/components/missing.xview"));
+                assertTrue("bundle should not be written", !bundleFile.exists());
+            }
+        });
+    }
+
+    public void testClosedAndCharset() throws Exception {
+        this.run(new Test() {
+            @Override
+            public void run() throws Exception {
+                XViewBundleTest.this.fixtures();
+                File bundleFile = new File(XViewBundleTest.this.directory, "views" + XViewBundle.FILE_EXT);
+                XViewBundle.build(XViewBundleTest.this.directory, "/", bundleFile, StandardCharsets.ISO_8859_1);
+
+                XViewBundle xviewBundle = XViewBundle.open(bundleFile);
+                try {
+                    XViewBundleTest.this.newManager().setXViewBundle(xviewBundle);
+                    fail("bundle charset should match the manager charset");
+                } catch (XViewException e) {
+                    // expected
+                }
+
+                assertTrue("readable before close", xviewBundle.get("/page.xview") != null);
+                xviewBundle.close();
+                try {
+                    xviewBundle.get("/page.xview");
+                    fail("reading a closed bundle should fail");
+                } catch (XViewException e) {
+                    // expected
+                }
+            }
+        });
+    }
+
+}
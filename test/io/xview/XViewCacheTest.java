@@ -0,0 +1,93 @@
+package io.xview;
+
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 已编译XView的缓存（{@link XViewCache}）：嵌套组件不会在每次渲染时重新读取与编译。
+ */
+public class XViewCacheTest extends XViewTestCase {
+
+    private final Map<String, AtomicInteger> loads = new ConcurrentHashMap<>();
+
+    @Override
+    protected XViewManager.XViewLoader loader() {
+        final XViewManager.XViewLoader loader = super.loader();
+        return new XViewManager.XViewLoader() {
+            @Override
+            public InputStream load(String uri) {
+                XViewCacheTest.this.loads(uri).incrementAndGet();
+                return loader.load(uri);
+            }
+        };
+    }
+
+    private AtomicInteger loads(String uri) {
+        AtomicInteger count = this.loads.get(uri);
+        if (count == null) {
+            this.loads.putIfAbsent(uri, new AtomicInteger());
+            count = this.loads.get(uri);
+        }
+        return count;
+    }
+
+    private void putPage() {
+        this.component("item", "xview:value=\"\"", "<i>${value}</i>");
+        this.put("/page.xview", view("", "<c:item value=\"'a'\"/><c:item value=\"'b'\"/>"));
+    }
+
+    public void testNestedComponentsLoadedOnce() {
+        this.putPage();
+        XViewManager xviewManager = this.newManager();
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals("<i>a</i><i>b</i>", render(xviewManager, "/page.xview"));
+        }
+
+        assertEquals(1, this.loads("/page.xview").get());
+        assertEquals(1, this.loads("/components/item.xview").get());
+        assertTrue("same instance", xviewManager.load("/page.xview") == xviewManager.load("/page.xview"));
+
+        XViewCache xviewCache = xviewManager.getXViewCache();
+        assertEquals(2, xviewCache.size());
+        assertEquals(2L, xviewCache.getMissCount());
+        assertTrue("hits " + xviewCache.getHitCount(), xviewCache.getHitCount() >= 6);
+    }
+
+    public void testDisabled() {
+        this.putPage();
+        XViewManager xviewManager = this.newManager();
+        xviewManager.setXViewCache(new XViewCache(0));
+
+        assertEquals("<i>a</i><i>b</i>", render(xviewManager, "/page.xview"));
+        assertEquals("<i>a</i><i>b</i>", render(xviewManager, "/page.xview"));
+
+        assertEquals(2, this.loads("/page.xview").get());
+        assertEquals(0, xviewManager.getXViewCache().size());
+    }
+
+    public void testEviction() {
+        this.put("/a.xview", view("", "a"));
+        this.put("/b.xview", view("", "b"));
+        this.put("/c.xview", view("", "c"));
+
+        XViewManager xviewManager = this.newManager();
+        xviewManager.setXViewCache(new XViewCache(2, XViewCache.Eviction.LRU));
+
+        render(xviewManager, "/a.xview");
+        render(xviewManager, "/b.xview");
+        // 访问a之后，最久未访问的是b
+        render(xviewManager, "/a.xview");
+        render(xviewManager, "/c.xview");
+        render(xviewManager, "/a.xview");
+        render(xviewManager, "/b.xview");
+
+        assertEquals(1, this.loads("/a.xview").get());
+        assertEquals(2, this.loads("/b.xview").get());
+        assertEquals(2, xviewManager.getXViewCache().size());
+        assertEquals(2L, xviewManager.getXViewCache().getEvictionCount());
+    }
+
+}
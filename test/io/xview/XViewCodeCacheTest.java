@@ -0,0 +1,160 @@
+package io.xview;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * 持久化的代码缓存（{@link XViewCodeCache}）：重启后内容未变化的文件使用缓存的编译结果，输出相同。
+ */
+public class XViewCodeCacheTest extends XViewTestCase {
+
+    private File directory;
+
+    private interface Test {
+
+        void run() throws Exception;
+
+    }
+
+    private void run(Test test) throws Exception {
+        this.directory = Files.createTempDirectory("xview-code-cache").toFile();
+        try {
+            test.run();
+        } finally {
+            delete(this.directory);
+        }
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File i : files) {
+                delete(i);
+            }
+        }
+        file.delete();
+    }
+
+    private XViewManager cachingManager(XViewCodeCache xviewCodeCache) {
+        XViewManager xviewManager = this.newManager();
+        xviewManager.setXViewCodeCache(xviewCodeCache);
+        return xviewManager;
+    }
+
+    private int cacheFiles() {
+        int count = 0;
+        for (String name : this.directory.list()) {
+            if (name.endsWith(XViewCodeCache.FILE_EXT)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void fixtures() {
+        this.component("item", "xview:value=\"default\"", "<i>${value}</i>");
+        this.put("/page.xview", view("xview:title=\"\"",
+                "<h1>${title}</h1><xview:for items=\"['a', 'b']\" var=\"v\"><c:item value=\"v\"/></xview:for><c:item/>"));
+    }
+
+    public void testRestart() throws Exception {
+        this.run(new Test() {
+            @Override
+            public void run() {
+                XViewCodeCacheTest.this.fixtures();
+                String expected = "<h1>t</h1><i>a</i><i>b</i><i>default</i>";
+
+                XViewCodeCache first = new XViewCodeCache(XViewCodeCacheTest.this.directory);
+                assertEquals(expected, render(XViewCodeCacheTest.this.cachingManager(first), "/page.xview", attributes("title", "t")));
+                assertEquals(2L, first.getMissCount());
+                assertEquals(2L, first.getWriteCount());
+                assertEquals(2, XViewCodeCacheTest.this.cacheFiles());
+
+                // 相当于重启：新的XViewManager与XViewCodeCache使用同一目录
+                XViewCodeCache second = new XViewCodeCache(XViewCodeCacheTest.this.directory);
+                assertEquals(expected, render(XViewCodeCacheTest.this.cachingManager(second), "/page.xview", attributes("title", "t")));
+                assertEquals(2L, second.getHitCount());
+                assertEquals(0L, second.getMissCount());
+                assertEquals(0L, second.getWriteCount());
+            }
+        });
+    }
+
+    public void testChangedContent() throws Exception {
+        this.run(new Test() {
+            @Override
+            public void run() {
+                XViewCodeCacheTest.this.fixtures();
+                render(XViewCodeCacheTest.this.cachingManager(new XViewCodeCache(XViewCodeCacheTest.this.directory)), "/page.xview");
+
+                XViewCodeCacheTest.this.component("item", "xview:value=\"default\"", "<b>${value}</b>");
+                XViewCodeCache xviewCodeCache = new XViewCodeCache(XViewCodeCacheTest.this.directory);
+                assertEquals("<h1></h1><b>a</b><b>b</b><b>default</b>", render(XViewCodeCacheTest.this.cachingManager(xviewCodeCache), "/page.xview"));
+                assertEquals(1L, xviewCodeCache.getHitCount());
+                assertEquals(1L, xviewCodeCache.getMissCount());
+                assertEquals(3, XViewCodeCacheTest.this.cacheFiles());
+            }
+        });
+    }
+
+    public void testCorruptFile() throws Exception {
+        this.run(new Test() {
+            @Override
+            public void run() throws Exception {
+                XViewCodeCacheTest.this.put("/page.xview", view("", "<p>ok</p>"));
+                render(XViewCodeCacheTest.this.cachingManager(new XViewCodeCache(XViewCodeCacheTest.this.directory)), "/page.xview");
+
+                // 截断缓存文件：读取失败时删除并重新编译
+                for (File file : XViewCodeCacheTest.this.directory.listFiles()) {
+                    if (file.getName().endsWith(XViewCodeCache.FILE_EXT)) {
+                        byte[] bytes = Files.readAllBytes(file.toPath());
+                        Files.write(file.toPath(), Arrays.copyOf(bytes, bytes.length / 2));
+                    }
+                }
+
+                XViewCodeCache xviewCodeCache = new XViewCodeCache(XViewCodeCacheTest.this.directory);
+                assertEquals("<p>ok</p>", render(XViewCodeCacheTest.this.cachingManager(xviewCodeCache), "/page.xview"));
+                assertEquals(1L, xviewCodeCache.getErrorCount());
+                assertEquals(1L, xviewCodeCache.getWriteCount());
+                assertEquals(1, XViewCodeCacheTest.this.cacheFiles());
+            }
+        });
+    }
+
+    public void testRemoveStale() throws Exception {
+        this.run(new Test() {
+            @Override
+            public void run() throws Exception {
+                File stale = new File(XViewCodeCacheTest.this.directory, "stale" + XViewCodeCache.FILE_EXT);
+                try (DataOutputStream out = new DataOutputStream(new FileOutputStream(stale))) {
+                    // 文件头（MAGIC）相同、格式版本不同
+                    out.writeInt(0x58564343);
+                    out.writeInt(XViewCodeCache.FORMAT_VERSION - 1);
+                }
+                File other = new File(XViewCodeCacheTest.this.directory, "other.txt");
+                Files.write(other.toPath(), new byte[] { 1 });
+
+                new XViewCodeCache(XViewCodeCacheTest.this.directory);
+                assertTrue("stale cache file should be removed", !stale.exists());
+                assertTrue("other files should be kept", other.exists());
+            }
+        });
+    }
+
+    public void testUnwritableDirectory() throws IOException {
+        File file = File.createTempFile("xview-code-cache", ".tmp");
+        try {
+            new XViewCodeCache(file);
+            fail("a regular file cannot be used as the cache directory");
+        } catch (XViewException e) {
+            // expected
+        } finally {
+            file.delete();
+        }
+    }
+
+}
@@ -0,0 +1,93 @@
+package io.xview;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 渲染分析器（{@link XViewProfiler}）：按调用栈记录嵌套调用的组件，同一位置的多次调用合并。
+ */
+public class XViewProfilerTest extends XViewTestCase {
+
+    private XViewManager fixtures(XViewProfiler xviewProfiler) {
+        this.component("label", "xview:text=\"\"", "<b>${text}</b>");
+        this.component("item", "xview:value=\"\"", "<i><c:label text=\"value\"/></i>");
+        this.put("/page.xview", view("", "<p><c:item value=\"'a'\"/><c:item value=\"'b'\"/><c:label text=\"'c'\"/></p>"));
+
+        XViewManager xviewManager = this.newManager();
+        xviewManager.setXViewProfiler(xviewProfiler);
+        return xviewManager;
+    }
+
+    private static List<String> uris(XViewProfiler.Node node) {
+        List<String> uris = new ArrayList<>();
+        for (XViewProfiler.Node child : node.getChildren()) {
+            uris.add(child.getUri());
+        }
+        return uris;
+    }
+
+    private static XViewProfiler.Node child(XViewProfiler.Node node, String uri) {
+        for (XViewProfiler.Node child : node.getChildren()) {
+            if (uri.equals(child.getUri())) {
+                return child;
+            }
+        }
+        throw new AssertionError(uri + " not found in " + uris(node));
+    }
+
+    public void testCallTree() throws Exception {
+        XViewProfiler xviewProfiler = new XViewProfiler(1);
+        String output = render(this.fixtures(xviewProfiler), "/page.xview");
+        assertEquals("<p><i><b>a</b></i><i><b>b</b></i><b>c</b></p>", output);
+        assertEquals(1, xviewProfiler.getProfiles().size());
+
+        XViewProfiler.Node root = xviewProfiler.getProfiles().get(0).getRoot();
+        XViewProfiler.Node page = child(root, "/page.xview");
+        assertEquals(1, page.getCount());
+        assertEquals((long) output.length(), page.getBytes());
+
+        // label在item中与在page中是不同的节点
+        XViewProfiler.Node item = child(page, "/components/item.xview");
+        XViewProfiler.Node itemLabel = child(item, "/components/label.xview");
+        XViewProfiler.Node pageLabel = child(page, "/components/label.xview");
+        assertEquals("item", item.getTag());
+        assertEquals(2, item.getCount());
+        assertEquals(2, itemLabel.getCount());
+        assertEquals(1, pageLabel.getCount());
+
+        assertEquals((long) "<i><b>a</b></i><i><b>b</b></i>".length(), item.getBytes());
+        assertEquals((long) "<i></i><i></i>".length(), item.getSelfBytes());
+        assertEquals((long) "<p></p>".length(), page.getSelfBytes());
+        assertTrue("time", page.getTotalTime() >= item.getTotalTime() + pageLabel.getTotalTime());
+        assertEquals(page.getTotalTime() - item.getTotalTime() - pageLabel.getTotalTime(), page.getSelfTime());
+
+        StringWriter writer = new StringWriter();
+        xviewProfiler.dumpCollapsedStacks(writer);
+        String stacks = writer.toString();
+        assertTrue(stacks, stacks.startsWith("/page.xview "));
+        assertTrue(stacks, stacks.contains("\n/page.xview;/components/item.xview "));
+        assertTrue(stacks, stacks.contains("\n/page.xview;/components/item.xview;/components/label.xview "));
+        assertTrue(stacks, stacks.contains("\n/page.xview;/components/label.xview "));
+        assertEquals(4, stacks.split("\n").length);
+    }
+
+    public void testSampling() {
+        XViewProfiler xviewProfiler = new XViewProfiler(0);
+        XViewManager xviewManager = this.fixtures(xviewProfiler);
+        render(xviewManager, "/page.xview");
+        assertEquals(0, xviewProfiler.getProfiles().size());
+
+        // 只保留最近的调用树
+        xviewProfiler = new XViewProfiler(1, 2);
+        xviewManager.setXViewProfiler(xviewProfiler);
+        for (int i = 0; i < 3; i++) {
+            render(xviewManager, "/page.xview");
+        }
+        assertEquals(2, xviewProfiler.getProfiles().size());
+
+        xviewProfiler.clear();
+        assertEquals(0, xviewProfiler.getProfiles().size());
+    }
+
+}
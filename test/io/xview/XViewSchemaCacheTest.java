@@ -0,0 +1,97 @@
+package io.xview;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * validateSchema模式：按schemaLocation编译的Schema被同一schemaLocation的所有文件复用，XSD修改后通过invalidate重新编译。
+ */
+public class XViewSchemaCacheTest extends XViewTestCase {
+
+    private static final String SCHEMA_LOCATION = "xview /xview.xsd components /components/components.xsd";
+
+    private static String componentsXsd(String attributes) {
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                + "<schema xmlns=\"http://www.w3.org/2001/XMLSchema\" targetNamespace=\"components\" elementFormDefault=\"qualified\">"
+                + "<element name=\"item\"><complexType>" + attributes + "</complexType></element>"
+                + "</schema>";
+    }
+
+    private static String validatedView(String declarations, String body) {
+        return view(declarations, body).replace("components /components/components.xsd", SCHEMA_LOCATION);
+    }
+
+    private void fixtures() throws IOException {
+        InputStream inputStream = XView.class.getResourceAsStream("xview.xsd");
+        try {
+            this.put("/xview.xsd", new String(XViewXml.readBytes(inputStream), StandardCharsets.UTF_8));
+        } finally {
+            inputStream.close();
+        }
+
+        this.put("/components/components.xsd", componentsXsd("<attribute name=\"value\" type=\"string\"/>"));
+        this.put("/components/item.xview", validatedView("xview:value=\"\"", "<i>${value}</i>"));
+        this.put("/page.xview", validatedView("", "<c:item value=\"'a'\"/><c:item value=\"'b'\"/>"));
+        this.put("/other.xview", validatedView("", "<p><c:item value=\"'c'\"/></p>"));
+        this.put("/invalid.xview", validatedView("", "<c:item value=\"'a'\" size=\"1\"/>"));
+    }
+
+    private XViewManager validatingManager() {
+        return new XViewManager(this.loader(), true, 4, true);
+    }
+
+    public void testReuse() throws IOException {
+        this.fixtures();
+        XViewManager xviewManager = this.validatingManager();
+
+        assertEquals("<i>a</i><i>b</i>", render(xviewManager, "/page.xview"));
+        assertEquals("<p><i>c</i></p>", render(xviewManager, "/other.xview"));
+
+        // 三个文件使用同一个schemaLocation，只编译一次
+        XViewSchemaCache xviewSchemaCache = xviewManager.getXViewSchemaCache();
+        assertEquals(1, xviewSchemaCache.size());
+        assertEquals(1L, xviewSchemaCache.getMissCount());
+        assertEquals(2L, xviewSchemaCache.getHitCount());
+    }
+
+    public void testInvalid() throws IOException {
+        this.fixtures();
+
+        try {
+            this.validatingManager().load("/invalid.xview");
+            fail("undeclared attribute should fail validation");
+        } catch (XViewException e) {
+            // expected
+        }
+
+        // 不验证时可以加载
+        assertEquals("<i>a</i>", render(this.newManager(), "/invalid.xview"));
+    }
+
+    public void testInvalidate() throws IOException {
+        this.fixtures();
+        XViewManager xviewManager = this.validatingManager();
+        XViewSchemaCache xviewSchemaCache = xviewManager.getXViewSchemaCache();
+        render(xviewManager, "/page.xview");
+
+        this.put("/components/components.xsd", componentsXsd("<attribute name=\"value\" type=\"string\"/><attribute name=\"size\" type=\"int\"/>"));
+
+        // 未失效时仍使用已编译的Schema
+        try {
+            xviewManager.load("/invalid.xview");
+            fail("the cached schema should still reject the attribute");
+        } catch (XViewException e) {
+            // expected
+        }
+
+        xviewSchemaCache.invalidate("/other/other.xsd");
+        assertEquals(1, xviewSchemaCache.size());
+
+        xviewSchemaCache.invalidate("/components/components.xsd");
+        assertEquals(0, xviewSchemaCache.size());
+        assertEquals("<i>a</i>", render(xviewManager, "/invalid.xview"));
+        assertEquals(2L, xviewSchemaCache.getMissCount());
+    }
+
+}
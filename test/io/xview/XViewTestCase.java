@@ -0,0 +1,86 @@
+package io.xview;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 测试基类：xview文件保存在内存中（{@link #put(String, String)}），提供渲染为字符串与断言的辅助方法。
+ * 以 test 开头的public无参方法由 {@link XViewTests} 执行，每个方法使用新的实例。
+ */
+public abstract class XViewTestCase {
+
+    protected static final String HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<xview:view xmlns:xview=\"xview\" xmlns:c=\"components\""
+            + " xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" xsi:schemaLocation=\"components /components/components.xsd\"";
+
+    private final Map<String, byte[]> files = new ConcurrentHashMap<>();
+
+    protected void put(String uri, String content) {
+        this.files.put(uri, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 添加一个组件（/components/name.xview），declarations 为根元素上的参数声明，如 xview:value=""。
+     */
+    protected void component(String name, String declarations, String body) {
+        this.put("/components/" + name + XView.FILE_EXT, view(declarations, body));
+    }
+
+    protected static String view(String declarations, String body) {
+        return HEADER + (declarations.isEmpty() ? "" : " " + declarations) + ">" + body + "</xview:view>";
+    }
+
+    protected XViewManager.XViewLoader loader() {
+        return new XViewManager.XViewLoader() {
+            @Override
+            public InputStream load(String uri) {
+                byte[] bytes = XViewTestCase.this.files.get(uri);
+                return bytes == null ? null : new ByteArrayInputStream(bytes);
+            }
+        };
+    }
+
+    protected XViewManager newManager() {
+        return new XViewManager(this.loader(), false, 4, true);
+    }
+
+    protected static String render(XViewManager xviewManager, String uri) {
+        return render(xviewManager, uri, new HashMap<String, Object>());
+    }
+
+    protected static String render(XViewManager xviewManager, String uri, Map<String, Object> attributes) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        xviewManager.load(uri).execute(outputStream, attributes, null);
+        return new String(outputStream.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    protected static Map<String, Object> attributes(Object... keyValues) {
+        Map<String, Object> attributes = new HashMap<>();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            attributes.put((String) keyValues[i], keyValues[i + 1]);
+        }
+        return attributes;
+    }
+
+    protected static void assertEquals(Object expected, Object actual) {
+        if (expected == null ? actual != null : !expected.equals(actual)) {
+            throw new AssertionError("expected [" + expected + "] but was [" + actual + "]");
+        }
+    }
+
+    protected static void assertTrue(String message, boolean condition) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+
+    protected static void fail(String message) {
+        throw new AssertionError(message);
+    }
+
+}
@@ -0,0 +1,74 @@
+package io.xview;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+import io.xview.script.BindingsPoolTest;
+import io.xview.script.ScriptEnvironmentTest;
+
+/**
+ * 不依赖第三方库的测试入口：执行各测试类中以 test 开头的public无参方法，有失败时以状态码1退出。
+ * 用法（编译src与test目录后，需要带有Nashorn的JDK）：
+ * <pre>
+ * java -cp out io.xview.XViewTests [名称过滤]
+ * </pre>
+ */
+public class XViewTests {
+
+    private static final Class<?>[] TEST_CLASSES = new Class<?>[]{
+            StreamingParserTest.class,
+            ControlFlowTest.class,
+            ParallelRenderingTest.class,
+            XViewBudgetTest.class,
+            XViewCacheTest.class,
+            XViewWriterTest.class,
+            XViewSchemaCacheTest.class,
+            JmxXViewMetricsTest.class,
+            XViewProfilerTest.class,
+            XViewCodeCacheTest.class,
+            XViewBundleTest.class,
+            BuildXsdTest.class,
+            XViewWarmupTest.class,
+            StreamingTest.class,
+            AsyncRenderTest.class,
+            ScriptEnvironmentTest.class,
+            BindingsPoolTest.class,
+            InlineTest.class,
+            ReloadTest.class,
+            OutputCacheTest.class,
+            PropertyPathTest.class
+    };
+
+    public static void main(String[] args) throws Exception {
+        String filter = args.length > 0 ? args[0] : "";
+        int passed = 0;
+        int failed = 0;
+
+        for (Class<?> testClass : TEST_CLASSES) {
+            for (Method method : testClass.getMethods()) {
+                String name = testClass.getSimpleName() + "." + method.getName();
+                if (!method.getName().startsWith("test") || method.getParameterTypes().length != 0
+                        || Modifier.isStatic(method.getModifiers()) || !name.contains(filter)) {
+                    continue;
+                }
+
+                try {
+                    method.invoke(testClass.newInstance());
+                    passed++;
+                    System.out.println("PASS " + name);
+                } catch (InvocationTargetException e) {
+                    failed++;
+                    System.out.println("FAIL " + name);
+                    e.getCause().printStackTrace(System.out);
+                }
+            }
+        }
+
+        System.out.println(passed + " passed, " + failed + " failed");
+        if (failed > 0) {
+            System.exit(1);
+        }
+    }
+
+}
@@ -0,0 +1,69 @@
+package io.xview;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 预热（{@link XViewManager#warmup(java.util.Collection, int)}）：完成后文件已加载并编译，之后的渲染不再加载与编译。
+ */
+public class XViewWarmupTest extends XViewTestCase {
+
+    private void fixtures() {
+        this.component("item", "xview:value=\"\"", "<i>${value}</i>");
+        this.put("/page.xview", view("xview:title=\"\"", "<h1>${title}</h1><c:item value=\"title\"/>"));
+        this.put("/other.xview", view("", "<p>other</p>"));
+    }
+
+    public void testWarmup() throws InterruptedException {
+        this.fixtures();
+        XViewManager xviewManager = this.newManager();
+
+        XViewWarmup xviewWarmup = xviewManager.warmup(Arrays.asList("/page.xview", "/other.xview", "/page.xview"), 3,
+                attributes("title", "sample"), ForkJoinPool.commonPool());
+        assertTrue("warmup should complete", xviewWarmup.await(30, TimeUnit.SECONDS));
+
+        assertTrue(xviewWarmup.toString(), xviewWarmup.isReady());
+        assertEquals(Arrays.asList("/page.xview", "/other.xview"), xviewWarmup.getUris());
+        assertEquals(2, xviewWarmup.getLoadedCount());
+        assertEquals(6L, xviewWarmup.getRenderCount());
+        assertEquals(1.0, xviewWarmup.getProgress());
+
+        // 渲染时调用的组件也已加载并编译
+        assertEquals(3, xviewManager.getXViewCache().size());
+        JmxXViewMetrics metrics = new JmxXViewMetrics();
+        xviewManager.setMetrics(metrics);
+        assertEquals("<h1>t</h1><i>t</i>", render(xviewManager, "/page.xview", attributes("title", "t")));
+        assertEquals(0L, metrics.getLoadCount());
+        assertEquals(0L, metrics.getCompileCount());
+    }
+
+    public void testFailure() throws InterruptedException {
+        this.fixtures();
+        XViewManager xviewManager = this.newManager();
+
+        // 在当前线程中执行
+        XViewWarmup xviewWarmup = xviewManager.warmup(Arrays.asList("/missing.xview", "/other.xview"), 1, null, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        });
+
+        assertTrue("done", xviewWarmup.isDone());
+        assertTrue("not ready", !xviewWarmup.isReady());
+        assertEquals(Collections.singleton("/missing.xview"), xviewWarmup.getFailures().keySet());
+        assertEquals(2, xviewWarmup.getCompletedCount());
+        assertEquals(1, xviewWarmup.getLoadedCount());
+    }
+
+    public void testEmpty() {
+        XViewWarmup xviewWarmup = this.newManager().warmup(Collections.<String>emptyList(), 1);
+        assertTrue("ready", xviewWarmup.isReady());
+        assertEquals(1.0, xviewWarmup.getProgress());
+        assertEquals(0L, xviewWarmup.getElapsedTime());
+    }
+
+}
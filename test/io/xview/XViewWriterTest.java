@@ -0,0 +1,94 @@
+package io.xview;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * 输出缓冲区（{@link XViewWriter}）：按指定编码输出静态片段与动态内容，缓冲区满或达到阈值时才写入目标输出流。
+ */
+public class XViewWriterTest extends XViewTestCase {
+
+    /**
+     * 记录write调用次数的输出流
+     */
+    private static class CountingOutputStream extends ByteArrayOutputStream {
+
+        private int writes;
+
+        @Override
+        public synchronized void write(byte[] bytes, int offset, int length) {
+            this.writes++;
+            super.write(bytes, offset, length);
+        }
+    }
+
+    private static String repeat(String text, int count) {
+        StringBuilder stringBuilder = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            stringBuilder.append(text);
+        }
+        return stringBuilder.toString();
+    }
+
+    public void testBuffering() throws IOException {
+        // 多字节字符跨越缓冲区边界，大于缓冲区的字节数组直接输出
+        String text = repeat("中文é", 100);
+        byte[] large = repeat("x", 300).getBytes(StandardCharsets.UTF_8);
+
+        CountingOutputStream outputStream = new CountingOutputStream();
+        XViewWriter xviewWriter = new XViewWriter(StandardCharsets.UTF_8, 64, 0).open(outputStream);
+        xviewWriter.write("<p>".getBytes(StandardCharsets.UTF_8));
+        xviewWriter.print(text);
+        xviewWriter.write(large);
+        xviewWriter.print("</p>");
+
+        byte[] expected = ("<p>" + text + new String(large, StandardCharsets.UTF_8) + "</p>").getBytes(StandardCharsets.UTF_8);
+        assertTrue("tail should still be buffered", outputStream.size() < expected.length);
+        xviewWriter.flush();
+
+        assertTrue("bytes", Arrays.equals(expected, outputStream.toByteArray()));
+        assertEquals((long) expected.length, xviewWriter.getCount());
+        assertTrue("writes " + outputStream.writes, outputStream.writes <= expected.length / 64 + 2);
+    }
+
+    public void testSmallWritesBuffered() throws IOException {
+        CountingOutputStream outputStream = new CountingOutputStream();
+        XViewWriter xviewWriter = new XViewWriter(StandardCharsets.UTF_8, XViewWriter.DEFAULT_BUFFER_SIZE, 0).open(outputStream);
+        for (int i = 0; i < 1000; i++) {
+            xviewWriter.print("ab");
+        }
+        assertEquals(0, outputStream.writes);
+        xviewWriter.flush();
+
+        assertEquals(1, outputStream.writes);
+        assertEquals(repeat("ab", 1000), new String(outputStream.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    public void testCharset() {
+        this.put("/page.xview", view("", "<p>é${'ü'}</p>"));
+        XViewManager xviewManager = this.newManager();
+
+        for (Charset charset : new Charset[] { StandardCharsets.ISO_8859_1, StandardCharsets.UTF_16BE, StandardCharsets.UTF_8 }) {
+            xviewManager.setCharset(charset);
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            xviewManager.load("/page.xview").execute(outputStream, new HashMap<String, Object>(), null);
+            assertTrue(charset.name(), Arrays.equals("<p>éü</p>".getBytes(charset), outputStream.toByteArray()));
+        }
+    }
+
+    public void testUnmappable() {
+        // 目标编码无法表示的字符输出为替换字符
+        this.put("/page.xview", view("", "<p>${'中'}</p>"));
+        XViewManager xviewManager = this.newManager();
+        xviewManager.setCharset(StandardCharsets.US_ASCII);
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        xviewManager.load("/page.xview").execute(outputStream, new HashMap<String, Object>(), null);
+        assertEquals("<p>?</p>", new String(outputStream.toByteArray(), StandardCharsets.US_ASCII));
+    }
+
+}
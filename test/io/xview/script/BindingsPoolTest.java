@@ -0,0 +1,132 @@
+package io.xview.script;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.script.Bindings;
+
+import io.xview.XViewManager;
+import io.xview.XViewTestCase;
+
+/**
+ * Bindings池：归还后被同一线程复用，并发取用与归还后计数一致。
+ */
+public class BindingsPoolTest extends XViewTestCase {
+
+	private static BindingsPool newPool(int poolSize, int minSize, int maxSize) throws Exception {
+		return new BindingsPool(new ScriptEnvironment(poolSize), XViewManager.SCRIPT_LANGUAGE, minSize, maxSize);
+	}
+
+	public void testReuse() throws Exception {
+		BindingsPool bindingsPool = newPool(1, 0, 4);
+
+		Bindings bindings = bindingsPool.pop();
+		assertEquals(1L, bindingsPool.getAllocationMissCount());
+		assertEquals(1, bindingsPool.getInUse());
+
+		bindings.put("a", 1);
+		bindingsPool.push(bindings);
+		assertEquals(0, bindingsPool.getInUse());
+		assertEquals(1, bindingsPool.size());
+
+		Bindings reused = bindingsPool.pop();
+		assertTrue("same instance", reused == bindings);
+		assertTrue("cleared", reused.isEmpty());
+		assertEquals(1L, bindingsPool.getAllocationMissCount());
+		bindingsPool.push(reused);
+	}
+
+	public void testMinSize() throws Exception {
+		BindingsPool bindingsPool = newPool(1, 3, 4);
+		assertEquals(3, bindingsPool.size());
+
+		bindingsPool.push(bindingsPool.pop());
+		assertEquals(0L, bindingsPool.getAllocationMissCount());
+	}
+
+	public void testDiscard() throws Exception {
+		BindingsPool bindingsPool = newPool(1, 0, 1);
+		bindingsPool.setResetThreshold(2);
+
+		// 变量过多
+		Bindings large = bindingsPool.pop();
+		large.put("a", 1);
+		large.put("b", 2);
+		large.put("c", 3);
+		bindingsPool.push(large);
+		assertEquals(1L, bindingsPool.getDiscardCount());
+		assertEquals(0, bindingsPool.size());
+
+		// 池已满
+		Bindings first = bindingsPool.pop();
+		Bindings second = bindingsPool.pop();
+		bindingsPool.push(first);
+		bindingsPool.push(second);
+		assertEquals(2L, bindingsPool.getDiscardCount());
+		assertEquals(1, bindingsPool.size());
+		assertEquals(2, bindingsPool.getHighWaterMark());
+	}
+
+	public void testConcurrent() throws Exception {
+		final BindingsPool bindingsPool = newPool(4, 0, 8);
+		final int threads = 8;
+		final CountDownLatch start = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<Void>> futures = new ArrayList<>();
+			for (int i = 0; i < threads; i++) {
+				final String name = "t" + i;
+				futures.add(executor.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws Exception {
+						start.await();
+						for (int j = 0; j < 2000; j++) {
+							Bindings bindings = bindingsPool.pop();
+							if (!bindings.isEmpty()) {
+								throw new AssertionError("bindings in use by another thread: " + bindings.keySet());
+							}
+							bindings.put(name, j);
+							bindingsPool.push(bindings);
+						}
+						return null;
+					}
+				}));
+			}
+			start.countDown();
+
+			for (Future<Void> future : futures) {
+				future.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		assertEquals(0, bindingsPool.getInUse());
+		assertTrue("size " + bindingsPool.size(), bindingsPool.size() <= 8);
+		assertTrue("high water mark " + bindingsPool.getHighWaterMark(), bindingsPool.getHighWaterMark() <= threads);
+		assertTrue("allocations " + bindingsPool.getAllocationMissCount(), bindingsPool.getAllocationMissCount() < threads * 2000);
+	}
+
+	public void testReturnedAfterRender() {
+		this.component("item", "xview:n=\"\"", "<i>${n}</i>");
+		this.put("/page.xview", view("", "<c:item n=\"'a'\"/><c:item n=\"'b'\"/>"));
+
+		XViewManager xviewManager = this.newManager();
+		BindingsPool bindingsPool = xviewManager.getBindingsPool();
+		assertEquals("<i>a</i><i>b</i>", render(xviewManager, "/page.xview"));
+		long allocations = bindingsPool.getAllocationMissCount();
+
+		for (int i = 0; i < 3; i++) {
+			assertEquals("<i>a</i><i>b</i>", render(xviewManager, "/page.xview"));
+		}
+
+		assertEquals(0, bindingsPool.getInUse());
+		assertEquals(allocations, bindingsPool.getAllocationMissCount());
+	}
+
+}
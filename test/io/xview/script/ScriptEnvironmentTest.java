@@ -0,0 +1,85 @@
+package io.xview.script;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.script.ScriptEngine;
+
+import io.xview.XViewManager;
+import io.xview.XViewTestCase;
+
+/**
+ * 脚本引擎池：同一线程总是使用同一个引擎，多个线程使用各自的引擎并发渲染。
+ */
+public class ScriptEnvironmentTest extends XViewTestCase {
+
+	public void testStripes() throws Exception {
+		final ScriptEnvironment scriptEnvironment = new ScriptEnvironment(4);
+		ScriptEnvironment.ScriptEnginePool scriptEnginePool = scriptEnvironment.getScriptEnginePool(XViewManager.SCRIPT_LANGUAGE);
+
+		assertEquals(4, scriptEnginePool.size());
+		assertTrue("same engine for the same thread", scriptEnvironment.getScriptEngine("ECMAScript") == scriptEnvironment.getScriptEngine(XViewManager.SCRIPT_LANGUAGE));
+
+		Set<ScriptEngine> engines = Collections.newSetFromMap(new IdentityHashMap<ScriptEngine, Boolean>());
+		for (int i = 0; i < scriptEnginePool.size(); i++) {
+			engines.add(scriptEnginePool.get(i));
+			assertTrue("engine " + i + " is created once", scriptEnginePool.get(i) == scriptEnginePool.get(i));
+		}
+		assertEquals(4, engines.size());
+
+		// 各线程取得的引擎与其分段对应
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			for (int i = 0; i < 16; i++) {
+				ScriptEngine[] result = executor.submit(new Callable<ScriptEngine[]>() {
+					@Override
+					public ScriptEngine[] call() throws Exception {
+						return new ScriptEngine[] { scriptEnvironment.getScriptEngine(XViewManager.SCRIPT_LANGUAGE),
+								scriptEnvironment.getScriptEnginePool(XViewManager.SCRIPT_LANGUAGE).get(scriptEnvironment.getStripe()) };
+					}
+				}).get();
+				assertTrue("stripe engine", result[0] == result[1]);
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	public void testConcurrentRendering() throws Exception {
+		this.component("item", "xview:n=\"\"", "<xview:script>var doubled = n + n;</xview:script><li>${doubled}</li>");
+		this.put("/page.xview", view("xview:id=\"\"", "<ul><c:item n=\"id\"/><c:item n=\"id + '-'\"/></ul>"));
+
+		final XViewManager xviewManager = new XViewManager(this.loader(), false, 4, true, 4);
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<String>> futures = new ArrayList<>();
+			for (int i = 0; i < 400; i++) {
+				final String id = "r" + i;
+				futures.add(executor.submit(new Callable<String>() {
+					@Override
+					public String call() {
+						String expected = "<ul><li>" + id + id + "</li><li>" + id + "-" + id + "-</li></ul>";
+						String actual = render(xviewManager, "/page.xview", attributes("id", id));
+						return expected.equals(actual) ? null : "expected [" + expected + "] but was [" + actual + "]";
+					}
+				}));
+			}
+
+			for (Future<String> future : futures) {
+				assertEquals(null, future.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		assertEquals(4, xviewManager.getScriptEnvironment().getPoolSize());
+	}
+
+}